@@ -0,0 +1,214 @@
+package ru.misis.gamification.events.analytics;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Set;
+
+/**
+ * Потоковая агрегация аналитики курсов по временным окнам
+ *
+ * <p>
+ * Заменяет точные GROUP BY запросы по сырым событиям. Каждое внешнее событие
+ * учитывается в двух уровнях статистики {@link CourseWindowStats}:
+ * </p>
+ * <ul>
+ *     <li>короткие интервалы (по умолчанию час) - для тумблинговых и скользящих окон</li>
+ *     <li>календарные дни - для дневной аналитики с длительным хранением</li>
+ * </ul>
+ *
+ * <p>
+ * Окно собирается объединением скетчей интервалов, поэтому память на окно
+ * постоянна и не зависит от количества студентов курса: при параметрах
+ * по умолчанию около 4 КБ на уникальных пользователей и несколько КБ на распределения.
+ * </p>
+ *
+ * <p>
+ * Время события {@link GamificationEvent#occurredAt()} трактуется как есть,
+ * без учета часового пояса. Класс потокобезопасен.
+ * </p>
+ */
+public class CourseAnalyticsAggregator {
+
+    /**
+     * Длина интервала по умолчанию
+     */
+    public static final Duration DEFAULT_PANE_SIZE = Duration.ofHours(1);
+
+    /**
+     * Срок хранения интервалов по умолчанию
+     */
+    public static final Duration DEFAULT_PANE_RETENTION = Duration.ofDays(2);
+
+    /**
+     * Срок хранения дневной статистики по умолчанию
+     */
+    public static final Duration DEFAULT_DAY_RETENTION = Duration.ofDays(90);
+
+    /**
+     * Точность скетча уникальных пользователей по умолчанию
+     */
+    public static final int DEFAULT_HLL_PRECISION = 12;
+
+    /**
+     * Параметр сжатия скетчей распределений по умолчанию
+     */
+    public static final double DEFAULT_COMPRESSION = 100;
+
+    private static final Duration DAY = Duration.ofDays(1);
+
+    private final CourseResolver courseResolver;
+
+    private final WindowedSketches<CourseWindowStats> panes;
+
+    private final WindowedSketches<CourseWindowStats> days;
+
+    private final Duration paneRetention;
+
+    private final Duration dayRetention;
+
+    /**
+     * Создает агрегатор с параметрами по умолчанию
+     *
+     * @param courseResolver Резолвер курса события
+     */
+    public CourseAnalyticsAggregator(CourseResolver courseResolver) {
+        this(courseResolver, DEFAULT_PANE_SIZE, DEFAULT_PANE_RETENTION, DEFAULT_DAY_RETENTION,
+                DEFAULT_HLL_PRECISION, DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Создает агрегатор
+     *
+     * @param courseResolver Резолвер курса события
+     * @param paneSize       Длина интервала, должна делить сутки нацело
+     * @param paneRetention  Срок хранения интервалов
+     * @param dayRetention   Срок хранения дневной статистики
+     * @param hllPrecision   Точность скетча уникальных пользователей
+     * @param compression    Параметр сжатия скетчей распределений
+     * @throws IllegalArgumentException Если параметры окон некорректны
+     */
+    public CourseAnalyticsAggregator(CourseResolver courseResolver,
+                                     Duration paneSize,
+                                     Duration paneRetention,
+                                     Duration dayRetention,
+                                     int hllPrecision,
+                                     double compression) {
+        if (paneSize.isNegative() || paneSize.isZero() || DAY.toMillis() % paneSize.toMillis() != 0) {
+            throw new IllegalArgumentException("Длина интервала должна делить сутки нацело");
+        }
+        this.courseResolver = courseResolver;
+        this.paneRetention = paneRetention;
+        this.dayRetention = dayRetention;
+        this.panes = new WindowedSketches<>(paneSize, paneRetention,
+                () -> new CourseWindowStats(hllPrecision, compression), CourseWindowStats::merge);
+        this.days = new WindowedSketches<>(DAY, dayRetention,
+                () -> new CourseWindowStats(hllPrecision, compression), CourseWindowStats::merge);
+    }
+
+    /**
+     * Учитывает событие в статистике курса
+     *
+     * @param event Событие геймификации
+     * @return {@code true} Если событие учтено; {@code false} для внутренних событий,
+     * событий без курса и событий старше срока хранения
+     */
+    public boolean record(GamificationEvent event) {
+        if (!CourseWindowStats.supports(event)) {
+            return false;
+        }
+        String courseId = courseResolver.resolveCourseId(event);
+        if (courseId == null) {
+            return false;
+        }
+        boolean recorded = panes.update(courseId, event.occurredAt(), stats -> stats.record(event));
+        recorded |= days.update(courseId, event.occurredAt(), stats -> stats.record(event));
+        return recorded;
+    }
+
+    /**
+     * Возвращает статистику тумблингового окна {@code [windowStart, windowStart + size)}
+     *
+     * <p>
+     * Окна длиной в целое число суток, начинающиеся в полночь, собираются
+     * из дневной статистики, остальные - из интервалов.
+     * </p>
+     *
+     * @param courseId    Идентификатор курса
+     * @param windowStart Начало окна, выровненное по длине окна
+     * @param size        Длина окна, кратная длине интервала
+     * @return Статистика окна
+     * @throws IllegalArgumentException Если окно не выровнено по интервалам
+     */
+    public CourseWindowStats tumbling(String courseId, LocalDateTime windowStart, Duration size) {
+        if (!panes.isMultiple(size)) {
+            throw new IllegalArgumentException("Длина окна должна быть кратна длине интервала");
+        }
+        LocalDateTime windowEnd = windowStart.plus(size);
+        if (days.isMultiple(size) && days.isAligned(windowStart)) {
+            return days.merge(courseId, windowStart, windowEnd);
+        }
+        if (!panes.isAligned(windowStart)) {
+            throw new IllegalArgumentException("Начало окна должно быть выровнено по длине интервала");
+        }
+        return panes.merge(courseId, windowStart, windowEnd);
+    }
+
+    /**
+     * Возвращает статистику скользящего окна {@code [windowEnd - size, windowEnd)}
+     *
+     * <p>
+     * Шаг скольжения равен длине интервала.
+     * </p>
+     *
+     * @param courseId  Идентификатор курса
+     * @param windowEnd Конец окна, выровненный по длине интервала
+     * @param size      Длина окна, кратная длине интервала
+     * @return Статистика окна
+     * @throws IllegalArgumentException Если окно не выровнено по интервалам
+     */
+    public CourseWindowStats sliding(String courseId, LocalDateTime windowEnd, Duration size) {
+        if (!panes.isMultiple(size) || !panes.isAligned(windowEnd)) {
+            throw new IllegalArgumentException("Окно должно быть выровнено по длине интервала");
+        }
+        return panes.merge(courseId, windowEnd.minus(size), windowEnd);
+    }
+
+    /**
+     * Возвращает статистику курса за календарный день
+     *
+     * @param courseId Идентификатор курса
+     * @param day      День
+     * @return Статистика дня
+     */
+    public CourseWindowStats daily(String courseId, LocalDate day) {
+        LocalDateTime start = day.atStartOfDay();
+        return days.merge(courseId, start, start.plus(DAY));
+    }
+
+    /**
+     * Возвращает курсы, по которым есть статистика
+     *
+     * @return Идентификаторы курсов
+     */
+    public Set<String> courses() {
+        return days.keys();
+    }
+
+    /**
+     * Удаляет статистику старше срока хранения и курсы, по которым она не осталась
+     *
+     * <p>
+     * Нужен для курсов, переставших получать события: у активных курсов
+     * устаревшие интервалы удаляются при записи.
+     * </p>
+     *
+     * @param now Текущее время в шкале {@link GamificationEvent#occurredAt()}
+     */
+    public void evictExpired(LocalDateTime now) {
+        panes.evictBefore(now.minus(paneRetention));
+        days.evictBefore(now.minus(dayRetention));
+    }
+}
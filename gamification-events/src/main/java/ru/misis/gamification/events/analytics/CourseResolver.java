@@ -0,0 +1,38 @@
+package ru.misis.gamification.events.analytics;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.domain.extenal.CourseEnrolledEvent;
+
+/**
+ * Определяет курс, к которому относится событие
+ *
+ * <p>
+ * Идентификатор курса есть только в {@link CourseEnrolledEvent}. Для остальных событий
+ * курс определяется по идентификатору задачи, теста, задания или темы форума
+ * средствами адаптера конкретной LMS.
+ * </p>
+ */
+@FunctionalInterface
+public interface CourseResolver {
+
+    /**
+     * Возвращает идентификатор курса для события
+     *
+     * @param event Событие геймификации
+     * @return Идентификатор курса или {@code null}, если курс не определен
+     */
+    String resolveCourseId(GamificationEvent event);
+
+    /**
+     * Создает резолвер, который берет курс из события записи на курс,
+     * а для остальных событий обращается к переданному резолверу
+     *
+     * @param fallback Резолвер для событий без идентификатора курса
+     * @return Составной резолвер
+     */
+    static CourseResolver enrollmentOr(CourseResolver fallback) {
+        return event -> event instanceof CourseEnrolledEvent enrolled
+                ? enrolled.courseId()
+                : fallback.resolveCourseId(event);
+    }
+}
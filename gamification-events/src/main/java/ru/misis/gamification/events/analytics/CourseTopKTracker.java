@@ -0,0 +1,151 @@
+package ru.misis.gamification.events.analytics;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.domain.internal.PointsChangedEvent;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Приближенный рейтинг самых активных студентов курса по окнам времени
+ *
+ * <p>
+ * Учитывает начисления очков {@link PointsChangedEvent#pointsDelta()} в скетчах
+ * {@link SpaceSavingTopK}, по одному на курс и интервал (по умолчанию сутки).
+ * Окно, например "самые активные за неделю", собирается объединением интервалов,
+ * поэтому память на курс ограничена {@code retention / paneSize} скетчами
+ * по {@code ceil(1 / epsilon)} счетчиков независимо от количества участников.
+ * Вес студента в окне завышен не больше чем на {@code epsilon} от суммы очков курса в окне.
+ * </p>
+ *
+ * <p>
+ * Списания очков не учитываются. Курс начисления определяет {@link CourseResolver},
+ * который должен уметь сопоставить {@link PointsChangedEvent} курсу, например по правилу
+ * или исходному событию транзакции. Класс потокобезопасен.
+ * </p>
+ *
+ * <pre>{@code
+ * CourseTopKTracker tracker = new CourseTopKTracker(resolver);
+ * tracker.record(pointsChanged);
+ * List<SpaceSavingTopK.HeavyHitter> leaders = tracker.top("course-1", weekStart, weekStart.plusDays(7), 10);
+ * }</pre>
+ */
+public class CourseTopKTracker {
+
+    /**
+     * Длина интервала по умолчанию
+     */
+    public static final Duration DEFAULT_PANE_SIZE = Duration.ofDays(1);
+
+    /**
+     * Срок хранения интервалов по умолчанию
+     */
+    public static final Duration DEFAULT_RETENTION = Duration.ofDays(35);
+
+    /**
+     * Допустимое завышение веса по умолчанию: 0.1% суммы очков окна
+     */
+    public static final double DEFAULT_EPSILON = 0.001;
+
+    private final CourseResolver courseResolver;
+
+    private final WindowedSketches<SpaceSavingTopK> panes;
+
+    private final Duration retention;
+
+    /**
+     * Создает трекер с параметрами по умолчанию
+     *
+     * @param courseResolver Резолвер курса начисления
+     */
+    public CourseTopKTracker(CourseResolver courseResolver) {
+        this(courseResolver, DEFAULT_PANE_SIZE, DEFAULT_RETENTION, DEFAULT_EPSILON);
+    }
+
+    /**
+     * Создает трекер
+     *
+     * @param courseResolver Резолвер курса начисления
+     * @param paneSize       Длина интервала
+     * @param retention      Срок хранения интервалов
+     * @param epsilon        Допустимое завышение веса как доля суммы очков окна
+     * @throws IllegalArgumentException Если параметры некорректны
+     */
+    public CourseTopKTracker(CourseResolver courseResolver, Duration paneSize, Duration retention, double epsilon) {
+        if (!(epsilon > 0 && epsilon < 1)) {
+            throw new IllegalArgumentException("epsilon должен быть от 0 до 1");
+        }
+        this.courseResolver = courseResolver;
+        this.retention = retention;
+        this.panes = new WindowedSketches<>(paneSize, retention,
+                () -> SpaceSavingTopK.withErrorBound(epsilon), SpaceSavingTopK::merge);
+    }
+
+    /**
+     * Учитывает начисление очков
+     *
+     * @param event Событие геймификации
+     * @return {@code true} Если событие учтено; {@code false} для остальных событий,
+     * списаний, начислений без курса и событий старше срока хранения
+     */
+    public boolean record(GamificationEvent event) {
+        if (!(event instanceof PointsChangedEvent changed) || changed.pointsDelta() == null || changed.pointsDelta() <= 0) {
+            return false;
+        }
+        String courseId = courseResolver.resolveCourseId(event);
+        if (courseId == null) {
+            return false;
+        }
+        return panes.update(courseId, event.occurredAt(), sketch -> sketch.add(event.userId(), changed.pointsDelta()));
+    }
+
+    /**
+     * Возвращает скетч окна {@code [from, to)} для объединения с результатами других узлов
+     *
+     * @param courseId Идентификатор курса
+     * @param from     Начало окна, выровненное по длине интервала
+     * @param to       Конец окна, выровненный по длине интервала
+     * @return Новый скетч, не связанный с трекером
+     * @throws IllegalArgumentException Если окно не выровнено по интервалам
+     */
+    public SpaceSavingTopK window(String courseId, LocalDateTime from, LocalDateTime to) {
+        if (!panes.isAligned(from) || !panes.isAligned(to) || !to.isAfter(from)) {
+            throw new IllegalArgumentException("Окно должно быть непустым и выровненным по длине интервала");
+        }
+        return panes.merge(courseId, from, to);
+    }
+
+    /**
+     * Возвращает самых активных студентов курса в окне {@code [from, to)}
+     *
+     * @param courseId Идентификатор курса
+     * @param from     Начало окна, выровненное по длине интервала
+     * @param to       Конец окна, выровненный по длине интервала
+     * @param k        Количество студентов
+     * @return До {@code k} студентов по убыванию набранных очков
+     * @throws IllegalArgumentException Если окно не выровнено по интервалам
+     */
+    public List<SpaceSavingTopK.HeavyHitter> top(String courseId, LocalDateTime from, LocalDateTime to, int k) {
+        return window(courseId, from, to).top(k);
+    }
+
+    /**
+     * Возвращает курсы, по которым есть начисления
+     *
+     * @return Идентификаторы курсов
+     */
+    public Set<String> courses() {
+        return panes.keys();
+    }
+
+    /**
+     * Удаляет интервалы старше срока хранения и курсы, по которым они не остались
+     *
+     * @param now Текущее время в шкале {@link GamificationEvent#occurredAt()}
+     */
+    public void evictExpired(LocalDateTime now) {
+        panes.evictBefore(now.minus(retention));
+    }
+}
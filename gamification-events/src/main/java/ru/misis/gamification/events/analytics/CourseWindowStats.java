@@ -0,0 +1,206 @@
+package ru.misis.gamification.events.analytics;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.domain.extenal.AssignmentSubmittedEvent;
+import ru.misis.gamification.events.domain.extenal.CourseEnrolledEvent;
+import ru.misis.gamification.events.domain.extenal.ForumPostCreatedEvent;
+import ru.misis.gamification.events.domain.extenal.TaskCompletedEvent;
+import ru.misis.gamification.events.domain.extenal.TestPassedEvent;
+
+/**
+ * Агрегированная статистика курса за временное окно
+ *
+ * <p>
+ * Размер статистики фиксирован и не зависит от числа студентов:
+ * </p>
+ * <ul>
+ *     <li>уникальные активные пользователи - {@link HyperLogLog}</li>
+ *     <li>распределения {@link TestPassedEvent#percentage()} и {@link TaskCompletedEvent#score()} - {@link TDigest}</li>
+ *     <li>доля своевременных сдач {@link AssignmentSubmittedEvent#onTime()} - счетчики</li>
+ * </ul>
+ *
+ * <p>
+ * Класс не потокобезопасен, синхронизацию обеспечивает {@link CourseAnalyticsAggregator}.
+ * </p>
+ */
+public final class CourseWindowStats {
+
+    private final HyperLogLog activeUsers;
+
+    private final TDigest testPercentages;
+
+    private final TDigest taskScores;
+
+    private long enrollments;
+
+    private long forumPosts;
+
+    private long submissions;
+
+    private long onTimeSubmissions;
+
+    /**
+     * Создает пустую статистику
+     *
+     * @param hllPrecision Точность скетча уникальных пользователей
+     * @param compression  Параметр сжатия скетчей распределений
+     */
+    public CourseWindowStats(int hllPrecision, double compression) {
+        this.activeUsers = new HyperLogLog(hllPrecision);
+        this.testPercentages = new TDigest(compression);
+        this.taskScores = new TDigest(compression);
+    }
+
+    /**
+     * Учитывает внешнее событие в статистике
+     *
+     * <p>
+     * Любое внешнее событие отмечает пользователя как активного.
+     * Внутренние события игнорируются.
+     * </p>
+     *
+     * @param event Событие геймификации
+     * @return {@code true} Если событие учтено
+     */
+    public boolean record(GamificationEvent event) {
+        if (event instanceof CourseEnrolledEvent) {
+            enrollments++;
+        } else if (event instanceof ForumPostCreatedEvent) {
+            forumPosts++;
+        } else if (event instanceof TestPassedEvent passed) {
+            testPercentages.add(passed.percentage());
+        } else if (event instanceof TaskCompletedEvent completed) {
+            taskScores.add(completed.score());
+        } else if (event instanceof AssignmentSubmittedEvent submitted) {
+            submissions++;
+            if (submitted.onTime()) {
+                onTimeSubmissions++;
+            }
+        } else {
+            return false;
+        }
+        activeUsers.add(event.userId());
+        return true;
+    }
+
+    /**
+     * Проверяет, учитывается ли событие в статистике
+     *
+     * @param event Событие геймификации
+     * @return {@code true} Для внешних событий LMS
+     */
+    static boolean supports(GamificationEvent event) {
+        return event instanceof CourseEnrolledEvent
+                || event instanceof ForumPostCreatedEvent
+                || event instanceof TestPassedEvent
+                || event instanceof TaskCompletedEvent
+                || event instanceof AssignmentSubmittedEvent;
+    }
+
+    /**
+     * Добавляет к текущей статистике статистику другого окна
+     *
+     * @param other Статистика с теми же параметрами скетчей
+     */
+    public void merge(CourseWindowStats other) {
+        activeUsers.merge(other.activeUsers);
+        testPercentages.merge(other.testPercentages);
+        taskScores.merge(other.taskScores);
+        enrollments += other.enrollments;
+        forumPosts += other.forumPosts;
+        submissions += other.submissions;
+        onTimeSubmissions += other.onTimeSubmissions;
+    }
+
+    /**
+     * Возвращает оценку числа уникальных активных пользователей
+     *
+     * @return Оценка количества пользователей
+     */
+    public long distinctActiveUsers() {
+        return activeUsers.estimate();
+    }
+
+    /**
+     * Возвращает оценку квантиля процента прохождения тестов
+     *
+     * @param q Уровень квантиля от 0 до 1
+     * @return Оценка квантиля или {@code NaN}, если тестов не было
+     */
+    public double testPercentageQuantile(double q) {
+        return testPercentages.quantile(q);
+    }
+
+    /**
+     * Возвращает оценку квантиля баллов за задачи
+     *
+     * @param q Уровень квантиля от 0 до 1
+     * @return Оценка квантиля или {@code NaN}, если задач не было
+     */
+    public double taskScoreQuantile(double q) {
+        return taskScores.quantile(q);
+    }
+
+    /**
+     * Возвращает количество пройденных тестов
+     *
+     * @return Количество событий {@link TestPassedEvent}
+     */
+    public long testsPassed() {
+        return (long) testPercentages.size();
+    }
+
+    /**
+     * Возвращает количество выполненных задач
+     *
+     * @return Количество событий {@link TaskCompletedEvent}
+     */
+    public long tasksCompleted() {
+        return (long) taskScores.size();
+    }
+
+    /**
+     * Возвращает количество записей на курс
+     *
+     * @return Количество событий {@link CourseEnrolledEvent}
+     */
+    public long enrollments() {
+        return enrollments;
+    }
+
+    /**
+     * Возвращает количество постов на форуме
+     *
+     * @return Количество событий {@link ForumPostCreatedEvent}
+     */
+    public long forumPosts() {
+        return forumPosts;
+    }
+
+    /**
+     * Возвращает количество сданных заданий
+     *
+     * @return Количество событий {@link AssignmentSubmittedEvent}
+     */
+    public long submissions() {
+        return submissions;
+    }
+
+    /**
+     * Возвращает количество заданий, сданных в срок
+     *
+     * @return Количество своевременных сдач
+     */
+    public long onTimeSubmissions() {
+        return onTimeSubmissions;
+    }
+
+    /**
+     * Возвращает долю заданий, сданных в срок
+     *
+     * @return Доля от 0 до 1 или {@code NaN}, если заданий не сдавали
+     */
+    public double onTimeRatio() {
+        return submissions == 0 ? Double.NaN : (double) onTimeSubmissions / submissions;
+    }
+}
@@ -0,0 +1,171 @@
+package ru.misis.gamification.events.analytics;
+
+import ru.misis.gamification.events.util.Hashing;
+
+import java.util.Arrays;
+
+/**
+ * Скетч HyperLogLog для оценки количества уникальных значений
+ *
+ * <p>
+ * Занимает {@code 2^precision} байт независимо от числа добавленных значений.
+ * Стандартная относительная погрешность оценки {@code 1.04 / sqrt(2^precision)},
+ * например около 1.6% при точности 12.
+ * </p>
+ *
+ * <p>
+ * Скетчи с одинаковой точностью объединяются без потери точности,
+ * что позволяет собирать окна из отдельных интервалов.
+ * Класс не потокобезопасен.
+ * </p>
+ */
+public final class HyperLogLog {
+
+    /**
+     * Минимально допустимая точность
+     */
+    public static final int MIN_PRECISION = 4;
+
+    /**
+     * Максимально допустимая точность
+     */
+    public static final int MAX_PRECISION = 18;
+
+    private final int precision;
+
+    private final byte[] registers;
+
+    /**
+     * Создает пустой скетч
+     *
+     * @param precision Количество бит индекса регистра, от {@value #MIN_PRECISION} до {@value #MAX_PRECISION}
+     * @throws IllegalArgumentException Если точность вне допустимого диапазона
+     */
+    public HyperLogLog(int precision) {
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("precision должен быть от " + MIN_PRECISION + " до " + MAX_PRECISION);
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    private HyperLogLog(HyperLogLog source) {
+        this.precision = source.precision;
+        this.registers = source.registers.clone();
+    }
+
+    /**
+     * Добавляет значение в скетч
+     *
+     * @param value Значение, не может быть {@code null}
+     */
+    public void add(String value) {
+        addHash(Hashing.hash64(value));
+    }
+
+    /**
+     * Добавляет заранее вычисленный 64-битный хеш значения
+     *
+     * @param hash Хеш значения
+     */
+    public void addHash(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        long remainder = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remainder) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    /**
+     * Возвращает оценку количества уникальных значений
+     *
+     * @return Оценка мощности множества
+     */
+    public long estimate() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = alpha(m) * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    /**
+     * Объединяет другой скетч с текущим
+     *
+     * @param other Скетч с той же точностью
+     * @throws IllegalArgumentException Если точности скетчей различаются
+     */
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Нельзя объединить скетчи с разной точностью");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    /**
+     * Создает независимую копию скетча
+     *
+     * @return Копия скетча
+     */
+    public HyperLogLog copy() {
+        return new HyperLogLog(this);
+    }
+
+    /**
+     * Возвращает точность скетча
+     *
+     * @return Количество бит индекса регистра
+     */
+    public int precision() {
+        return precision;
+    }
+
+    /**
+     * Проверяет, добавлялись ли значения в скетч
+     *
+     * @return {@code true} Если скетч пуст
+     */
+    public boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof HyperLogLog other
+                && precision == other.precision
+                && Arrays.equals(registers, other.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * precision + Arrays.hashCode(registers);
+    }
+
+    private static double alpha(int m) {
+        return switch (m) {
+            case 16 -> 0.673;
+            case 32 -> 0.697;
+            case 64 -> 0.709;
+            default -> 0.7213 / (1 + 1.079 / m);
+        };
+    }
+}
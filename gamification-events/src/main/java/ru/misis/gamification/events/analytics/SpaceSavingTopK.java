@@ -0,0 +1,294 @@
+package ru.misis.gamification.events.analytics;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Скетч Space-Saving для поиска самых весомых значений
+ *
+ * <p>
+ * Хранит не больше {@code capacity} счетчиков. Новое значение при заполненном скетче
+ * занимает счетчик с минимальным весом и наследует его вес как погрешность, поэтому
+ * оценка веса значения завышена не больше чем на {@code total / capacity}, а любое
+ * значение с весом больше этой границы гарантированно присутствует в скетче.
+ * </p>
+ *
+ * <p>
+ * Скетчи с одинаковым количеством счетчиков объединяются с сохранением той же границы погрешности, что позволяет
+ * собирать окна из отдельных интервалов и результаты разных узлов.
+ * Класс не потокобезопасен.
+ * </p>
+ */
+public final class SpaceSavingTopK {
+
+    private static final Comparator<HeavyHitter> BY_COUNT_DESC =
+            Comparator.comparingLong(HeavyHitter::count).reversed().thenComparing(HeavyHitter::item);
+
+    private final int capacity;
+
+    private final Map<String, Counter> counters;
+
+    /**
+     * Счетчики в виде двоичной кучи по весу, минимальный в корне
+     */
+    private final Counter[] heap;
+
+    private int size;
+
+    private long total;
+
+    /**
+     * Создает пустой скетч
+     *
+     * @param capacity Количество счетчиков
+     * @throws IllegalArgumentException Если количество счетчиков не положительно
+     */
+    public SpaceSavingTopK(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity должен быть положительным");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 4 / 3 + 1);
+        this.heap = new Counter[capacity];
+    }
+
+    /**
+     * Создает скетч с заданной относительной погрешностью
+     *
+     * @param epsilon Допустимое завышение веса как доля суммарного веса, от 0 до 1
+     * @return Скетч с {@code ceil(1 / epsilon)} счетчиками
+     */
+    public static SpaceSavingTopK withErrorBound(double epsilon) {
+        if (!(epsilon > 0 && epsilon < 1)) {
+            throw new IllegalArgumentException("epsilon должен быть от 0 до 1");
+        }
+        return new SpaceSavingTopK((int) Math.ceil(1 / epsilon));
+    }
+
+    /**
+     * Добавляет вес значению
+     *
+     * @param item   Значение
+     * @param weight Положительный вес
+     */
+    public void add(String item, long weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight должен быть положительным");
+        }
+        total += weight;
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.index);
+        } else if (size < capacity) {
+            counter = new Counter(item, weight, 0);
+            counters.put(item, counter);
+            heap[size] = counter;
+            counter.index = size++;
+            siftUp(counter.index);
+        } else {
+            counter = heap[0];
+            counters.remove(counter.item);
+            counter.item = item;
+            counter.error = counter.count;
+            counter.count += weight;
+            counters.put(item, counter);
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Возвращает оценку веса значения сверху
+     *
+     * @param item Значение
+     * @return Оценка веса
+     */
+    public long estimate(String item) {
+        Counter counter = counters.get(item);
+        return counter != null ? counter.count : maxError();
+    }
+
+    /**
+     * Возвращает самые весомые значения
+     *
+     * @param k Количество значений
+     * @return До {@code k} значений по убыванию оценки веса
+     */
+    public List<HeavyHitter> top(int k) {
+        List<HeavyHitter> hitters = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            hitters.add(new HeavyHitter(heap[i].item, heap[i].count, heap[i].error));
+        }
+        hitters.sort(BY_COUNT_DESC);
+        return hitters.subList(0, Math.min(k, hitters.size()));
+    }
+
+    /**
+     * Объединяет с другим скетчем
+     *
+     * <p>
+     * Значению, отсутствующему в заполненном скетче, приписывается минимальный
+     * вес этого скетча и такая же погрешность, затем остаются {@code capacity}
+     * самых весомых значений.
+     * </p>
+     *
+     * <p>
+     * Скетчи должны иметь одинаковое количество счетчиков: после объединения с меньшим
+     * заполненным скетчем результат мог бы остаться незаполненным, и {@link #maxError()}
+     * вернул бы {@code 0}, хотя веса значений, вытесненных из меньшего скетча, неизвестны.
+     * </p>
+     *
+     * @param other Другой скетч, не изменяется
+     * @throws IllegalArgumentException Если количество счетчиков скетчей различается
+     */
+    public void merge(SpaceSavingTopK other) {
+        if (other.capacity != capacity) {
+            throw new IllegalArgumentException("Нельзя объединить скетчи с разным количеством счетчиков: "
+                    + capacity + " и " + other.capacity);
+        }
+        long missingHere = maxError();
+        long missingThere = other.maxError();
+        Map<String, HeavyHitter> union = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Counter counter = heap[i];
+            Counter match = other.counters.get(counter.item);
+            union.put(counter.item, match != null
+                    ? new HeavyHitter(counter.item, counter.count + match.count, counter.error + match.error)
+                    : new HeavyHitter(counter.item, counter.count + missingThere, counter.error + missingThere));
+        }
+        for (int i = 0; i < other.size; i++) {
+            Counter counter = other.heap[i];
+            if (!union.containsKey(counter.item)) {
+                union.put(counter.item,
+                        new HeavyHitter(counter.item, counter.count + missingHere, counter.error + missingHere));
+            }
+        }
+
+        List<HeavyHitter> merged = new ArrayList<>(union.values());
+        merged.sort(BY_COUNT_DESC);
+        counters.clear();
+        size = 0;
+        for (HeavyHitter hitter : merged.subList(0, Math.min(capacity, merged.size()))) {
+            Counter counter = new Counter(hitter.item(), hitter.count(), hitter.error());
+            counters.put(counter.item, counter);
+            heap[size] = counter;
+            counter.index = size++;
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+        total += other.total;
+    }
+
+    /**
+     * Возвращает максимальное завышение оценки веса
+     *
+     * @return Минимальный вес счетчика заполненного скетча или {@code 0}, если скетч не заполнен
+     */
+    public long maxError() {
+        return size == capacity ? heap[0].count : 0;
+    }
+
+    /**
+     * Возвращает суммарный вес, добавленный в скетч и объединенные с ним скетчи
+     *
+     * @return Суммарный добавленный вес
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Возвращает максимальное количество отслеживаемых значений
+     *
+     * @return Количество счетчиков
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Создает независимую копию скетча
+     *
+     * @return Копия
+     */
+    public SpaceSavingTopK copy() {
+        SpaceSavingTopK copy = new SpaceSavingTopK(capacity);
+        copy.merge(this);
+        return copy;
+    }
+
+    private void siftUp(int index) {
+        Counter counter = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (heap[parent].count <= counter.count) {
+                break;
+            }
+            place(heap[parent], index);
+            index = parent;
+        }
+        place(counter, index);
+    }
+
+    private void siftDown(int index) {
+        Counter counter = heap[index];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            if (child + 1 < size && heap[child + 1].count < heap[child].count) {
+                child++;
+            }
+            if (counter.count <= heap[child].count) {
+                break;
+            }
+            place(heap[child], index);
+            index = child;
+        }
+        place(counter, index);
+    }
+
+    private void place(Counter counter, int index) {
+        heap[index] = counter;
+        counter.index = index;
+    }
+
+    private static final class Counter {
+
+        String item;
+
+        long count;
+
+        long error;
+
+        int index;
+
+        Counter(String item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Значение с оценкой веса
+     *
+     * @param item  Значение
+     * @param count Оценка веса сверху
+     * @param error Максимальное завышение оценки
+     */
+    public record HeavyHitter(String item, long count, long error) {
+
+        /**
+         * Возвращает вес, который значение набрало гарантированно
+         *
+         * @return Оценка веса снизу
+         */
+        public long guaranteedCount() {
+            return count - error;
+        }
+    }
+}
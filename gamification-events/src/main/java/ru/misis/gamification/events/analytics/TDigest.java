@@ -0,0 +1,300 @@
+package ru.misis.gamification.events.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Скетч t-digest для оценки квантилей распределения
+ *
+ * <p>
+ * Хранит распределение в виде ограниченного числа центроидов: размер центроида
+ * ограничен величиной {@code 4 * N * q * (1 - q) / compression}, поэтому хвосты
+ * распределения описываются точнее середины. Число центроидов порядка
+ * {@code compression} и не зависит от количества добавленных значений.
+ * </p>
+ *
+ * <p>
+ * Значения накапливаются в буфере и периодически сливаются с центроидами.
+ * Скетчи объединяются через {@link #merge(TDigest)}. Класс не потокобезопасен.
+ * </p>
+ */
+public final class TDigest {
+
+    private final double compression;
+
+    private double[] means;
+
+    private double[] weights;
+
+    private int centroidCount;
+
+    private final double[] bufferMeans;
+
+    private final double[] bufferWeights;
+
+    private int bufferCount;
+
+    private double totalWeight;
+
+    private double min = Double.POSITIVE_INFINITY;
+
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * Создает пустой скетч
+     *
+     * @param compression Параметр сжатия, чем больше, тем точнее и тяжелее скетч (обычно 100)
+     * @throws IllegalArgumentException Если параметр сжатия меньше 10
+     */
+    public TDigest(double compression) {
+        if (compression < 10) {
+            throw new IllegalArgumentException("compression не может быть меньше 10");
+        }
+        this.compression = compression;
+        this.means = new double[0];
+        this.weights = new double[0];
+        int bufferSize = (int) Math.ceil(compression * 2);
+        this.bufferMeans = new double[bufferSize];
+        this.bufferWeights = new double[bufferSize];
+    }
+
+    /**
+     * Добавляет значение в скетч
+     *
+     * @param value Значение, не может быть {@code NaN}
+     * @throws IllegalArgumentException Если значение равно {@code NaN}
+     */
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    /**
+     * Добавляет значение с заданным весом
+     *
+     * @param value  Значение, не может быть {@code NaN}
+     * @param weight Вес значения, должен быть положительным
+     * @throws IllegalArgumentException Если значение равно {@code NaN} или вес не положителен
+     */
+    public void add(double value, double weight) {
+        if (Double.isNaN(value)) {
+            throw new IllegalArgumentException("Значение не может быть NaN");
+        }
+        if (!(weight > 0)) {
+            throw new IllegalArgumentException("Вес должен быть положительным");
+        }
+        if (bufferCount == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[bufferCount] = value;
+        bufferWeights[bufferCount] = weight;
+        bufferCount++;
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    /**
+     * Объединяет другой скетч с текущим
+     *
+     * @param other Объединяемый скетч, не изменяется
+     */
+    public void merge(TDigest other) {
+        double[] otherMeans = Arrays.copyOf(other.means, other.centroidCount);
+        double[] otherWeights = Arrays.copyOf(other.weights, other.centroidCount);
+        double[] otherBufferMeans = Arrays.copyOf(other.bufferMeans, other.bufferCount);
+        double[] otherBufferWeights = Arrays.copyOf(other.bufferWeights, other.bufferCount);
+        for (int i = 0; i < otherMeans.length; i++) {
+            add(otherMeans[i], otherWeights[i]);
+        }
+        for (int i = 0; i < otherBufferMeans.length; i++) {
+            add(otherBufferMeans[i], otherBufferWeights[i]);
+        }
+        if (other.totalWeight > 0) {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    /**
+     * Возвращает оценку квантиля
+     *
+     * @param q Уровень квантиля от 0 до 1
+     * @return Оценка квантиля или {@code NaN}, если скетч пуст
+     * @throws IllegalArgumentException Если уровень вне диапазона [0, 1]
+     */
+    public double quantile(double q) {
+        if (q < 0 || q > 1) {
+            throw new IllegalArgumentException("Уровень квантиля должен быть от 0 до 1");
+        }
+        compress();
+        if (centroidCount == 0) {
+            return Double.NaN;
+        }
+        if (q == 0) {
+            return min;
+        }
+        if (q == 1) {
+            return max;
+        }
+        if (centroidCount == 1) {
+            return means[0];
+        }
+
+        double target = q * totalWeight;
+        double firstHalf = weights[0] / 2;
+        if (target < firstHalf) {
+            return min + (means[0] - min) * target / firstHalf;
+        }
+
+        double cumulative = firstHalf;
+        for (int i = 0; i < centroidCount - 1; i++) {
+            double step = (weights[i] + weights[i + 1]) / 2;
+            if (cumulative + step > target) {
+                double fraction = (target - cumulative) / step;
+                return means[i] + fraction * (means[i + 1] - means[i]);
+            }
+            cumulative += step;
+        }
+
+        int last = centroidCount - 1;
+        double lastHalf = weights[last] / 2;
+        double fraction = Math.min(1, (target - cumulative) / lastHalf);
+        return means[last] + (max - means[last]) * fraction;
+    }
+
+    /**
+     * Возвращает суммарный вес добавленных значений
+     *
+     * @return Количество значений с учетом весов
+     */
+    public double size() {
+        return totalWeight;
+    }
+
+    /**
+     * Возвращает минимальное добавленное значение
+     *
+     * @return Минимум или {@code NaN}, если скетч пуст
+     */
+    public double min() {
+        return totalWeight == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * Возвращает максимальное добавленное значение
+     *
+     * @return Максимум или {@code NaN}, если скетч пуст
+     */
+    public double max() {
+        return totalWeight == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * Возвращает параметр сжатия скетча
+     *
+     * @return Параметр сжатия
+     */
+    public double compression() {
+        return compression;
+    }
+
+    /**
+     * Создает независимую копию скетча
+     *
+     * @return Копия скетча
+     */
+    public TDigest copy() {
+        TDigest copy = new TDigest(compression);
+        copy.merge(this);
+        return copy;
+    }
+
+    private void compress() {
+        if (bufferCount == 0) {
+            return;
+        }
+
+        int total = centroidCount + bufferCount;
+        double[] mergedMeans = Arrays.copyOf(means, total);
+        double[] mergedWeights = Arrays.copyOf(weights, total);
+        System.arraycopy(bufferMeans, 0, mergedMeans, centroidCount, bufferCount);
+        System.arraycopy(bufferWeights, 0, mergedWeights, centroidCount, bufferCount);
+        bufferCount = 0;
+        sortByMean(mergedMeans, mergedWeights);
+
+        double[] newMeans = new double[total];
+        double[] newWeights = new double[total];
+        int count = 0;
+        double currentMean = mergedMeans[0];
+        double currentWeight = mergedWeights[0];
+        double weightSoFar = 0;
+
+        for (int i = 1; i < total; i++) {
+            double proposed = currentWeight + mergedWeights[i];
+            double q0 = weightSoFar / totalWeight;
+            double q2 = (weightSoFar + proposed) / totalWeight;
+            double limit = 4 * totalWeight * Math.min(q0 * (1 - q0), q2 * (1 - q2)) / compression;
+            if (proposed <= limit) {
+                currentMean += (mergedMeans[i] - currentMean) * mergedWeights[i] / proposed;
+                currentWeight = proposed;
+            } else {
+                newMeans[count] = currentMean;
+                newWeights[count] = currentWeight;
+                count++;
+                weightSoFar += currentWeight;
+                currentMean = mergedMeans[i];
+                currentWeight = mergedWeights[i];
+            }
+        }
+        newMeans[count] = currentMean;
+        newWeights[count] = currentWeight;
+        count++;
+
+        means = Arrays.copyOf(newMeans, count);
+        weights = Arrays.copyOf(newWeights, count);
+        centroidCount = count;
+    }
+
+    private static void sortByMean(double[] means, double[] weights) {
+        sortByMean(means, weights, 0, means.length - 1);
+    }
+
+    private static void sortByMean(double[] means, double[] weights, int from, int to) {
+        while (to - from > 16) {
+            double pivot = means[(from + to) >>> 1];
+            int left = from;
+            int right = to;
+            while (left <= right) {
+                while (means[left] < pivot) {
+                    left++;
+                }
+                while (means[right] > pivot) {
+                    right--;
+                }
+                if (left <= right) {
+                    swap(means, weights, left++, right--);
+                }
+            }
+            if (right - from < to - left) {
+                sortByMean(means, weights, from, right);
+                from = left;
+            } else {
+                sortByMean(means, weights, left, to);
+                to = right;
+            }
+        }
+        for (int i = from + 1; i <= to; i++) {
+            for (int j = i; j > from && means[j - 1] > means[j]; j--) {
+                swap(means, weights, j, j - 1);
+            }
+        }
+    }
+
+    private static void swap(double[] means, double[] weights, int i, int j) {
+        double mean = means[i];
+        means[i] = means[j];
+        means[j] = mean;
+        double weight = weights[i];
+        weights[i] = weights[j];
+        weights[j] = weight;
+    }
+}
@@ -0,0 +1,165 @@
+package ru.misis.gamification.events.analytics;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Хранилище объединяемых скетчей, разбитых на интервалы фиксированной длины
+ *
+ * <p>
+ * Событие обновляет только скетч своего интервала. Окно любой длины, кратной
+ * длине интервала, собирается объединением интервалов, поэтому скользящие и
+ * тумблинговые окна используют одни и те же данные. Интервалы старше срока
+ * хранения удаляются, память на ключ ограничена {@code retention / paneSize} скетчами.
+ * </p>
+ *
+ * @param <S> Тип скетча
+ */
+final class WindowedSketches<S> {
+
+    private final long paneMillis;
+
+    private final long retentionMillis;
+
+    private final Supplier<S> factory;
+
+    private final BiConsumer<S, S> merger;
+
+    private final Map<String, ConcurrentSkipListMap<Long, S>> panes = new ConcurrentHashMap<>();
+
+    /**
+     * @param paneSize  Длина интервала
+     * @param retention Срок хранения интервалов относительно самого нового интервала ключа
+     * @param factory   Фабрика пустых скетчей
+     * @param merger    Функция объединения: добавляет второй скетч к первому
+     */
+    WindowedSketches(Duration paneSize, Duration retention, Supplier<S> factory, BiConsumer<S, S> merger) {
+        if (paneSize.isNegative() || paneSize.isZero()) {
+            throw new IllegalArgumentException("Длина интервала должна быть положительной");
+        }
+        if (retention.compareTo(paneSize) < 0) {
+            throw new IllegalArgumentException("Срок хранения не может быть меньше длины интервала");
+        }
+        this.paneMillis = paneSize.toMillis();
+        this.retentionMillis = retention.toMillis();
+        this.factory = factory;
+        this.merger = merger;
+    }
+
+    /**
+     * Обновляет скетч интервала, в который попадает момент времени
+     *
+     * @param key    Ключ (например, идентификатор курса)
+     * @param at     Момент времени события
+     * @param action Обновление скетча, выполняется под блокировкой скетча
+     * @return {@code false} Если интервал уже вышел за срок хранения
+     */
+    boolean update(String key, LocalDateTime at, Consumer<S> action) {
+        long paneStart = paneStart(toMillis(at));
+        while (true) {
+            ConcurrentSkipListMap<Long, S> keyPanes = panes.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>());
+
+            Map.Entry<Long, S> newest = keyPanes.lastEntry();
+            if (newest != null && paneStart <= newest.getKey() - retentionMillis) {
+                return false;
+            }
+
+            S pane = keyPanes.computeIfAbsent(paneStart, start -> factory.get());
+            synchronized (pane) {
+                action.accept(pane);
+            }
+
+            if (newest == null || paneStart > newest.getKey()) {
+                keyPanes.headMap(paneStart - retentionMillis, true).clear();
+            }
+            // Пустой набор интервалов мог быть удален evictBefore до записи:
+            // непустой набор не удаляется, поэтому повтор нужен только для отсоединенного
+            if (panes.get(key) == keyPanes) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Объединяет интервалы ключа, начинающиеся в диапазоне {@code [from, to)}
+     *
+     * @param key  Ключ
+     * @param from Начало диапазона, включительно
+     * @param to   Конец диапазона, не включительно
+     * @return Новый скетч, не связанный с хранилищем
+     */
+    S merge(String key, LocalDateTime from, LocalDateTime to) {
+        S result = factory.get();
+        ConcurrentSkipListMap<Long, S> keyPanes = panes.get(key);
+        if (keyPanes == null) {
+            return result;
+        }
+        for (S pane : keyPanes.subMap(paneStart(toMillis(from)), true, toMillis(to), false).values()) {
+            synchronized (pane) {
+                merger.accept(result, pane);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Удаляет интервалы, закончившиеся раньше заданного момента, и ключи без интервалов
+     *
+     * @param before Граница удаления
+     */
+    void evictBefore(LocalDateTime before) {
+        long boundary = toMillis(before) - paneMillis;
+        for (String key : panes.keySet()) {
+            panes.computeIfPresent(key, (k, keyPanes) -> {
+                keyPanes.headMap(boundary, true).clear();
+                return keyPanes.isEmpty() ? null : keyPanes;
+            });
+        }
+    }
+
+    /**
+     * Возвращает ключи, для которых есть интервалы
+     *
+     * @return Множество ключей
+     */
+    Set<String> keys() {
+        return panes.keySet();
+    }
+
+    /**
+     * Проверяет, что момент времени совпадает с началом интервала
+     *
+     * @param at Момент времени
+     * @return {@code true} Если момент выровнен по длине интервала
+     */
+    boolean isAligned(LocalDateTime at) {
+        return Math.floorMod(toMillis(at), paneMillis) == 0;
+    }
+
+    /**
+     * Проверяет, что длительность кратна длине интервала
+     *
+     * @param duration Длительность
+     * @return {@code true} Если длительность кратна длине интервала
+     */
+    boolean isMultiple(Duration duration) {
+        long millis = duration.toMillis();
+        return millis > 0 && millis % paneMillis == 0;
+    }
+
+    private long paneStart(long millis) {
+        return millis - Math.floorMod(millis, paneMillis);
+    }
+
+    private static long toMillis(LocalDateTime at) {
+        return at.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
@@ -0,0 +1,60 @@
+package ru.misis.gamification.events.aot;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Подсказки AOT для сериализации событий в native image
+ *
+ * <p>
+ * Jackson находит конструкторы и компоненты записей событий рефлексией, а подтипы -
+ * по {@link JsonSubTypes} на {@link GamificationEvent}. Регистратор объявляет
+ * их заранее, поэтому сервис после AOT-обработки Spring не интроспектирует
+ * классы при старте. Подключается через {@code META-INF/spring/aot.factories},
+ * те же подсказки при сборке модуля записываются в метаданные native image
+ * ({@link NativeMetadataGenerator}).
+ * </p>
+ */
+public class GamificationEventRuntimeHints implements RuntimeHintsRegistrar {
+
+    /**
+     * Скрипты схемы outbox, которые сервисы выполняют при старте
+     */
+    static final String OUTBOX_SCHEMA_PATTERN = "db/outbox/*.sql";
+
+    /**
+     * Создает регистратор подсказок
+     */
+    public GamificationEventRuntimeHints() {
+    }
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        BindingReflectionHintsRegistrar bindingRegistrar = new BindingReflectionHintsRegistrar();
+        bindingRegistrar.registerReflectionHints(hints.reflection(), GamificationEvent.class);
+        for (Class<?> eventType : eventTypes()) {
+            bindingRegistrar.registerReflectionHints(hints.reflection(), eventType);
+        }
+        hints.resources().registerPattern(OUTBOX_SCHEMA_PATTERN);
+    }
+
+    /**
+     * Возвращает классы событий, объявленные в {@link JsonSubTypes} на {@link GamificationEvent}
+     *
+     * @return Классы событий в порядке объявления
+     */
+    public static List<Class<?>> eventTypes() {
+        JsonSubTypes subTypes = GamificationEvent.class.getAnnotation(JsonSubTypes.class);
+        List<Class<?>> types = new ArrayList<>(subTypes.value().length);
+        for (JsonSubTypes.Type type : subTypes.value()) {
+            types.add(type.value());
+        }
+        return types;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.misis.gamification.events.aot;
+
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.nativex.FileNativeConfigurationWriter;
+
+import java.nio.file.Path;
+
+/**
+ * Генерирует метаданные native image для событий при сборке модуля
+ *
+ * <p>
+ * Записывает подсказки {@link GamificationEventRuntimeHints} в
+ * {@code META-INF/native-image/<groupId>/<artifactId>/} каталога классов, поэтому
+ * они попадают в JAR и применяются native-image автоматически, в том числе
+ * в приложениях без Spring. Запускается Maven в фазе {@code process-classes}.
+ * </p>
+ */
+public final class NativeMetadataGenerator {
+
+    private NativeMetadataGenerator() {
+    }
+
+    /**
+     * Записывает метаданные native image в каталог классов
+     *
+     * @param args Каталог классов, groupId и artifactId модуля
+     * @throws IllegalArgumentException Если передано не три аргумента
+     */
+    public static void main(String[] args) {
+        if (args.length != 3) {
+            throw new IllegalArgumentException("Ожидаются аргументы: <каталог классов> <groupId> <artifactId>");
+        }
+        RuntimeHints hints = new RuntimeHints();
+        new GamificationEventRuntimeHints().registerHints(hints, NativeMetadataGenerator.class.getClassLoader());
+        new FileNativeConfigurationWriter(Path.of(args[0]), args[1], args[2]).write(hints);
+    }
+}
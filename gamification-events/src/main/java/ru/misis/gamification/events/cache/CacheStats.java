@@ -0,0 +1,31 @@
+package ru.misis.gamification.events.cache;
+
+/**
+ * Метрики кеша профилей
+ *
+ * @param hits        Количество попаданий
+ * @param misses      Количество промахов
+ * @param evictions   Количество вытесненных записей
+ * @param rejections  Количество вытеснений, при которых новый профиль не допущен в основную область
+ * @param updates     Количество профилей, обновленных событиями на месте
+ * @param size        Текущий размер кеша
+ */
+public record CacheStats(
+        long hits,
+        long misses,
+        long evictions,
+        long rejections,
+        long updates,
+        int size
+) {
+
+    /**
+     * Возвращает долю попаданий
+     *
+     * @return Доля от 0 до 1 или {@code NaN}, если обращений не было
+     */
+    public double hitRate() {
+        long requests = hits + misses;
+        return requests == 0 ? Double.NaN : (double) hits / requests;
+    }
+}
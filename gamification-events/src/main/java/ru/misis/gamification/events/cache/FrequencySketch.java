@@ -0,0 +1,101 @@
+package ru.misis.gamification.events.cache;
+
+import ru.misis.gamification.events.util.Hashing;
+
+/**
+ * Оценка частоты обращений к ключам для политики допуска TinyLFU
+ *
+ * <p>
+ * Count-Min скетч из четырех строк 4-битных счетчиков (16 счетчиков в {@code long}).
+ * После {@code 10 * maximumSize} обращений все счетчики делятся пополам,
+ * поэтому скетч отражает недавнюю популярность ключей.
+ * Класс не потокобезопасен.
+ * </p>
+ */
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private static final long[] SEEDS = {
+            0x97CB3127C7F9A3D5L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+    };
+
+    private final long[] table;
+
+    private final int tableMask;
+
+    private final int sampleSize;
+
+    private int additions;
+
+    /**
+     * @param maximumSize Максимальный размер кеша
+     */
+    FrequencySketch(int maximumSize) {
+        int counters = Math.max(16, Integer.highestOneBit(Math.max(1, maximumSize - 1)) << 1);
+        this.table = new long[Math.max(1, counters / 16) * DEPTH];
+        this.tableMask = table.length / DEPTH - 1;
+        this.sampleSize = Math.max(10, 10 * maximumSize);
+    }
+
+    /**
+     * Увеличивает оценку частоты ключа
+     *
+     * @param key Ключ
+     */
+    void increment(String key) {
+        long hash = Hashing.hash64(key);
+        boolean added = false;
+        for (int row = 0; row < DEPTH; row++) {
+            added |= incrementAt(row, Hashing.mix64(hash ^ SEEDS[row]));
+        }
+        if (added && ++additions == sampleSize) {
+            reset();
+        }
+    }
+
+    /**
+     * Возвращает оценку частоты ключа
+     *
+     * @param key Ключ
+     * @return Оценка частоты от 0 до 15
+     */
+    int frequency(String key) {
+        long hash = Hashing.hash64(key);
+        int frequency = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            long rowHash = Hashing.mix64(hash ^ SEEDS[row]);
+            long word = table[row * (tableMask + 1) + index(rowHash)];
+            frequency = Math.min(frequency, (int) ((word >>> offset(rowHash)) & 0xF));
+        }
+        return frequency;
+    }
+
+    private boolean incrementAt(int row, long rowHash) {
+        int slot = row * (tableMask + 1) + index(rowHash);
+        int offset = offset(rowHash);
+        long mask = 0xFL << offset;
+        if ((table[slot] & mask) != mask) {
+            table[slot] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    private int index(long rowHash) {
+        return (int) (rowHash >>> 32) & tableMask;
+    }
+
+    private static int offset(long rowHash) {
+        return ((int) rowHash & 0xF) << 2;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+}
@@ -0,0 +1,113 @@
+package ru.misis.gamification.events.cache;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.domain.internal.AchievementEvent;
+import ru.misis.gamification.events.state.UserState;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Профиль пользователя для отображения в интерфейсе LMS
+ *
+ * @param userId             Идентификатор пользователя
+ * @param balance            Баланс на активном счете
+ * @param totalBalance       Общий баланс
+ * @param level              Текущий уровень
+ * @param recentAchievements Последние полученные достижения, новые в начале списка
+ */
+public record UserProfile(
+        String userId,
+        long balance,
+        long totalBalance,
+        int level,
+        List<RecentAchievement> recentAchievements
+) {
+
+    /**
+     * Максимальное количество последних достижений в профиле
+     */
+    public static final int MAX_RECENT_ACHIEVEMENTS = 5;
+
+    /**
+     * Проверяет идентификатор и копирует список последних достижений
+     *
+     * @throws IllegalArgumentException Если идентификатор пустой
+     */
+    public UserProfile {
+        if (userId == null || userId.isBlank()) {
+            throw new IllegalArgumentException("userId не может быть пустым");
+        }
+        recentAchievements = List.copyOf(recentAchievements);
+    }
+
+    /**
+     * Применяет внутреннее событие к профилю
+     *
+     * <p>
+     * Баланс и уровень изменяются по тем же правилам, что и в {@link UserState#apply(GamificationEvent)}.
+     * События несут абсолютные значения баланса и уровня, а достижения
+     * не дублируются, поэтому повторное применение события не меняет профиль.
+     * </p>
+     *
+     * @param event Событие геймификации того же пользователя
+     * @return Новый профиль или текущий, если событие не влияет на профиль
+     */
+    public UserProfile apply(GamificationEvent event) {
+        if (event instanceof AchievementEvent achievement) {
+            return withAchievement(achievement);
+        }
+        if (!isProfileEvent(event)) {
+            return this;
+        }
+        UserState state = new UserState(userId, balance, totalBalance, level, 0).apply(event);
+        return new UserProfile(userId, state.balance(), state.totalBalance(), state.level(), recentAchievements);
+    }
+
+    /**
+     * Проверяет, влияет ли событие на профиль пользователя
+     *
+     * @param event Событие геймификации
+     * @return {@code true} Для событий баланса, уровня и достижений
+     */
+    public static boolean isProfileEvent(GamificationEvent event) {
+        return UserState.isStateEvent(event);
+    }
+
+    private UserProfile withAchievement(AchievementEvent event) {
+        for (RecentAchievement recent : recentAchievements) {
+            if (recent.achievementId().equals(event.achievementId())) {
+                return this;
+            }
+        }
+        List<RecentAchievement> updated = new ArrayList<>(MAX_RECENT_ACHIEVEMENTS);
+        updated.add(new RecentAchievement(event.achievementId(), event.achievementName(),
+                event.rarity(), event.iconUrl(), event.occurredAt()));
+        for (RecentAchievement recent : recentAchievements) {
+            if (updated.size() == MAX_RECENT_ACHIEVEMENTS) {
+                break;
+            }
+            updated.add(recent);
+        }
+        return new UserProfile(userId, balance, totalBalance, level, updated);
+    }
+
+    /**
+     * Краткие сведения о полученном достижении
+     *
+     * @param achievementId   Идентификатор достижения
+     * @param achievementName Название достижения
+     * @param rarity          Редкость достижения
+     * @param iconUrl         URL иконки, может быть {@code null}
+     * @param unlockedAt      Время получения
+     */
+    public record RecentAchievement(
+            String achievementId,
+            String achievementName,
+            String rarity,
+            String iconUrl,
+            LocalDateTime unlockedAt
+    ) {
+    }
+}
@@ -0,0 +1,414 @@
+package ru.misis.gamification.events.cache;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Кеш профилей пользователей на стороне чтения с политикой W-TinyLFU
+ *
+ * <p>
+ * Кеш ограничен {@code maximumSize} записями и разделен на три LRU-сегмента:
+ * окно (1% емкости) принимает новые записи, основная область делится на
+ * испытательный (20%) и защищенный (80%) сегменты. Запись, вытесняемая из окна,
+ * попадает в основную область, только если ее частота обращений по
+ * {@link FrequencySketch} выше частоты жертвы испытательного сегмента.
+ * Так редкие обращения не вытесняют постоянно читаемые профили.
+ * </p>
+ *
+ * <p>
+ * Попадание не берет блокировку: профиль читается из {@link ConcurrentHashMap},
+ * а обращение записывается в полосатый кольцевой буфер. Буфер разбирается
+ * под блокировкой политики тем потоком, который ее свободно захватил; при переполнении
+ * обращения теряются, что допустимо для приблизительной частоты и порядка LRU.
+ * Блокировку берут только промахи, загрузки, события и инвалидация.
+ * </p>
+ *
+ * <p>
+ * Внутренние события {@link #onEvent(GamificationEvent) обновляют} закешированные профили на месте,
+ * без инвалидации и повторной загрузки из базы. Профили, которых нет в кеше,
+ * событием не загружаются. События, пришедшие во время загрузки профиля,
+ * применяются к загруженному профилю. Загрузка выполняется вне блокировки и объединяется
+ * для одновременных промахов по одному ключу; если во время загрузки ключ инвалидирован,
+ * результат возвращается ожидающим вызовам, но в кеш не попадает. Класс потокобезопасен.
+ * </p>
+ */
+public class UserProfileCache {
+
+    /**
+     * Количество полос буфера обращений
+     */
+    private static final int READ_STRIPES = 8;
+
+    /**
+     * Размер полосы буфера обращений, степень двойки
+     */
+    private static final int READ_BUFFER_SIZE = 64;
+
+    /**
+     * Количество неразобранных обращений полосы, после которого поток пытается разобрать буфер
+     */
+    private static final int DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+    private final Function<String, UserProfile> loader;
+
+    private final int windowCapacity;
+
+    private final int protectedCapacity;
+
+    private final int mainCapacity;
+
+    private final ConcurrentHashMap<String, Node> data = new ConcurrentHashMap<>();
+
+    private final LinkedHashMap<String, Node> window = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<String, Node> probation = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final LinkedHashMap<String, Node> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final Map<String, PendingLoad> loading = new HashMap<>();
+
+    private final FrequencySketch sketch;
+
+    private final ReadBuffer[] readBuffers = new ReadBuffer[READ_STRIPES];
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private long evictions;
+
+    private long rejections;
+
+    private long updates;
+
+    /**
+     * Создает кеш
+     *
+     * @param maximumSize Максимальное количество профилей
+     * @param loader      Загрузка профиля из хранилища при промахе; может вернуть {@code null}
+     * @throws IllegalArgumentException Если размер меньше 2
+     */
+    public UserProfileCache(int maximumSize, Function<String, UserProfile> loader) {
+        if (maximumSize < 2) {
+            throw new IllegalArgumentException("maximumSize должен быть не меньше 2");
+        }
+        this.loader = loader;
+        this.windowCapacity = Math.max(1, maximumSize / 100);
+        this.mainCapacity = maximumSize - windowCapacity;
+        this.protectedCapacity = (int) (mainCapacity * 0.8);
+        this.sketch = new FrequencySketch(maximumSize);
+        for (int i = 0; i < READ_STRIPES; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    /**
+     * Возвращает профиль пользователя, загружая его при промахе
+     *
+     * @param userId Идентификатор пользователя
+     * @return Профиль или {@code null}, если загрузчик его не нашел
+     */
+    public UserProfile get(String userId) {
+        Node node = data.get(userId);
+        if (node != null) {
+            return hit(node);
+        }
+
+        PendingLoad pending;
+        boolean owner = false;
+        lock.lock();
+        try {
+            node = data.get(userId);
+            if (node != null) {
+                hits.increment();
+                onAccess(node);
+                return node.value;
+            }
+            misses.increment();
+            sketch.increment(userId);
+            pending = loading.get(userId);
+            if (pending == null) {
+                pending = new PendingLoad();
+                loading.put(userId, pending);
+                owner = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (!owner) {
+            return pending.result.join();
+        }
+        UserProfile loaded;
+        try {
+            loaded = loader.apply(userId);
+        } catch (RuntimeException e) {
+            complete(userId, pending, null);
+            pending.result.completeExceptionally(e);
+            throw e;
+        }
+        UserProfile result = complete(userId, pending, loaded);
+        pending.result.complete(result);
+        return result;
+    }
+
+    /**
+     * Возвращает профиль, только если он есть в кеше
+     *
+     * @param userId Идентификатор пользователя
+     * @return Профиль или {@code null}
+     */
+    public UserProfile getIfPresent(String userId) {
+        Node node = data.get(userId);
+        if (node != null) {
+            return hit(node);
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Обновляет закешированный профиль внутренним событием
+     *
+     * @param event Событие изменения баланса, уровня или получения достижения
+     * @return {@code true} Если профиль был в кеше или загружается и событие учтено
+     */
+    public boolean onEvent(GamificationEvent event) {
+        if (!UserProfile.isProfileEvent(event)) {
+            return false;
+        }
+        String userId = event.userId();
+        lock.lock();
+        try {
+            PendingLoad pending = loading.get(userId);
+            if (pending != null) {
+                pending.events.add(event);
+                return true;
+            }
+            Node node = data.get(userId);
+            if (node == null) {
+                return false;
+            }
+            node.value = node.value.apply(event);
+            updates++;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет профиль из кеша
+     *
+     * <p>
+     * Незавершенная загрузка профиля отменяется для кеша: ее результат не будет сохранен,
+     * а следующий {@link #get(String)} начнет новую загрузку.
+     * </p>
+     *
+     * @param userId Идентификатор пользователя
+     */
+    public void invalidate(String userId) {
+        lock.lock();
+        try {
+            PendingLoad pending = loading.remove(userId);
+            if (pending != null) {
+                pending.invalidated = true;
+            }
+            if (data.remove(userId) != null && window.remove(userId) == null && probation.remove(userId) == null) {
+                protectedSegment.remove(userId);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает метрики кеша
+     *
+     * @return Снимок метрик
+     */
+    public CacheStats stats() {
+        lock.lock();
+        try {
+            return new CacheStats(hits.sum(), misses.sum(), evictions, rejections, updates, data.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private UserProfile hit(Node node) {
+        hits.increment();
+        ReadBuffer buffer = readBuffers[Thread.currentThread().hashCode() & (READ_STRIPES - 1)];
+        if (buffer.record(node) >= DRAIN_THRESHOLD && lock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return node.value;
+    }
+
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            buffer.drainTo(this::onAccess);
+        }
+    }
+
+    /**
+     * Учитывает обращение к записи в частоте и порядке сегментов, вызывается под блокировкой
+     */
+    private void onAccess(Node node) {
+        String userId = node.key;
+        if (data.get(userId) != node) {
+            return;
+        }
+        sketch.increment(userId);
+        if (window.get(userId) != null || protectedSegment.get(userId) != null) {
+            return;
+        }
+        if (probation.remove(userId) != null) {
+            promote(node);
+        }
+    }
+
+    private UserProfile complete(String userId, PendingLoad pending, UserProfile loaded) {
+        lock.lock();
+        try {
+            loading.remove(userId, pending);
+            if (loaded == null) {
+                return null;
+            }
+            UserProfile profile = loaded;
+            for (GamificationEvent event : pending.events) {
+                profile = profile.apply(event);
+            }
+            if (!pending.invalidated) {
+                admit(new Node(userId, profile));
+            }
+            return profile;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void promote(Node node) {
+        protectedSegment.put(node.key, node);
+        if (protectedSegment.size() > protectedCapacity) {
+            Node demoted = removeEldest(protectedSegment);
+            probation.put(demoted.key, demoted);
+        }
+    }
+
+    private void admit(Node node) {
+        data.put(node.key, node);
+        window.put(node.key, node);
+        if (window.size() <= windowCapacity) {
+            return;
+        }
+        Node candidate = removeEldest(window);
+        if (probation.size() + protectedSegment.size() < mainCapacity) {
+            probation.put(candidate.key, candidate);
+            return;
+        }
+        if (probation.isEmpty()) {
+            Node demoted = removeEldest(protectedSegment);
+            probation.put(demoted.key, demoted);
+        }
+        String victim = probation.keySet().iterator().next();
+        if (sketch.frequency(candidate.key) > sketch.frequency(victim)) {
+            probation.remove(victim);
+            data.remove(victim);
+            probation.put(candidate.key, candidate);
+        } else {
+            data.remove(candidate.key);
+            rejections++;
+        }
+        evictions++;
+    }
+
+    private static Node removeEldest(LinkedHashMap<String, Node> segment) {
+        Iterator<Node> iterator = segment.values().iterator();
+        Node eldest = iterator.next();
+        iterator.remove();
+        return eldest;
+    }
+
+    /**
+     * Запись кеша: профиль читается без блокировки, заменяется под блокировкой политики
+     */
+    private static final class Node {
+
+        private final String key;
+
+        private volatile UserProfile value;
+
+        private Node(String key, UserProfile value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Кольцевой буфер обращений с потерями при переполнении
+     */
+    private static final class ReadBuffer {
+
+        private final AtomicReferenceArray<Node> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+
+        private final AtomicLong writes = new AtomicLong();
+
+        private volatile long reads;
+
+        /**
+         * @return Количество неразобранных обращений
+         */
+        private long record(Node node) {
+            long index = writes.getAndIncrement();
+            slots.lazySet((int) (index & (READ_BUFFER_SIZE - 1)), node);
+            return index + 1 - reads;
+        }
+
+        private void drainTo(Consumer<Node> consumer) {
+            long written = writes.get();
+            for (int i = 0; i < READ_BUFFER_SIZE; i++) {
+                Node node = slots.getAndSet(i, null);
+                if (node != null) {
+                    consumer.accept(node);
+                }
+            }
+            reads = written;
+        }
+    }
+
+    /**
+     * Незавершенная загрузка профиля и события, пришедшие во время загрузки
+     */
+    private static final class PendingLoad {
+
+        private final CompletableFuture<UserProfile> result = new CompletableFuture<>();
+
+        private final List<GamificationEvent> events = new ArrayList<>();
+
+        /**
+         * Ключ инвалидирован во время загрузки, изменяется под блокировкой
+         */
+        private boolean invalidated;
+    }
+}
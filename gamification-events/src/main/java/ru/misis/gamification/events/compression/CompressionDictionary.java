@@ -0,0 +1,90 @@
+package ru.misis.gamification.events.compression;
+
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Версионированный словарь сжатия
+ *
+ * <p>
+ * Содержимое используется как предустановленный словарь DEFLATE: сжатие
+ * начинается так, будто эти байты уже встречались в потоке, и первые же
+ * повторы имен полей, типов событий и префиксов идентификаторов кодируются
+ * ссылками. Самые ценные фрагменты стоят в конце словаря, ближе всего к данным.
+ * </p>
+ *
+ * @param id      Идентификатор версии словаря, записывается в заголовок каждого кадра
+ * @param content Содержимое словаря, не длиннее {@value #MAX_SIZE} байт
+ */
+public record CompressionDictionary(int id, byte[] content) {
+
+    /**
+     * Максимальный размер словаря - окно DEFLATE
+     */
+    public static final int MAX_SIZE = 32 * 1024;
+
+    /**
+     * Проверяет идентификатор и размер словаря и копирует содержимое
+     *
+     * @throws IllegalArgumentException Если идентификатор не положителен или размер словаря вне допустимого
+     */
+    public CompressionDictionary {
+        if (id <= 0) {
+            throw new IllegalArgumentException("id словаря должен быть положительным");
+        }
+        if (content.length == 0 || content.length > MAX_SIZE) {
+            throw new IllegalArgumentException("Размер словаря должен быть от 1 до " + MAX_SIZE + " байт");
+        }
+        content = content.clone();
+    }
+
+    /**
+     * Возвращает копию содержимого словаря
+     *
+     * @return Содержимое словаря
+     */
+    @Override
+    public byte[] content() {
+        return content.clone();
+    }
+
+    /**
+     * Возвращает отпечаток содержимого словаря
+     *
+     * <p>
+     * Идентификаторы назначаются каждым узлом отдельно, поэтому у разных словарей
+     * они могут совпасть; отпечаток в заголовке кадра позволяет это обнаружить.
+     * </p>
+     *
+     * @return CRC32C содержимого словаря
+     */
+    public int fingerprint() {
+        CRC32C crc = new CRC32C();
+        crc.update(content);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Возвращает содержимое без копирования для передачи в Deflater и Inflater
+     */
+    byte[] contentUnsafe() {
+        return content;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CompressionDictionary dictionary
+                && id == dictionary.id
+                && Arrays.equals(content, dictionary.content);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * id + Arrays.hashCode(content);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionDictionary[id=" + id + ", size=" + content.length + "]";
+    }
+}
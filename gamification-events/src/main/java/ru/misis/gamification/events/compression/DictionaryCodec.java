@@ -0,0 +1,353 @@
+package ru.misis.gamification.events.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Сжатие сообщений и сегментов словарем из {@link DictionaryRegistry}
+ *
+ * <p>
+ * Кадр состоит из короткого заголовка, потока raw DEFLATE с предустановленным словарем
+ * и контрольной суммы исходных данных:
+ * </p>
+ * <pre>
+ * magic        byte    0xD1
+ * version      byte    2
+ * dictionary   varint  идентификатор словаря, 0 - без словаря
+ * fingerprint  int32   CRC32C содержимого словаря, только если словарь указан
+ * data         raw DEFLATE
+ * checksum     int32   CRC32C исходных данных
+ * </pre>
+ *
+ * <p>
+ * Идентификаторы словарей назначаются каждым узлом отдельно и могут совпасть у разных
+ * словарей, поэтому распаковка сверяет отпечаток словаря из заголовка с найденным
+ * по идентификатору и отклоняет кадр при расхождении, а не выдает мусор.
+ * </p>
+ *
+ * <p>
+ * Служебные поля занимают 11 байт для словарей с идентификатором до 127, поэтому кадр
+ * выгоден даже для одного события. Используется стандартный DEFLATE из JDK без
+ * дополнительных нативных зависимостей. Класс потокобезопасен.
+ * </p>
+ */
+public class DictionaryCodec {
+
+    static final int MAGIC = 0xD1;
+
+    static final int VERSION = 2;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final DictionaryRegistry registry;
+
+    private final int level;
+
+    /**
+     * Создает кодек с уровнем сжатия 6
+     *
+     * @param registry Реестр словарей
+     */
+    public DictionaryCodec(DictionaryRegistry registry) {
+        this(registry, 6);
+    }
+
+    /**
+     * Создает кодек
+     *
+     * @param registry Реестр словарей
+     * @param level    Уровень сжатия DEFLATE от 1 до 9
+     */
+    public DictionaryCodec(DictionaryRegistry registry, int level) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("level должен быть от 1 до 9");
+        }
+        this.registry = registry;
+        this.level = level;
+    }
+
+    /**
+     * Сжимает сообщение текущим словарем
+     *
+     * @param data Исходные байты
+     * @return Кадр
+     */
+    public byte[] compress(byte[] data) {
+        CompressionDictionary dictionary = registry.current();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 24);
+        writeHeader(out, dictionary);
+        Deflater deflater = newDeflater(dictionary);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            byte[] buffer = new byte[Math.max(64, Math.min(BUFFER_SIZE, data.length))];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            CRC32C checksum = new CRC32C();
+            checksum.update(data);
+            writeInt(out, (int) checksum.getValue());
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Распаковывает кадр
+     *
+     * @param frame Кадр
+     * @return Исходные байты
+     * @throws IOException Если кадр поврежден, не совпадает контрольная сумма
+     *                     или кадр сжат неизвестным либо другим словарем
+     */
+    public byte[] decompress(byte[] frame) throws IOException {
+        ByteArrayInputStream headerIn = new ByteArrayInputStream(frame);
+        CompressionDictionary dictionary = readHeader(headerIn);
+        int offset = frame.length - headerIn.available();
+        int end = frame.length - Integer.BYTES;
+        if (end < offset) {
+            throw new EOFException("Кадр сжатых данных обрезан");
+        }
+        Inflater inflater = newInflater(dictionary);
+        try {
+            inflater.setInput(frame, offset, end - offset);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(frame.length * 4);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            while (!inflater.finished()) {
+                int inflated = inflater.inflate(buffer);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EOFException("Кадр сжатых данных обрезан");
+                }
+                out.write(buffer, 0, inflated);
+            }
+            byte[] data = out.toByteArray();
+            if (inflater.getRemaining() > 0) {
+                throw new ZipException("Лишние данные после сжатого потока в кадре");
+            }
+            CRC32C checksum = new CRC32C();
+            checksum.update(data);
+            verifyChecksum(checksum, readInt(frame, end));
+            return data;
+        } catch (DataFormatException e) {
+            throw new ZipException("Поврежденный кадр сжатых данных: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Открывает поток сжатия текущим словарем
+     *
+     * <p>
+     * {@link OutputStream#flush()} сбрасывает все записанные данные в кадр (sync flush),
+     * что позволяет передавать события по мере появления; {@link OutputStream#close()}
+     * завершает кадр, дописывает контрольную сумму и закрывает {@code out}.
+     * </p>
+     *
+     * @param out Поток для кадра
+     * @return Поток для исходных данных
+     * @throws IOException Если не удалось записать заголовок
+     */
+    public OutputStream compressingStream(OutputStream out) throws IOException {
+        CompressionDictionary dictionary = registry.current();
+        ByteArrayOutputStream header = new ByteArrayOutputStream(12);
+        writeHeader(header, dictionary);
+        header.writeTo(out);
+        Deflater deflater = newDeflater(dictionary);
+        CRC32C checksum = new CRC32C();
+        return new DeflaterOutputStream(out, deflater, BUFFER_SIZE, true) {
+
+            private boolean closed;
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                super.write(b, off, len);
+                checksum.update(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+                try {
+                    finish();
+                    ByteArrayOutputStream trailer = new ByteArrayOutputStream(Integer.BYTES);
+                    writeInt(trailer, (int) checksum.getValue());
+                    trailer.writeTo(out);
+                    out.close();
+                } finally {
+                    deflater.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Открывает поток распаковки кадра
+     *
+     * <p>
+     * Контрольная сумма проверяется, когда поток дочитан до конца: чтение последнего
+     * блока бросает {@link ZipException}, если данные повреждены.
+     * </p>
+     *
+     * @param in Поток с кадром
+     * @return Поток исходных данных
+     * @throws IOException Если заголовок поврежден или кадр сжат неизвестным либо другим словарем
+     */
+    public InputStream decompressingStream(InputStream in) throws IOException {
+        Inflater inflater = newInflater(readHeader(in));
+        CRC32C checksum = new CRC32C();
+        return new InflaterInputStream(in, inflater, BUFFER_SIZE) {
+
+            private boolean verified;
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    checksum.update(b, off, read);
+                } else if (read < 0 && !verified) {
+                    verified = true;
+                    verifyChecksum(checksum, readTrailer());
+                }
+                return read;
+            }
+
+            /**
+             * Читает контрольную сумму: ее начало могло попасть в буфер после конца сжатого потока
+             */
+            private int readTrailer() throws IOException {
+                int remaining = inflater.getRemaining();
+                int value = 0;
+                for (int i = 0; i < Integer.BYTES; i++) {
+                    int next = i < remaining ? buf[len - remaining + i] & 0xFF : readByte(in);
+                    value = (value << 8) | next;
+                }
+                return value;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int next = in.read();
+        if (next < 0) {
+            throw new EOFException("Кадр сжатых данных обрезан");
+        }
+        return next;
+    }
+
+    private Deflater newDeflater(CompressionDictionary dictionary) {
+        Deflater deflater = new Deflater(level, true);
+        if (dictionary != null) {
+            deflater.setDictionary(dictionary.contentUnsafe());
+        }
+        return deflater;
+    }
+
+    private static Inflater newInflater(CompressionDictionary dictionary) {
+        Inflater inflater = new Inflater(true);
+        if (dictionary != null) {
+            inflater.setDictionary(dictionary.contentUnsafe());
+        }
+        return inflater;
+    }
+
+    private static void writeHeader(ByteArrayOutputStream out, CompressionDictionary dictionary) {
+        out.write(MAGIC);
+        out.write(VERSION);
+        int id = dictionary == null ? 0 : dictionary.id();
+        while ((id & ~0x7F) != 0) {
+            out.write((id & 0x7F) | 0x80);
+            id >>>= 7;
+        }
+        out.write(id);
+        if (dictionary != null) {
+            writeInt(out, dictionary.fingerprint());
+        }
+    }
+
+    /**
+     * Читает заголовок кадра
+     *
+     * @return Словарь кадра или {@code null}, если кадр сжат без словаря
+     */
+    private CompressionDictionary readHeader(InputStream in) throws IOException {
+        if (in.read() != MAGIC) {
+            throw new ZipException("Данные не являются кадром сжатия");
+        }
+        int version = readByte(in);
+        if (version != VERSION) {
+            throw new ZipException("Неподдерживаемая версия кадра: " + version);
+        }
+        int id = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift > 28) {
+                throw new ZipException("Поврежденный заголовок кадра");
+            }
+            int next = readByte(in);
+            id |= (next & 0x7F) << shift;
+            if ((next & 0x80) == 0) {
+                break;
+            }
+        }
+        if (id == 0) {
+            return null;
+        }
+        CompressionDictionary dictionary;
+        try {
+            dictionary = registry.get(id);
+        } catch (IllegalStateException e) {
+            throw new ZipException(e.getMessage());
+        }
+        int fingerprint = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            fingerprint = (fingerprint << 8) | readByte(in);
+        }
+        if (fingerprint != dictionary.fingerprint()) {
+            throw new ZipException("Кадр сжат другим словарем с идентификатором " + id
+                    + ": отпечаток словаря не совпадает");
+        }
+        return dictionary;
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    private static int readInt(byte[] frame, int offset) {
+        return (frame[offset] & 0xFF) << 24 | (frame[offset + 1] & 0xFF) << 16
+                | (frame[offset + 2] & 0xFF) << 8 | (frame[offset + 3] & 0xFF);
+    }
+
+    private static void verifyChecksum(CRC32C checksum, int expected) throws ZipException {
+        if ((int) checksum.getValue() != expected) {
+            throw new ZipException("Контрольная сумма кадра не совпадает: данные повреждены");
+        }
+    }
+}
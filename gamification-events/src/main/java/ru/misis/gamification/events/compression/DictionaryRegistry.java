@@ -0,0 +1,134 @@
+package ru.misis.gamification.events.compression;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Версии словарей сжатия
+ *
+ * <p>
+ * Сжатие всегда использует текущий словарь, а распаковка берет словарь по идентификатору
+ * из заголовка кадра, поэтому данные, сжатые прежними версиями, остаются читаемыми после
+ * переобучения. Словари сохраняются в каталог файлами {@code dictionary-<id>.bin}.
+ * </p>
+ *
+ * <p>
+ * Идентификаторы назначаются реестром локально и не согласуются между узлами. Кадр,
+ * сжатый на другом узле словарем с тем же идентификатором, но другим содержимым,
+ * отклоняется при распаковке по {@link CompressionDictionary#fingerprint() отпечатку}.
+ * Для обмена сжатыми данными между узлами словари распространяются файлами из одного каталога.
+ * </p>
+ */
+public class DictionaryRegistry {
+
+    private static final Pattern FILE_NAME = Pattern.compile("dictionary-(\\d+)\\.bin");
+
+    private final Map<Integer, CompressionDictionary> dictionaries = new ConcurrentHashMap<>();
+
+    private volatile CompressionDictionary current;
+
+    /**
+     * Создает пустой реестр; без словарей кодек сжимает данные без предустановленного словаря
+     */
+    public DictionaryRegistry() {
+    }
+
+    /**
+     * Загружает словари из каталога, текущим становится словарь с наибольшим идентификатором
+     *
+     * @param directory Каталог словарей
+     * @return Реестр, пустой если каталога нет
+     * @throws IOException Если не удалось прочитать словарь
+     */
+    public static DictionaryRegistry load(Path directory) throws IOException {
+        DictionaryRegistry registry = new DictionaryRegistry();
+        if (!Files.isDirectory(directory)) {
+            return registry;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "dictionary-*.bin")) {
+            for (Path file : files) {
+                Matcher matcher = FILE_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    registry.register(new CompressionDictionary(Integer.parseInt(matcher.group(1)),
+                            Files.readAllBytes(file)));
+                }
+            }
+        }
+        return registry;
+    }
+
+    /**
+     * Атомарно сохраняет словарь в каталог
+     *
+     * @param directory  Каталог словарей
+     * @param dictionary Словарь
+     * @throws IOException Если не удалось записать файл
+     */
+    public static void save(Path directory, CompressionDictionary dictionary) throws IOException {
+        Files.createDirectories(directory);
+        Path file = directory.resolve("dictionary-" + dictionary.id() + ".bin");
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        Files.write(temp, dictionary.contentUnsafe());
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Регистрирует словарь; словарь с наибольшим идентификатором становится текущим
+     *
+     * @param dictionary Словарь
+     * @throws IllegalArgumentException Если словарь с таким идентификатором уже зарегистрирован с другим содержимым
+     */
+    public synchronized void register(CompressionDictionary dictionary) {
+        CompressionDictionary existing = dictionaries.putIfAbsent(dictionary.id(), dictionary);
+        if (existing != null && !existing.equals(dictionary)) {
+            throw new IllegalArgumentException("Словарь " + dictionary.id() + " уже зарегистрирован с другим содержимым");
+        }
+        if (current == null || dictionary.id() > current.id()) {
+            current = dictionary;
+        }
+    }
+
+    /**
+     * Обучает новую версию словаря на образцах и делает ее текущей
+     *
+     * @param samples Образцы сообщений
+     * @return Новый словарь
+     */
+    public synchronized CompressionDictionary retrain(List<byte[]> samples) {
+        CompressionDictionary dictionary = DictionaryTrainer.train(current == null ? 1 : current.id() + 1, samples);
+        register(dictionary);
+        return dictionary;
+    }
+
+    /**
+     * Возвращает словарь, которым сжимаются новые кадры
+     *
+     * @return Текущий словарь или {@code null}, если словарей нет
+     */
+    public CompressionDictionary current() {
+        return current;
+    }
+
+    /**
+     * Возвращает словарь по идентификатору
+     *
+     * @param id Идентификатор словаря
+     * @return Словарь
+     * @throws IllegalStateException Если словарь неизвестен
+     */
+    public CompressionDictionary get(int id) {
+        CompressionDictionary dictionary = dictionaries.get(id);
+        if (dictionary == null) {
+            throw new IllegalStateException("Неизвестный словарь сжатия: " + id);
+        }
+        return dictionary;
+    }
+}
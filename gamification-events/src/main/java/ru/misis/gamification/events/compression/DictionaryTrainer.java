@@ -0,0 +1,155 @@
+package ru.misis.gamification.events.compression;
+
+import ru.misis.gamification.events.util.Hashing;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Обучение словаря сжатия на образцах сообщений
+ *
+ * <p>
+ * Упрощенный алгоритм COVER из zstd: частоты всех подстрок длины {@value #DMER}
+ * считаются в хеш-таблице, образцы делятся на эпохи по числу сегментов словаря,
+ * и в каждой эпохе выбирается сегмент длины {@value #SEGMENT} с наибольшей суммарной
+ * частотой подстрок. Подстроки выбранного сегмента обнуляются, чтобы следующие
+ * сегменты покрывали новое содержимое. Сегменты располагаются по возрастанию ценности,
+ * самые частые фрагменты оказываются в конце словаря.
+ * </p>
+ */
+public final class DictionaryTrainer {
+
+    /**
+     * Длина подстроки, по которой оценивается частота
+     */
+    static final int DMER = 8;
+
+    /**
+     * Длина сегмента словаря
+     */
+    static final int SEGMENT = 64;
+
+    private static final int TABLE_BITS = 20;
+
+    private DictionaryTrainer() {
+    }
+
+    /**
+     * Обучает словарь максимального размера
+     *
+     * @param id      Идентификатор версии словаря
+     * @param samples Образцы сообщений
+     * @return Словарь
+     */
+    public static CompressionDictionary train(int id, List<byte[]> samples) {
+        return train(id, samples, CompressionDictionary.MAX_SIZE);
+    }
+
+    /**
+     * Обучает словарь
+     *
+     * @param id             Идентификатор версии словаря
+     * @param samples        Образцы сообщений, желательно в десятки раз больше словаря по объему
+     * @param dictionarySize Размер словаря в байтах
+     * @return Словарь
+     * @throws IllegalArgumentException Если образцов нет
+     */
+    public static CompressionDictionary train(int id, List<byte[]> samples, int dictionarySize) {
+        if (dictionarySize <= 0 || dictionarySize > CompressionDictionary.MAX_SIZE) {
+            throw new IllegalArgumentException("Размер словаря должен быть от 1 до " + CompressionDictionary.MAX_SIZE);
+        }
+        ByteArrayOutputStream concatenated = new ByteArrayOutputStream();
+        List<Integer> sampleEnds = new ArrayList<>(samples.size());
+        for (byte[] sample : samples) {
+            concatenated.writeBytes(sample);
+            sampleEnds.add(concatenated.size());
+        }
+        byte[] data = concatenated.toByteArray();
+        if (data.length == 0) {
+            throw new IllegalArgumentException("Нет образцов для обучения словаря");
+        }
+        if (data.length <= dictionarySize) {
+            return new CompressionDictionary(id, data);
+        }
+
+        int[] dmers = dmerSlots(data, sampleEnds);
+        int[] frequencies = new int[1 << TABLE_BITS];
+        for (int slot : dmers) {
+            if (slot >= 0) {
+                frequencies[slot]++;
+            }
+        }
+
+        int epochs = Math.max(1, dictionarySize / SEGMENT);
+        int epochSize = Math.max(SEGMENT, data.length / epochs);
+        int window = SEGMENT - DMER + 1;
+        List<long[]> segments = new ArrayList<>(epochs);
+        for (int epochStart = 0; epochStart + SEGMENT <= data.length; epochStart += epochSize) {
+            int epochEnd = Math.min(data.length, epochStart + epochSize);
+            long score = 0;
+            for (int i = epochStart; i < epochStart + window; i++) {
+                score += frequency(dmers, frequencies, i);
+            }
+            long bestScore = score;
+            int bestStart = epochStart;
+            for (int start = epochStart + 1; start + SEGMENT <= epochEnd; start++) {
+                score += frequency(dmers, frequencies, start + window - 1) - frequency(dmers, frequencies, start - 1);
+                if (score > bestScore) {
+                    bestScore = score;
+                    bestStart = start;
+                }
+            }
+            if (bestScore <= 0) {
+                continue;
+            }
+            segments.add(new long[]{bestStart, bestScore});
+            for (int i = bestStart; i < bestStart + window; i++) {
+                if (dmers[i] >= 0) {
+                    frequencies[dmers[i]] = 0;
+                }
+            }
+        }
+
+        segments.sort(Comparator.comparingLong((long[] segment) -> segment[1]));
+        int count = Math.min(segments.size(), dictionarySize / SEGMENT);
+        ByteArrayOutputStream dictionary = new ByteArrayOutputStream(count * SEGMENT);
+        for (long[] segment : segments.subList(segments.size() - count, segments.size())) {
+            dictionary.write(data, (int) segment[0], SEGMENT);
+        }
+        return dictionary.size() == 0
+                ? new CompressionDictionary(id, Arrays.copyOfRange(data, data.length - dictionarySize, data.length))
+                : new CompressionDictionary(id, dictionary.toByteArray());
+    }
+
+    /**
+     * Возвращает слот хеш-таблицы подстроки, начинающейся в каждой позиции,
+     * или {@code -1}, если подстрока выходит за границу образца
+     */
+    private static int[] dmerSlots(byte[] data, List<Integer> sampleEnds) {
+        int[] slots = new int[data.length];
+        int sampleStart = 0;
+        for (int sampleEnd : sampleEnds) {
+            for (int i = sampleStart; i < sampleEnd; i++) {
+                if (i + DMER > sampleEnd) {
+                    slots[i] = -1;
+                    continue;
+                }
+                long value = 0;
+                for (int j = 0; j < DMER; j++) {
+                    value = (value << 8) | (data[i + j] & 0xFF);
+                }
+                slots[i] = (int) (Hashing.mix64(value) >>> (Long.SIZE - TABLE_BITS));
+            }
+            sampleStart = sampleEnd;
+        }
+        return slots;
+    }
+
+    private static int frequency(int[] dmers, int[] frequencies, int position) {
+        int slot = dmers[position];
+        return slot < 0 ? 0 : frequencies[slot];
+    }
+}
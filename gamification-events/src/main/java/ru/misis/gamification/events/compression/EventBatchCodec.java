@@ -0,0 +1,138 @@
+package ru.misis.gamification.events.compression;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Сжатие пачек и сегментов событий в NDJSON со словарем
+ *
+ * <pre>{@code
+ * DictionaryRegistry registry = DictionaryRegistry.load(dictionaries);
+ * EventBatchCodec codec = new EventBatchCodec(objectMapper, new DictionaryCodec(registry));
+ * DictionaryRegistry.save(dictionaries, codec.retrain(registry, recentEvents));
+ * byte[] frame = codec.encode(batch);
+ * }</pre>
+ */
+public class EventBatchCodec {
+
+    private static final byte NEWLINE = '\n';
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectReader reader;
+
+    private final DictionaryCodec codec;
+
+    /**
+     * Создает кодек пачек
+     *
+     * @param objectMapper ObjectMapper с поддержкой {@code java.time}
+     * @param codec        Кодек кадров
+     */
+    public EventBatchCodec(ObjectMapper objectMapper, DictionaryCodec codec) {
+        this.objectMapper = objectMapper;
+        this.reader = objectMapper.readerFor(GamificationEvent.class);
+        this.codec = codec;
+    }
+
+    /**
+     * Сжимает пачку событий в один кадр
+     *
+     * @param events События
+     * @return Кадр
+     */
+    public byte[] encode(List<? extends GamificationEvent> events) {
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream(events.size() * 256);
+        for (GamificationEvent event : events) {
+            ndjson.writeBytes(toJson(event));
+            ndjson.write(NEWLINE);
+        }
+        return codec.compress(ndjson.toByteArray());
+    }
+
+    /**
+     * Распаковывает пачку событий
+     *
+     * @param frame Кадр
+     * @return События в исходном порядке
+     * @throws IOException Если кадр поврежден
+     */
+    public List<GamificationEvent> decode(byte[] frame) throws IOException {
+        List<GamificationEvent> events = new ArrayList<>();
+        read(new ByteArrayInputStream(codec.decompress(frame)), events::add);
+        return events;
+    }
+
+    /**
+     * Пишет события в сжатый сегмент по мере поступления
+     *
+     * @param out    Поток сегмента, закрывается по завершении
+     * @param events События
+     * @throws IOException Если не удалось записать сегмент
+     */
+    public void writeSegment(OutputStream out, Iterable<? extends GamificationEvent> events) throws IOException {
+        try (OutputStream compressed = codec.compressingStream(out)) {
+            for (GamificationEvent event : events) {
+                compressed.write(toJson(event));
+                compressed.write(NEWLINE);
+            }
+        }
+    }
+
+    /**
+     * Читает события сжатого сегмента по одному, не загружая сегмент в память целиком
+     *
+     * @param in       Поток сегмента, закрывается по завершении
+     * @param consumer Получатель событий
+     * @throws IOException Если сегмент поврежден
+     */
+    public void readSegment(InputStream in, Consumer<GamificationEvent> consumer) throws IOException {
+        try (InputStream decompressed = codec.decompressingStream(in)) {
+            read(decompressed, consumer);
+        }
+    }
+
+    /**
+     * Обучает новую версию словаря на событиях и делает ее текущей
+     *
+     * @param registry Реестр словарей кодека
+     * @param samples  Образцы событий, например события за последние сутки
+     * @return Новый словарь
+     */
+    public CompressionDictionary retrain(DictionaryRegistry registry, List<? extends GamificationEvent> samples) {
+        List<byte[]> encoded = new ArrayList<>(samples.size());
+        for (GamificationEvent event : samples) {
+            encoded.add(toJson(event));
+        }
+        return registry.retrain(encoded);
+    }
+
+    private void read(InputStream in, Consumer<GamificationEvent> consumer) throws IOException {
+        try (MappingIterator<GamificationEvent> iterator = reader.readValues(in)) {
+            while (iterator.hasNextValue()) {
+                consumer.accept(iterator.nextValue());
+            }
+        }
+    }
+
+    private byte[] toJson(GamificationEvent event) {
+        try {
+            return objectMapper.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -11,6 +11,7 @@ import ru.misis.gamification.events.domain.extenal.CourseEnrolledEvent;
 import ru.misis.gamification.events.domain.extenal.ForumPostCreatedEvent;
 import ru.misis.gamification.events.domain.extenal.TaskCompletedEvent;
 import ru.misis.gamification.events.domain.extenal.TestPassedEvent;
+import ru.misis.gamification.events.domain.internal.AchievementEvent;
 import ru.misis.gamification.events.domain.internal.LevelUpEvent;
 import ru.misis.gamification.events.domain.internal.PointsChangedEvent;
 
@@ -42,7 +43,8 @@ import java.util.UUID;
 
         // Внутренние события
         @JsonSubTypes.Type(value = PointsChangedEvent.class, name = EventConstants.POINTS_CHANGED),
-        @JsonSubTypes.Type(value = LevelUpEvent.class, name = EventConstants.LEVEL_UP)
+        @JsonSubTypes.Type(value = LevelUpEvent.class, name = EventConstants.LEVEL_UP),
+        @JsonSubTypes.Type(value = AchievementEvent.class, name = EventConstants.ACHIEVEMENT_UNLOCKED)
 })
 @JsonSerialize
 @JsonDeserialize
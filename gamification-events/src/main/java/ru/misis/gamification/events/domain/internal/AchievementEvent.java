@@ -1,5 +1,6 @@
 package ru.misis.gamification.events.domain.internal;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -139,6 +140,7 @@ public record AchievementEvent(
      *
      * @return {@code true} Если редкость "RARE", "EPIC" или "LEGENDARY"
      */
+    @JsonIgnore
     public boolean isRareOrAbove() {
         return switch (rarity.toUpperCase()) {
             case EventConstants.ACHIEVEMENT_RARITY_RARE,
@@ -153,6 +155,7 @@ public record AchievementEvent(
      *
      * @return {@code true} Если редкость "EPIC" или "LEGENDARY"
      */
+    @JsonIgnore
     public boolean isEpicOrLegendary() {
         return switch (rarity.toUpperCase()) {
             case EventConstants.ACHIEVEMENT_RARITY_EPIC,
@@ -166,6 +169,7 @@ public record AchievementEvent(
      *
      * @return Форматированная строка с информацией о достижении
      */
+    @JsonIgnore
     public String getNotificationMessage() {
         return String.format(
                 "Поздравляем! Вы получили достижение \"%s\" (%s). Начислено %d очков.",
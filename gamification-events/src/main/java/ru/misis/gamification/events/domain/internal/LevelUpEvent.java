@@ -1,6 +1,7 @@
 package ru.misis.gamification.events.domain.internal;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -104,6 +105,7 @@ public record LevelUpEvent(
     /**
      * Возвращает разницу между уровнями
      */
+    @JsonIgnore
     public int getLevelDifference() {
         return newLevel - oldLevel;
     }
@@ -1,5 +1,6 @@
 package ru.misis.gamification.events.domain.internal;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.validation.constraints.Min;
 import jakarta.validation.constraints.NotBlank;
@@ -157,6 +158,7 @@ public record PointsChangedEvent(
      *
      * @return true если pointsDelta &gt; 0, иначе false
      */
+    @JsonIgnore
     public boolean isAward() {
         return pointsDelta > 0;
     }
@@ -166,6 +168,7 @@ public record PointsChangedEvent(
      *
      * @return true если pointsDelta &lt; 0, иначе false
      */
+    @JsonIgnore
     public boolean isDeduction() {
         return pointsDelta < 0;
     }
@@ -175,6 +178,7 @@ public record PointsChangedEvent(
      *
      * @return положительное число, представляющее абсолютное значение изменения
      */
+    @JsonIgnore
     public long getAbsoluteDelta() {
         return Math.abs(pointsDelta);
     }
@@ -0,0 +1,215 @@
+package ru.misis.gamification.events.experiment;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.domain.internal.PointsChangedEvent;
+import ru.misis.gamification.events.util.Hashing;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A/B эксперимент над правилами геймификации
+ *
+ * <p>
+ * Вариант пользователя определяется хешем {@link GamificationEvent#userId()} с солью
+ * эксперимента ({@link Hashing#hash64(CharSequence, long)}), без хранения назначений
+ * и обращений к внешним системам: один хеш строки и поиск по нескольким границам.
+ * Пользователь попадает в один и тот же вариант на любом экземпляре сервиса,
+ * а разные соли дают независимые разбиения для параллельных экспериментов.
+ * Изменение весов, порядка вариантов или соли перераспределяет пользователей.
+ * </p>
+ *
+ * <p>
+ * Каждое начисление {@link PointsChangedEvent} несет вариант в {@code ruleId} вида
+ * {@code <набор правил>@<эксперимент>:<вариант>}; строки собираются при создании
+ * эксперимента. Счетчики исходов вариантов ({@link VariantStats}) обновляются
+ * на каждом событии через {@link LongAdder}. Класс потокобезопасен.
+ * </p>
+ */
+public class Experiment {
+
+    /**
+     * Максимальная длина {@code ruleId} в {@link PointsChangedEvent}
+     */
+    static final int MAX_RULE_ID_LENGTH = 50;
+
+    private final String id;
+
+    private final long salt;
+
+    private final Variant[] variants;
+
+    /**
+     * Накопленные веса: вариант {@code i} получает корзины {@code [upperBounds[i-1], upperBounds[i])}
+     */
+    private final long[] upperBounds;
+
+    private final String[] ruleIds;
+
+    private final Counters[] counters;
+
+    /**
+     * Создает эксперимент с солью, производной от идентификатора
+     *
+     * @param id       Идентификатор эксперимента
+     * @param variants Варианты
+     */
+    public Experiment(String id, List<Variant> variants) {
+        this(id, Hashing.hash64(id), variants);
+    }
+
+    /**
+     * Создает эксперимент
+     *
+     * @param id       Идентификатор эксперимента
+     * @param salt     Соль хеширования пользователей
+     * @param variants Варианты
+     * @throws IllegalArgumentException Если вариантов нет, имена повторяются,
+     *                                  идентификатор содержит {@code '@'} или {@code ':'}
+     *                                  либо {@code ruleId} длиннее 50 символов
+     */
+    public Experiment(String id, long salt, List<Variant> variants) {
+        if (id == null || id.isBlank() || id.indexOf('@') >= 0 || id.indexOf(':') >= 0) {
+            throw new IllegalArgumentException("Идентификатор эксперимента не может быть пустым и содержать '@' или ':'");
+        }
+        if (variants.isEmpty()) {
+            throw new IllegalArgumentException("Эксперимент должен содержать хотя бы один вариант");
+        }
+        this.id = id;
+        this.salt = salt;
+        this.variants = variants.toArray(new Variant[0]);
+        this.upperBounds = new long[this.variants.length];
+        this.ruleIds = new String[this.variants.length];
+        this.counters = new Counters[this.variants.length];
+
+        Set<String> names = new HashSet<>();
+        long bound = 0;
+        for (int i = 0; i < this.variants.length; i++) {
+            Variant variant = this.variants[i];
+            if (!names.add(variant.name())) {
+                throw new IllegalArgumentException("Повторяется имя варианта: " + variant.name());
+            }
+            String ruleId = variant.rules().id() + "@" + id + ":" + variant.name();
+            if (ruleId.length() > MAX_RULE_ID_LENGTH) {
+                throw new IllegalArgumentException("ruleId длиннее " + MAX_RULE_ID_LENGTH + " символов: " + ruleId);
+            }
+            bound += variant.weight();
+            upperBounds[i] = bound;
+            ruleIds[i] = ruleId;
+            counters[i] = new Counters();
+        }
+    }
+
+    /**
+     * Идентификатор эксперимента
+     *
+     * @return Идентификатор
+     */
+    public String id() {
+        return id;
+    }
+
+    /**
+     * Возвращает вариант пользователя
+     *
+     * @param userId Идентификатор пользователя
+     * @return Вариант
+     */
+    public Variant assign(String userId) {
+        return variants[indexOf(userId)];
+    }
+
+    /**
+     * Вычисляет начисление за событие по правилам варианта пользователя
+     *
+     * <p>
+     * Уровень считается по кривой варианта от нового общего баланса.
+     * Событие учитывается в счетчиках варианта, даже если очки не начислены.
+     * </p>
+     *
+     * @param event         Внешнее событие
+     * @param balance       Текущий баланс пользователя на активном счете
+     * @param totalBalance  Текущий общий баланс пользователя
+     * @param transactionId Идентификатор транзакции начисления
+     * @return Событие начисления или {@code null}, если правила варианта не начисляют очков
+     */
+    public PointsChangedEvent award(GamificationEvent event, long balance, long totalBalance, UUID transactionId) {
+        int index = indexOf(event.userId());
+        Variant variant = variants[index];
+        Counters variantCounters = counters[index];
+        variantCounters.events.increment();
+
+        long points = variant.rules().points(event);
+        if (points <= 0) {
+            return null;
+        }
+        long newTotalBalance = totalBalance + points;
+        int newLevel = variant.levels().levelFor(newTotalBalance);
+        variantCounters.awards.increment();
+        variantCounters.points.add(points);
+        if (newLevel > variant.levels().levelFor(totalBalance)) {
+            variantCounters.levelUps.increment();
+        }
+        return PointsChangedEvent.awardPoints(event.eventId(), event.userId(), points,
+                balance + points, newTotalBalance, newLevel, transactionId, ruleIds[index]);
+    }
+
+    /**
+     * Возвращает счетчики исходов вариантов в порядке объявления
+     *
+     * @return Снимок счетчиков
+     */
+    public List<VariantStats> stats() {
+        List<VariantStats> stats = new ArrayList<>(variants.length);
+        for (int i = 0; i < variants.length; i++) {
+            Counters variantCounters = counters[i];
+            stats.add(new VariantStats(variants[i].name(), variantCounters.events.sum(),
+                    variantCounters.awards.sum(), variantCounters.points.sum(), variantCounters.levelUps.sum()));
+        }
+        return stats;
+    }
+
+    /**
+     * Возвращает имя варианта этого эксперимента по {@code ruleId} начисления
+     *
+     * <p>
+     * {@code ruleId} сравнивается целиком со строками вариантов эксперимента,
+     * поэтому начисления других экспериментов и обычных правил не распознаются ошибочно.
+     * </p>
+     *
+     * @param ruleId {@link PointsChangedEvent#ruleId()}
+     * @return Имя варианта или {@code null}, если начисление сделано не этим экспериментом
+     */
+    public String variantOf(String ruleId) {
+        for (int i = 0; i < ruleIds.length; i++) {
+            if (ruleIds[i].equals(ruleId)) {
+                return variants[i].name();
+            }
+        }
+        return null;
+    }
+
+    private int indexOf(String userId) {
+        long bucket = Math.floorMod(Hashing.hash64(userId, salt), upperBounds[upperBounds.length - 1]);
+        int index = 0;
+        while (bucket >= upperBounds[index]) {
+            index++;
+        }
+        return index;
+    }
+
+    private static final class Counters {
+
+        private final LongAdder events = new LongAdder();
+
+        private final LongAdder awards = new LongAdder();
+
+        private final LongAdder points = new LongAdder();
+
+        private final LongAdder levelUps = new LongAdder();
+    }
+}
@@ -0,0 +1,79 @@
+package ru.misis.gamification.events.experiment;
+
+import java.util.Arrays;
+
+/**
+ * Кривая уровней: пороги общего баланса очков, с которых начинается каждый уровень
+ *
+ * <p>
+ * Первый уровень начинается с нуля, уровень по балансу ищется двоичным поиском
+ * по порогам.
+ * </p>
+ *
+ * @see Variant
+ */
+public final class LevelCurve {
+
+    private final long[] thresholds;
+
+    private LevelCurve(long[] thresholds) {
+        this.thresholds = thresholds;
+    }
+
+    /**
+     * Создает кривую по порогам
+     *
+     * @param thresholds Пороги уровней начиная со второго, строго возрастающие и положительные
+     * @return Кривая уровней
+     * @throws IllegalArgumentException Если пороги не положительные или не возрастают
+     */
+    public static LevelCurve of(long... thresholds) {
+        long previous = 0;
+        for (long threshold : thresholds) {
+            if (threshold <= previous) {
+                throw new IllegalArgumentException("Пороги уровней должны быть положительными и строго возрастать");
+            }
+            previous = threshold;
+        }
+        return new LevelCurve(thresholds.clone());
+    }
+
+    /**
+     * Создает квадратичную кривую: уровень {@code n} начинается с {@code step * (n - 1)^2} очков
+     *
+     * @param step     Очки второго уровня
+     * @param maxLevel Максимальный уровень
+     * @return Кривая уровней
+     * @throws IllegalArgumentException Если параметры не положительные
+     */
+    public static LevelCurve quadratic(long step, int maxLevel) {
+        if (step <= 0 || maxLevel <= 0) {
+            throw new IllegalArgumentException("step и maxLevel должны быть положительными");
+        }
+        long[] thresholds = new long[maxLevel - 1];
+        for (int i = 0; i < thresholds.length; i++) {
+            thresholds[i] = step * (i + 1) * (i + 1);
+        }
+        return new LevelCurve(thresholds);
+    }
+
+    /**
+     * Возвращает уровень для общего баланса
+     *
+     * @param totalBalance Общий баланс очков
+     * @return Уровень, не меньше 1
+     */
+    public int levelFor(long totalBalance) {
+        int index = Arrays.binarySearch(thresholds, totalBalance);
+        return (index >= 0 ? index + 1 : -index - 1) + 1;
+    }
+
+    /**
+     * Максимальный уровень кривой
+     *
+     * @return Уровень
+     */
+    public int maxLevel() {
+        return thresholds.length + 1;
+    }
+}
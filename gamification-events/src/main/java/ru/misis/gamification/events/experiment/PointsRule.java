@@ -0,0 +1,20 @@
+package ru.misis.gamification.events.experiment;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+/**
+ * Правило начисления очков за внешнее событие
+ *
+ * @see RuleSet
+ */
+@FunctionalInterface
+public interface PointsRule {
+
+    /**
+     * Вычисляет количество очков за событие
+     *
+     * @param event Внешнее событие
+     * @return Количество очков; ноль и отрицательные значения означают отсутствие начисления
+     */
+    long points(GamificationEvent event);
+}
@@ -0,0 +1,63 @@
+package ru.misis.gamification.events.experiment;
+
+import ru.misis.gamification.events.constants.EventConstants;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.Map;
+
+/**
+ * Неизменяемый набор правил начисления очков по типам событий
+ *
+ * <p>
+ * Правила собираются один раз при создании набора, вычисление - один поиск
+ * по типу события и вызов правила.
+ * </p>
+ *
+ * @see Variant
+ */
+public final class RuleSet {
+
+    private final String id;
+
+    private final Map<String, PointsRule> rulesByType;
+
+    private RuleSet(String id, Map<String, PointsRule> rulesByType) {
+        this.id = id;
+        this.rulesByType = rulesByType;
+    }
+
+    /**
+     * Создает набор правил
+     *
+     * @param id          Идентификатор набора, попадает в {@code ruleId} начислений
+     * @param rulesByType Правила по типам событий из {@link EventConstants}
+     * @return Набор правил
+     * @throws IllegalArgumentException Если идентификатор пустой или содержит {@code '@'}
+     */
+    public static RuleSet of(String id, Map<String, PointsRule> rulesByType) {
+        if (id == null || id.isBlank() || id.indexOf('@') >= 0) {
+            throw new IllegalArgumentException("Идентификатор набора правил не может быть пустым и содержать '@'");
+        }
+        return new RuleSet(id, Map.copyOf(rulesByType));
+    }
+
+    /**
+     * Идентификатор набора
+     *
+     * @return Идентификатор
+     */
+    public String id() {
+        return id;
+    }
+
+    /**
+     * Вычисляет очки за событие
+     *
+     * @param event Внешнее событие
+     * @return Количество очков или {@code 0}, если для типа события нет правила
+     */
+    public long points(GamificationEvent event) {
+        PointsRule rule = rulesByType.get(event.type());
+        return rule == null ? 0 : rule.points(event);
+    }
+}
@@ -0,0 +1,31 @@
+package ru.misis.gamification.events.experiment;
+
+/**
+ * Вариант эксперимента со своими правилами начисления и кривой уровней
+ *
+ * @param name   Имя варианта, попадает в {@code ruleId} начислений
+ * @param weight Доля пользователей варианта относительно суммы весов эксперимента
+ * @param rules  Правила начисления очков
+ * @param levels Кривая уровней
+ * @see Experiment
+ */
+public record Variant(String name, int weight, RuleSet rules, LevelCurve levels) {
+
+    /**
+     * Проверяет имя, вес и правила варианта
+     *
+     * @throws IllegalArgumentException Если имя пустое или содержит {@code '@'} или {@code ':'},
+     *                                  вес не положителен либо правила или кривая не заданы
+     */
+    public Variant {
+        if (name == null || name.isBlank() || name.indexOf('@') >= 0 || name.indexOf(':') >= 0) {
+            throw new IllegalArgumentException("Имя варианта не может быть пустым и содержать '@' или ':'");
+        }
+        if (weight <= 0) {
+            throw new IllegalArgumentException("Вес варианта должен быть положительным");
+        }
+        if (rules == null || levels == null) {
+            throw new IllegalArgumentException("rules и levels не могут быть null");
+        }
+    }
+}
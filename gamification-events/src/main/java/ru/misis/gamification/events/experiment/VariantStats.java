@@ -0,0 +1,22 @@
+package ru.misis.gamification.events.experiment;
+
+/**
+ * Счетчики исходов варианта эксперимента
+ *
+ * @param variant  Имя варианта
+ * @param events   Количество обработанных событий
+ * @param awards   Количество начислений
+ * @param points   Сумма начисленных очков
+ * @param levelUps Количество повышений уровня
+ */
+public record VariantStats(String variant, long events, long awards, long points, long levelUps) {
+
+    /**
+     * Среднее количество очков на событие
+     *
+     * @return Очки на событие или {@code 0}, если событий не было
+     */
+    public double pointsPerEvent() {
+        return events == 0 ? 0 : (double) points / events;
+    }
+}
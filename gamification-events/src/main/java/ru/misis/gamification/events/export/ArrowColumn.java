@@ -0,0 +1,252 @@
+package ru.misis.gamification.events.export;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BaseFixedWidthVector;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.FixedSizeBinaryVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMicroVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.TimeUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+
+/**
+ * Описание колонки Arrow для поля события
+ *
+ * @param name   Имя колонки, совпадает с именем JSON-свойства события
+ * @param kind   Тип колонки
+ * @param getter Функция получения значения поля
+ * @param <E>    Тип события
+ */
+record ArrowColumn<E>(String name, Kind kind, Function<E, ?> getter) {
+
+    private static final ArrowType.Int DICTIONARY_INDEX_TYPE = new ArrowType.Int(32, true);
+
+    /**
+     * Тип колонки
+     */
+    enum Kind {
+        /**
+         * UUID, 16 байт
+         */
+        UUID(new ArrowType.FixedSizeBinary(16)),
+
+        /**
+         * Строка с кодированием по словарю, для повторяющихся идентификаторов
+         */
+        DICTIONARY(ArrowType.Utf8.INSTANCE),
+
+        /**
+         * Строка без словаря, для уникальных и произвольных значений
+         */
+        TEXT(ArrowType.Utf8.INSTANCE),
+
+        /**
+         * Метка времени в микросекундах без часового пояса
+         */
+        TIMESTAMP(new ArrowType.Timestamp(TimeUnit.MICROSECOND, null)),
+
+        /**
+         * 32-битное целое
+         */
+        INT32(new ArrowType.Int(32, true)),
+
+        /**
+         * 64-битное целое
+         */
+        INT64(new ArrowType.Int(64, true)),
+
+        /**
+         * Число с плавающей точкой двойной точности
+         */
+        FLOAT64(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+
+        /**
+         * Логическое значение
+         */
+        BOOL(ArrowType.Bool.INSTANCE);
+
+        private final ArrowType valueType;
+
+        Kind(ArrowType valueType) {
+            this.valueType = valueType;
+        }
+    }
+
+    /**
+     * Создает поле схемы Arrow для колонки
+     *
+     * @param dictionaryId Идентификатор словаря, используется только для {@link Kind#DICTIONARY}
+     * @return Поле схемы
+     */
+    Field field(long dictionaryId) {
+        if (kind == Kind.DICTIONARY) {
+            DictionaryEncoding encoding = new DictionaryEncoding(dictionaryId, false, DICTIONARY_INDEX_TYPE);
+            return new Field(name, new FieldType(true, DICTIONARY_INDEX_TYPE, encoding), null);
+        }
+        return new Field(name, FieldType.nullable(kind.valueType), null);
+    }
+
+    /**
+     * Привязывает колонку к вектору пакета
+     *
+     * @param vector       Вектор колонки из {@code VectorSchemaRoot}
+     * @param dictionaryId Идентификатор словаря, используется только для {@link Kind#DICTIONARY}
+     * @param allocator    Аллокатор для вектора словаря
+     * @return Писатель значений колонки
+     */
+    Writer<E> bind(FieldVector vector, long dictionaryId, BufferAllocator allocator) {
+        if (kind == Kind.DICTIONARY) {
+            return new DictionaryWriter<>(this, (IntVector) vector, dictionaryId, allocator);
+        }
+        return new Writer<>(this, vector);
+    }
+
+    /**
+     * Записывает значения поля событий в вектор колонки
+     *
+     * @param <E> Тип события
+     */
+    static class Writer<E> {
+
+        final ArrowColumn<E> column;
+
+        final FieldVector vector;
+
+        Writer(ArrowColumn<E> column, FieldVector vector) {
+            this.column = column;
+            this.vector = vector;
+        }
+
+        /**
+         * Записывает значение поля события в строку пакета
+         *
+         * @param event Событие
+         * @param row   Номер строки
+         */
+        void write(E event, int row) {
+            Object value = column.getter().apply(event);
+            if (value == null) {
+                setNull(vector, row);
+                return;
+            }
+            switch (column.kind()) {
+                case UUID -> ((FixedSizeBinaryVector) vector).setSafe(row, toBytes((UUID) value));
+                case TEXT -> ((VarCharVector) vector).setSafe(row, ((String) value).getBytes(StandardCharsets.UTF_8));
+                case TIMESTAMP -> ((TimeStampMicroVector) vector).setSafe(row, toMicros((LocalDateTime) value));
+                case INT32 -> ((IntVector) vector).setSafe(row, ((Number) value).intValue());
+                case INT64 -> ((BigIntVector) vector).setSafe(row, ((Number) value).longValue());
+                case FLOAT64 -> ((Float8Vector) vector).setSafe(row, ((Number) value).doubleValue());
+                case BOOL -> ((BitVector) vector).setSafe(row, (Boolean) value ? 1 : 0);
+                default -> throw new IllegalStateException("Неподдерживаемый тип колонки: " + column.kind());
+            }
+        }
+
+        /**
+         * Возвращает словарь колонки
+         *
+         * @return Словарь или {@code null}, если колонка не кодируется словарем
+         */
+        Dictionary dictionary() {
+            return null;
+        }
+
+        /**
+         * Фиксирует количество значений перед записью пакета
+         *
+         * @param rowCount Количество строк пакета
+         */
+        void finish(int rowCount) {
+            vector.setValueCount(rowCount);
+        }
+    }
+
+    /**
+     * Записывает строки как индексы словаря, пополняя словарь новыми значениями
+     *
+     * @param <E> Тип события
+     */
+    static final class DictionaryWriter<E> extends Writer<E> {
+
+        private final VarCharVector values;
+
+        private final Dictionary dictionary;
+
+        private final Map<String, Integer> indexes = new HashMap<>();
+
+        DictionaryWriter(ArrowColumn<E> column, IntVector vector, long dictionaryId, BufferAllocator allocator) {
+            super(column, vector);
+            this.values = new VarCharVector(
+                    new Field(column.name(), FieldType.nullable(ArrowType.Utf8.INSTANCE), null), allocator);
+            this.values.allocateNew();
+            this.dictionary = new Dictionary(values,
+                    new DictionaryEncoding(dictionaryId, false, DICTIONARY_INDEX_TYPE));
+        }
+
+        @Override
+        void write(E event, int row) {
+            Object value = column.getter().apply(event);
+            if (value == null) {
+                setNull(vector, row);
+                return;
+            }
+            Integer index = indexes.get(value);
+            if (index == null) {
+                index = indexes.size();
+                values.setSafe(index, ((String) value).getBytes(StandardCharsets.UTF_8));
+                indexes.put((String) value, index);
+            }
+            ((IntVector) vector).setSafe(row, index);
+        }
+
+        @Override
+        Dictionary dictionary() {
+            return dictionary;
+        }
+
+        @Override
+        void finish(int rowCount) {
+            super.finish(rowCount);
+            values.setValueCount(indexes.size());
+        }
+    }
+
+    private static void setNull(FieldVector vector, int row) {
+        if (vector instanceof BaseFixedWidthVector fixedWidth) {
+            fixedWidth.setNull(row);
+        } else if (vector instanceof BaseVariableWidthVector variableWidth) {
+            variableWidth.setNull(row);
+        } else {
+            throw new IllegalStateException("Неподдерживаемый вектор: " + vector.getClass().getSimpleName());
+        }
+    }
+
+    private static byte[] toBytes(UUID uuid) {
+        return ByteBuffer.allocate(16)
+                .putLong(uuid.getMostSignificantBits())
+                .putLong(uuid.getLeastSignificantBits())
+                .array();
+    }
+
+    private static long toMicros(LocalDateTime value) {
+        return value.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + value.getNano() / 1_000L;
+    }
+}
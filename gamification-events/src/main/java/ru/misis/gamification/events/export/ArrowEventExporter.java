@@ -0,0 +1,268 @@
+package ru.misis.gamification.events.export;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Экспорт истории событий в файлы Apache Arrow IPC для офлайн-анализа
+ *
+ * <p>
+ * События каждого типа пишутся в отдельный каталог со своей схемой
+ * ({@code <directory>/<TYPE>/part-<run>-<seq>.arrow}). События накапливаются
+ * в векторах Arrow и сбрасываются в новый файл, когда пакет типа достигает
+ * {@code batchRows} строк, поэтому память ограничена размером пакета на тип
+ * независимо от объема истории. Каждый файл содержит собственные словари,
+ * каталог типа читается как единый набор данных (например, {@code pyarrow.dataset}).
+ * </p>
+ *
+ * <p>
+ * Файл сначала пишется во временный и затем атомарно переименовывается,
+ * читатели не видят частично записанных файлов. Класс потокобезопасен.
+ * </p>
+ */
+public class ArrowEventExporter implements AutoCloseable {
+
+    /**
+     * Размер пакета по умолчанию
+     */
+    public static final int DEFAULT_BATCH_ROWS = 65_536;
+
+    private final Path directory;
+
+    private final int batchRows;
+
+    private final BufferAllocator allocator;
+
+    private final String runId;
+
+    private final Map<String, Batch<?>> batches = new HashMap<>();
+
+    private long fileSequence;
+
+    private boolean closed;
+
+    /**
+     * Создает экспортер с размером пакета по умолчанию
+     *
+     * @param directory Каталог для файлов Arrow
+     */
+    public ArrowEventExporter(Path directory) {
+        this(directory, DEFAULT_BATCH_ROWS, Long.MAX_VALUE);
+    }
+
+    /**
+     * Создает экспортер
+     *
+     * @param directory      Каталог для файлов Arrow
+     * @param batchRows      Максимальное количество строк в файле
+     * @param maxMemoryBytes Ограничение памяти аллокатора Arrow
+     * @throws IllegalArgumentException Если размер пакета не положителен
+     */
+    public ArrowEventExporter(Path directory, int batchRows, long maxMemoryBytes) {
+        if (batchRows <= 0) {
+            throw new IllegalArgumentException("batchRows должен быть положительным");
+        }
+        this.directory = directory;
+        this.batchRows = batchRows;
+        this.allocator = new RootAllocator(maxMemoryBytes);
+        this.runId = Long.toString(System.currentTimeMillis(), 36);
+    }
+
+    /**
+     * Добавляет событие в пакет его типа и сбрасывает пакет в файл при заполнении
+     *
+     * @param event Событие геймификации
+     * @throws IllegalArgumentException Если для типа события нет схемы
+     * @throws UncheckedIOException     Если не удалось записать файл
+     */
+    public synchronized void append(GamificationEvent event) {
+        ensureOpen();
+        Batch<?> batch = batches.computeIfAbsent(event.type(), this::newBatch);
+        batch.append(event);
+        if (batch.rows >= batchRows) {
+            writeFile(batch);
+        }
+    }
+
+    /**
+     * Добавляет события в пакеты их типов
+     *
+     * @param events События геймификации
+     */
+    public synchronized void appendAll(Iterable<? extends GamificationEvent> events) {
+        for (GamificationEvent event : events) {
+            append(event);
+        }
+    }
+
+    /**
+     * Сбрасывает все непустые пакеты в файлы
+     *
+     * @throws UncheckedIOException Если не удалось записать файл
+     */
+    public synchronized void flush() {
+        ensureOpen();
+        for (Batch<?> batch : batches.values()) {
+            if (batch.rows > 0) {
+                writeFile(batch);
+            }
+        }
+    }
+
+    /**
+     * Сбрасывает оставшиеся события и освобождает память Arrow
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        try {
+            flush();
+        } finally {
+            closed = true;
+            batches.values().forEach(Batch::close);
+            batches.clear();
+            allocator.close();
+        }
+    }
+
+    private Batch<?> newBatch(String type) {
+        ArrowEventSchema<?> schema = ArrowEventSchema.BY_TYPE.get(type);
+        if (schema == null) {
+            throw new IllegalArgumentException("Нет схемы Arrow для типа события: " + type);
+        }
+        return new Batch<>(schema, allocator);
+    }
+
+    /**
+     * Записывает пакет в новый файл и очищает его только после успешного переименования
+     *
+     * <p>
+     * При ошибке временный файл удаляется, а строки остаются в пакете
+     * и попадут в файл при следующем сбросе.
+     * </p>
+     */
+    private void writeFile(Batch<?> batch) {
+        Path temp = null;
+        try {
+            Path typeDirectory = Files.createDirectories(directory.resolve(batch.schema.type()));
+            String fileName = String.format("part-%s-%06d.arrow", runId, ++fileSequence);
+            Path target = typeDirectory.resolve(fileName);
+            temp = typeDirectory.resolve(fileName + ".tmp");
+            batch.writeTo(temp);
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            UncheckedIOException failure =
+                    new UncheckedIOException("Не удалось записать файл Arrow для " + batch.schema.type(), e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException suppressed) {
+                    failure.addSuppressed(suppressed);
+                }
+            }
+            throw failure;
+        }
+        batch.close();
+        batch.reset();
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Экспортер закрыт");
+        }
+    }
+
+    /**
+     * Накапливаемый пакет событий одного типа
+     *
+     * @param <E> Класс события
+     */
+    private static final class Batch<E extends GamificationEvent> implements AutoCloseable {
+
+        private final ArrowEventSchema<E> schema;
+
+        private final BufferAllocator allocator;
+
+        private VectorSchemaRoot root;
+
+        private List<ArrowColumn.Writer<E>> writers;
+
+        private int rows;
+
+        private Batch(ArrowEventSchema<E> schema, BufferAllocator allocator) {
+            this.schema = schema;
+            this.allocator = allocator;
+            reset();
+        }
+
+        private void append(GamificationEvent event) {
+            E typed = schema.cast(event);
+            for (ArrowColumn.Writer<E> writer : writers) {
+                writer.write(typed, rows);
+            }
+            rows++;
+        }
+
+        private void writeTo(Path file) throws IOException {
+            DictionaryProvider.MapDictionaryProvider dictionaries = new DictionaryProvider.MapDictionaryProvider();
+            for (ArrowColumn.Writer<E> writer : writers) {
+                writer.finish(rows);
+                Dictionary dictionary = writer.dictionary();
+                if (dictionary != null) {
+                    dictionaries.put(dictionary);
+                }
+            }
+            root.setRowCount(rows);
+
+            try (FileChannel channel = FileChannel.open(file,
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                 ArrowFileWriter writer = new ArrowFileWriter(root, dictionaries, channel)) {
+                writer.start();
+                writer.writeBatch();
+                writer.end();
+                channel.force(true);
+            }
+        }
+
+        private void reset() {
+            root = VectorSchemaRoot.create(schema.arrowSchema(), allocator);
+            root.allocateNew();
+            writers = new ArrayList<>(schema.columns().size());
+            for (int i = 0; i < schema.columns().size(); i++) {
+                ArrowColumn<E> column = schema.columns().get(i);
+                writers.add(column.bind(root.getVector(column.name()), i, allocator));
+            }
+            rows = 0;
+        }
+
+        @Override
+        public void close() {
+            for (ArrowColumn.Writer<E> writer : writers) {
+                Dictionary dictionary = writer.dictionary();
+                if (dictionary != null) {
+                    dictionary.getVector().close();
+                }
+            }
+            root.close();
+        }
+    }
+}
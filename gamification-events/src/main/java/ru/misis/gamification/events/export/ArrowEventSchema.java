@@ -0,0 +1,148 @@
+package ru.misis.gamification.events.export;
+
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+import ru.misis.gamification.events.constants.EventConstants;
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.domain.extenal.AssignmentSubmittedEvent;
+import ru.misis.gamification.events.domain.extenal.CourseEnrolledEvent;
+import ru.misis.gamification.events.domain.extenal.ForumPostCreatedEvent;
+import ru.misis.gamification.events.domain.extenal.TaskCompletedEvent;
+import ru.misis.gamification.events.domain.extenal.TestPassedEvent;
+import ru.misis.gamification.events.domain.internal.AchievementEvent;
+import ru.misis.gamification.events.domain.internal.LevelUpEvent;
+import ru.misis.gamification.events.domain.internal.PointsChangedEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Схема Arrow для одного типа событий
+ *
+ * <p>
+ * Общие поля {@link GamificationEvent} идут первыми колонками, за ними специфичные поля записи.
+ * Повторяющиеся идентификаторы кодируются словарем, {@code occurredAt} хранится
+ * как метка времени, баллы и изменения баланса - как примитивные векторы.
+ * </p>
+ *
+ * @param type       Тип события из {@link EventConstants}
+ * @param eventClass Класс записи события
+ * @param columns    Колонки схемы
+ * @param <E>        Класс события
+ */
+record ArrowEventSchema<E extends GamificationEvent>(String type, Class<E> eventClass, List<ArrowColumn<E>> columns) {
+
+    /**
+     * Схемы всех типов событий по значению {@link GamificationEvent#type()}
+     */
+    static final Map<String, ArrowEventSchema<?>> BY_TYPE = Map.of(
+            EventConstants.TASK_COMPLETED, builder(TaskCompletedEvent.class, EventConstants.TASK_COMPLETED)
+                    .dictionary("taskId", TaskCompletedEvent::taskId)
+                    .column("score", ArrowColumn.Kind.INT32, TaskCompletedEvent::score)
+                    .build(),
+            EventConstants.TEST_PASSED, builder(TestPassedEvent.class, EventConstants.TEST_PASSED)
+                    .dictionary("testId", TestPassedEvent::testId)
+                    .column("percentage", ArrowColumn.Kind.FLOAT64, TestPassedEvent::percentage)
+                    .build(),
+            EventConstants.COURSE_ENROLLED, builder(CourseEnrolledEvent.class, EventConstants.COURSE_ENROLLED)
+                    .dictionary("courseId", CourseEnrolledEvent::courseId)
+                    .build(),
+            EventConstants.FORUM_POST_CREATED, builder(ForumPostCreatedEvent.class, EventConstants.FORUM_POST_CREATED)
+                    .column("postId", ArrowColumn.Kind.TEXT, ForumPostCreatedEvent::postId)
+                    .dictionary("topicId", ForumPostCreatedEvent::topicId)
+                    .build(),
+            EventConstants.ASSIGNMENT_SUBMITTED, builder(AssignmentSubmittedEvent.class, EventConstants.ASSIGNMENT_SUBMITTED)
+                    .dictionary("assignmentId", AssignmentSubmittedEvent::assignmentId)
+                    .column("onTime", ArrowColumn.Kind.BOOL, AssignmentSubmittedEvent::onTime)
+                    .build(),
+            EventConstants.POINTS_CHANGED, builder(PointsChangedEvent.class, EventConstants.POINTS_CHANGED)
+                    .column("pointsDelta", ArrowColumn.Kind.INT64, PointsChangedEvent::pointsDelta)
+                    .column("newBalance", ArrowColumn.Kind.INT64, PointsChangedEvent::newBalance)
+                    .column("newTotalBalance", ArrowColumn.Kind.INT64, PointsChangedEvent::newTotalBalance)
+                    .column("newLevel", ArrowColumn.Kind.INT32, PointsChangedEvent::newLevel)
+                    .column("transactionId", ArrowColumn.Kind.UUID, PointsChangedEvent::transactionId)
+                    .dictionary("ruleId", PointsChangedEvent::ruleId)
+                    .build(),
+            EventConstants.LEVEL_UP, builder(LevelUpEvent.class, EventConstants.LEVEL_UP)
+                    .column("oldLevel", ArrowColumn.Kind.INT32, LevelUpEvent::oldLevel)
+                    .column("newLevel", ArrowColumn.Kind.INT32, LevelUpEvent::newLevel)
+                    .column("totalPoints", ArrowColumn.Kind.INT64, LevelUpEvent::totalPoints)
+                    .build(),
+            EventConstants.ACHIEVEMENT_UNLOCKED, builder(AchievementEvent.class, EventConstants.ACHIEVEMENT_UNLOCKED)
+                    .dictionary("achievementId", AchievementEvent::achievementId)
+                    .dictionary("achievementName", AchievementEvent::achievementName)
+                    .dictionary("description", AchievementEvent::description)
+                    .column("pointsReward", ArrowColumn.Kind.INT64, AchievementEvent::pointsReward)
+                    .dictionary("rarity", AchievementEvent::rarity)
+                    .dictionary("iconUrl", AchievementEvent::iconUrl)
+                    .build()
+    );
+
+    /**
+     * Создает схему Arrow
+     *
+     * <p>
+     * Идентификатор словаря колонки равен ее порядковому номеру в схеме.
+     * </p>
+     *
+     * @return Схема Arrow
+     */
+    Schema arrowSchema() {
+        List<Field> fields = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++) {
+            fields.add(columns.get(i).field(i));
+        }
+        return new Schema(fields);
+    }
+
+    /**
+     * Приводит событие к классу записи схемы
+     *
+     * @param event Событие геймификации
+     * @return То же событие
+     * @throws IllegalArgumentException Если событие не является записью этой схемы
+     */
+    E cast(GamificationEvent event) {
+        if (!eventClass.isInstance(event)) {
+            throw new IllegalArgumentException("Событие " + event.getClass().getName()
+                    + " с типом " + type + " не является " + eventClass.getName());
+        }
+        return eventClass.cast(event);
+    }
+
+    private static <E extends GamificationEvent> Builder<E> builder(Class<E> eventClass, String type) {
+        return new Builder<>(eventClass, type)
+                .column("eventId", ArrowColumn.Kind.UUID, GamificationEvent::eventId)
+                .dictionary("userId", GamificationEvent::userId)
+                .column("occurredAt", ArrowColumn.Kind.TIMESTAMP, GamificationEvent::occurredAt);
+    }
+
+    private static final class Builder<E extends GamificationEvent> {
+
+        private final Class<E> eventClass;
+
+        private final String type;
+
+        private final List<ArrowColumn<E>> columns = new ArrayList<>();
+
+        private Builder(Class<E> eventClass, String type) {
+            this.eventClass = eventClass;
+            this.type = type;
+        }
+
+        private Builder<E> column(String name, ArrowColumn.Kind kind, Function<? super E, ?> getter) {
+            columns.add(new ArrowColumn<>(name, kind, getter::apply));
+            return this;
+        }
+
+        private Builder<E> dictionary(String name, Function<? super E, String> getter) {
+            return column(name, ArrowColumn.Kind.DICTIONARY, getter);
+        }
+
+        private ArrowEventSchema<E> build() {
+            return new ArrowEventSchema<>(type, eventClass, List.copyOf(columns));
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package ru.misis.gamification.events.importer;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Параллельный импорт больших выгрузок активности LMS
+ *
+ * <p>
+ * Файл делится на куски по смещению в байтах, границы кусков выравниваются
+ * на начало строки. Куски читаются позиционным чтением из общего канала,
+ * разбираются и проверяются параллельно на переданном пуле потоков.
+ * Одновременно в работе не больше {@code maxInFlightChunks} кусков,
+ * поэтому память ограничена независимо от размера файла.
+ * </p>
+ *
+ * <p>
+ * Получатель вызывается из потока импорта строго в порядке кусков в файле,
+ * так что порядок событий каждого пользователя сохраняется. После каждого
+ * переданного куска атомарно записывается файл прогресса; повторный запуск
+ * продолжает импорт с первого непереданного куска. Кусок, переданный перед
+ * сбоем, но не отмеченный в прогрессе, будет передан повторно, поэтому
+ * получатель должен быть идемпотентен по {@link GamificationEvent#eventId()}.
+ * </p>
+ *
+ * <pre>{@code
+ * BulkImporter importer = new BulkImporter(objectMapper, EventValidator.beanValidation(validator), executor);
+ * ImportReport report = importer.importFile(Path.of("activity-2019.ndjson"), ImportFormat.NDJSON,
+ *         events -> pipeline.submitAll(events), Path.of("activity-2019.ndjson.progress"));
+ * }</pre>
+ */
+public class BulkImporter {
+
+    /**
+     * Размер куска по умолчанию
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+
+    private final ObjectMapper objectMapper;
+
+    private final EventValidator validator;
+
+    private final ExecutorService executor;
+
+    private final int chunkSize;
+
+    private final int maxInFlightChunks;
+
+    /**
+     * Создает импортер с размером куска по умолчанию и двумя кусками в работе на поток
+     *
+     * @param objectMapper Настроенный {@link ObjectMapper} с поддержкой {@code java.time}
+     * @param validator    Проверка событий
+     * @param executor     Пул потоков для разбора кусков
+     */
+    public BulkImporter(ObjectMapper objectMapper, EventValidator validator, ExecutorService executor) {
+        this(objectMapper, validator, executor, DEFAULT_CHUNK_SIZE, 2 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Создает импортер
+     *
+     * @param objectMapper      Настроенный {@link ObjectMapper} с поддержкой {@code java.time}
+     * @param validator         Проверка событий
+     * @param executor          Пул потоков для разбора кусков
+     * @param chunkSize         Размер куска в байтах
+     * @param maxInFlightChunks Максимальное количество одновременно разбираемых и ожидающих передачи кусков
+     */
+    public BulkImporter(ObjectMapper objectMapper, EventValidator validator, ExecutorService executor,
+                        int chunkSize, int maxInFlightChunks) {
+        if (chunkSize <= 0 || maxInFlightChunks <= 0) {
+            throw new IllegalArgumentException("chunkSize и maxInFlightChunks должны быть положительными");
+        }
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        this.maxInFlightChunks = maxInFlightChunks;
+    }
+
+    /**
+     * Импортирует файл
+     *
+     * @param source     Файл выгрузки
+     * @param format     Формат файла
+     * @param sink       Получатель событий
+     * @param checkpoint Файл прогресса или {@code null}, чтобы импортировать без возобновления
+     * @return Итог импорта
+     * @throws UncheckedIOException  Если не удалось прочитать файл или записать прогресс
+     * @throws IllegalStateException Если прогресс относится к другой версии файла
+     */
+    public ImportReport importFile(Path source, ImportFormat format, ImportSink sink, Path checkpoint) {
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long modifiedAt = Files.getLastModifiedTime(source).toMillis();
+
+            String header = null;
+            long dataStart = skipBom(channel);
+            if (format.hasHeader()) {
+                long headerEnd = afterLineFeed(channel, dataStart);
+                header = readLine(channel, dataStart, headerEnd);
+                dataStart = headerEnd;
+            }
+            ImportFormat.LineParser parser = format.parser(objectMapper, header);
+
+            ImportCheckpoint progress = new ImportCheckpoint(size, modifiedAt, dataStart, 0, 0);
+            if (checkpoint != null) {
+                ImportCheckpoint saved = readCheckpoint(checkpoint);
+                if (saved != null) {
+                    if (!saved.matches(size, modifiedAt)) {
+                        throw new IllegalStateException("Файл " + source + " изменился после прошлого импорта");
+                    }
+                    progress = saved;
+                }
+            }
+            long resumedFrom = progress.offset() == dataStart ? 0 : progress.offset();
+
+            Deque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+            long next = progress.offset();
+            int chunks = 0;
+            try {
+                while (next < size || !inFlight.isEmpty()) {
+                    while (next < size && inFlight.size() < maxInFlightChunks) {
+                        long start = next;
+                        long end = nextLineStart(channel, Math.min(size, start + chunkSize));
+                        inFlight.addLast(executor.submit(() -> parseChunk(channel, start, end, parser)));
+                        next = end;
+                    }
+                    ChunkResult chunk = await(inFlight.removeFirst());
+                    if (!chunk.events().isEmpty()) {
+                        sink.accept(chunk.events());
+                    }
+                    if (!chunk.errors().isEmpty()) {
+                        sink.rejected(chunk.errors());
+                    }
+                    progress = new ImportCheckpoint(size, modifiedAt, chunk.end(),
+                            progress.imported() + chunk.events().size(),
+                            progress.rejected() + chunk.errors().size());
+                    if (checkpoint != null) {
+                        progress.write(checkpoint);
+                    }
+                    chunks++;
+                }
+            } finally {
+                inFlight.forEach(future -> future.cancel(true));
+            }
+            return new ImportReport(resumedFrom, size, progress.imported(), progress.rejected(), chunks,
+                    Duration.ofNanos(System.nanoTime() - started));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ChunkResult parseChunk(FileChannel channel, long start, long end,
+                                   ImportFormat.LineParser parser) throws IOException {
+        List<GamificationEvent> events = new ArrayList<>();
+        List<ImportError> errors = new ArrayList<>();
+        byte[] buffer = new byte[(int) Math.min(READ_BUFFER_SIZE, Math.max(1, end - start))];
+        long bufferOffset = start;
+        int filled = 0;
+        long readPosition = start;
+
+        while (true) {
+            if (filled == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            int toRead = (int) Math.min(buffer.length - filled, end - readPosition);
+            int read = toRead == 0 ? -1 : channel.read(ByteBuffer.wrap(buffer, filled, toRead), readPosition);
+            boolean last = read < 0;
+            if (!last) {
+                filled += read;
+                readPosition += read;
+            }
+
+            int lineStart = 0;
+            for (int i = 0; i < filled; i++) {
+                if (buffer[i] == '\n') {
+                    parseLine(buffer, lineStart, i, bufferOffset + lineStart, parser, events, errors);
+                    lineStart = i + 1;
+                }
+            }
+            if (last) {
+                if (lineStart < filled) {
+                    parseLine(buffer, lineStart, filled, bufferOffset + lineStart, parser, events, errors);
+                }
+                return new ChunkResult(end, events, errors);
+            }
+            System.arraycopy(buffer, lineStart, buffer, 0, filled - lineStart);
+            filled -= lineStart;
+            bufferOffset += lineStart;
+        }
+    }
+
+    private void parseLine(byte[] buffer, int from, int to, long offset, ImportFormat.LineParser parser,
+                           List<GamificationEvent> events, List<ImportError> errors) {
+        if (to > from && buffer[to - 1] == '\r') {
+            to--;
+        }
+        if (isBlank(buffer, from, to)) {
+            return;
+        }
+        GamificationEvent event;
+        try {
+            event = parser.parse(buffer, from, to - from);
+        } catch (Exception e) {
+            String message = e instanceof JsonProcessingException json ? json.getOriginalMessage() : e.getMessage();
+            errors.add(new ImportError(offset, String.valueOf(message)));
+            return;
+        }
+        List<String> violations = validator.validate(event);
+        if (violations.isEmpty()) {
+            events.add(event);
+        } else {
+            errors.add(new ImportError(offset, String.join("; ", violations)));
+        }
+    }
+
+    private static boolean isBlank(byte[] buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buffer[i] != ' ' && buffer[i] != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Возвращает начало первой строки, которая начинается не раньше {@code position}
+     */
+    private static long nextLineStart(FileChannel channel, long position) throws IOException {
+        long size = channel.size();
+        if (position == 0 || position >= size) {
+            return Math.min(position, size);
+        }
+        // Позиция уже в начале строки, если перед ней перевод строки
+        return afterLineFeed(channel, position - 1);
+    }
+
+    /**
+     * Возвращает позицию после первого перевода строки не раньше {@code position} или конец файла
+     */
+    private static long afterLineFeed(FileChannel channel, long position) throws IOException {
+        long size = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long scan = position;
+        while (scan < size) {
+            buffer.clear();
+            int read = channel.read(buffer, scan);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return scan + i + 1;
+                }
+            }
+            scan += read;
+        }
+        return size;
+    }
+
+    private static long skipBom(FileChannel channel) throws IOException {
+        ByteBuffer bom = ByteBuffer.allocate(3);
+        channel.read(bom, 0);
+        return bom.position() == 3 && (bom.get(0) & 0xFF) == 0xEF && (bom.get(1) & 0xFF) == 0xBB
+                && (bom.get(2) & 0xFF) == 0xBF ? 3 : 0;
+    }
+
+    private static String readLine(FileChannel channel, long start, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        while (buffer.hasRemaining() && channel.read(buffer, start + buffer.position()) > 0) {
+            // дочитываем строку целиком
+        }
+        return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8).strip();
+    }
+
+    private static ImportCheckpoint readCheckpoint(Path checkpoint) throws IOException {
+        try {
+            return ImportCheckpoint.read(checkpoint);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static ChunkResult await(Future<ChunkResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Импорт прерван");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private record ChunkResult(long end, List<GamificationEvent> events, List<ImportError> errors) {
+    }
+}
@@ -0,0 +1,81 @@
+package ru.misis.gamification.events.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Разбор строки CSV в событие через дерево JSON
+ *
+ * <p>
+ * Ячейки передаются Jackson строками, числа, логические значения, UUID и даты
+ * приводятся к типам полей событий при десериализации. Поддерживаются ячейки
+ * в двойных кавычках с экранированием кавычки удвоением.
+ * </p>
+ */
+final class CsvLineParser implements ImportFormat.LineParser {
+
+    private static final String TYPE_COLUMN = "type";
+
+    private final ObjectMapper objectMapper;
+
+    private final String[] columns;
+
+    CsvLineParser(ObjectMapper objectMapper, String header) {
+        this.objectMapper = objectMapper;
+        this.columns = split(header).toArray(String[]::new);
+        if (!List.of(columns).contains(TYPE_COLUMN)) {
+            throw new IllegalArgumentException("В заголовке CSV нет колонки " + TYPE_COLUMN);
+        }
+    }
+
+    @Override
+    public GamificationEvent parse(byte[] line, int offset, int length) throws Exception {
+        List<String> cells = split(ImportFormat.LineParser.decode(line, offset, length));
+        if (cells.size() != columns.length) {
+            throw new IllegalArgumentException(
+                    "Ожидалось " + columns.length + " колонок, получено " + cells.size());
+        }
+        ObjectNode node = objectMapper.createObjectNode();
+        for (int i = 0; i < columns.length; i++) {
+            if (!cells.get(i).isEmpty()) {
+                node.put(columns[i], cells.get(i));
+            }
+        }
+        return objectMapper.treeToValue(node, GamificationEvent.class);
+    }
+
+    static List<String> split(String line) {
+        List<String> cells = new ArrayList<>();
+        StringBuilder cell = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    cell.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    cell.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                cells.add(cell.toString());
+                cell.setLength(0);
+            } else {
+                cell.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Незакрытая кавычка в строке CSV");
+        }
+        cells.add(cell.toString());
+        return cells;
+    }
+}
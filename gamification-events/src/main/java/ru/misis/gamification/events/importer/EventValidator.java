@@ -0,0 +1,39 @@
+package ru.misis.gamification.events.importer;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.List;
+
+/**
+ * Проверка импортируемого события
+ */
+@FunctionalInterface
+public interface EventValidator {
+
+    /**
+     * Проверка, которая принимает любое событие
+     */
+    EventValidator NONE = event -> List.of();
+
+    /**
+     * Проверяет событие
+     *
+     * @param event Событие
+     * @return Сообщения о нарушениях, пустой список для корректного события
+     */
+    List<String> validate(GamificationEvent event);
+
+    /**
+     * Создает проверку по аннотациям Jakarta Validation на полях событий
+     *
+     * @param validator Валидатор Jakarta Validation
+     * @return Проверка событий
+     */
+    static EventValidator beanValidation(Validator validator) {
+        return event -> validator.validate(event).stream()
+                .map(ConstraintViolation::getMessage)
+                .toList();
+    }
+}
@@ -0,0 +1,71 @@
+package ru.misis.gamification.events.importer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Прогресс импорта файла
+ *
+ * <p>
+ * Хранится в properties-файле рядом с выгрузкой. Размер и время изменения
+ * исходного файла позволяют не продолжить импорт по чужой отметке, если файл
+ * заменили.
+ * </p>
+ *
+ * @param sourceSize       Размер исходного файла в байтах
+ * @param sourceModifiedAt Время изменения исходного файла в миллисекундах
+ * @param offset           Смещение, до которого события переданы получателю
+ * @param imported         Количество переданных событий
+ * @param rejected         Количество отклоненных строк
+ */
+record ImportCheckpoint(long sourceSize, long sourceModifiedAt, long offset, long imported, long rejected) {
+
+    static ImportCheckpoint read(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        try {
+            return new ImportCheckpoint(
+                    Long.parseLong(properties.getProperty("sourceSize")),
+                    Long.parseLong(properties.getProperty("sourceModifiedAt")),
+                    Long.parseLong(properties.getProperty("offset")),
+                    Long.parseLong(properties.getProperty("imported")),
+                    Long.parseLong(properties.getProperty("rejected")));
+        } catch (NumberFormatException e) {
+            throw new IOException("Поврежденный файл прогресса импорта: " + file, e);
+        }
+    }
+
+    /**
+     * Атомарно записывает прогресс через временный файл
+     *
+     * @param file Файл прогресса
+     * @throws IOException Если не удалось записать файл
+     */
+    void write(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("sourceSize", Long.toString(sourceSize));
+        properties.setProperty("sourceModifiedAt", Long.toString(sourceModifiedAt));
+        properties.setProperty("offset", Long.toString(offset));
+        properties.setProperty("imported", Long.toString(imported));
+        properties.setProperty("rejected", Long.toString(rejected));
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            properties.store(out, null);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    boolean matches(long size, long modifiedAt) {
+        return sourceSize == size && sourceModifiedAt == modifiedAt;
+    }
+}
@@ -0,0 +1,10 @@
+package ru.misis.gamification.events.importer;
+
+/**
+ * Отклоненная строка файла выгрузки
+ *
+ * @param offset  Смещение начала строки в файле в байтах
+ * @param message Причина отклонения
+ */
+public record ImportError(long offset, String message) {
+}
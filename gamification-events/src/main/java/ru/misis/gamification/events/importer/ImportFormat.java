@@ -0,0 +1,95 @@
+package ru.misis.gamification.events.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Формат файла выгрузки активности LMS
+ *
+ * <p>
+ * Оба формата построчные: одна строка - одно событие, перевод строки внутри
+ * записи не допускается. Это позволяет резать файл на куски по смещению
+ * в байтах и разбирать их независимо.
+ * </p>
+ */
+public enum ImportFormat {
+
+    /**
+     * JSON-объект события в каждой строке, тип определяется полем {@code type}
+     */
+    NDJSON {
+        @Override
+        LineParser parser(ObjectMapper objectMapper, String header) {
+            ObjectReader reader = objectMapper.readerFor(GamificationEvent.class);
+            return (line, offset, length) -> reader.readValue(line, offset, length);
+        }
+    },
+
+    /**
+     * CSV с заголовком из имен JSON-свойств событий, обязательна колонка {@code type}
+     *
+     * <p>
+     * Пустые ячейки пропускаются, поэтому в одном файле могут быть события разных типов.
+     * </p>
+     */
+    CSV {
+        @Override
+        boolean hasHeader() {
+            return true;
+        }
+
+        @Override
+        LineParser parser(ObjectMapper objectMapper, String header) {
+            return new CsvLineParser(objectMapper, header);
+        }
+    };
+
+    /**
+     * Определяет формат по расширению файла
+     *
+     * @param file Файл выгрузки
+     * @return Формат файла
+     * @throws IllegalArgumentException Если расширение не поддерживается
+     */
+    public static ImportFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl")) {
+            return NDJSON;
+        }
+        if (name.endsWith(".csv")) {
+            return CSV;
+        }
+        throw new IllegalArgumentException("Неизвестный формат файла: " + file);
+    }
+
+    boolean hasHeader() {
+        return false;
+    }
+
+    abstract LineParser parser(ObjectMapper objectMapper, String header);
+
+    /**
+     * Разбор одной строки файла
+     */
+    @FunctionalInterface
+    interface LineParser {
+
+        /**
+         * @param line   Буфер со строкой в UTF-8
+         * @param offset Начало строки в буфере
+         * @param length Длина строки без перевода строки
+         * @return Событие
+         * @throws Exception Если строку не удалось разобрать
+         */
+        GamificationEvent parse(byte[] line, int offset, int length) throws Exception;
+
+        static String decode(byte[] line, int offset, int length) {
+            return new String(line, offset, length, StandardCharsets.UTF_8);
+        }
+    }
+}
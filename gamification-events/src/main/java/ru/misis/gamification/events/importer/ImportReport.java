@@ -0,0 +1,32 @@
+package ru.misis.gamification.events.importer;
+
+import java.time.Duration;
+
+/**
+ * Итог импорта файла
+ *
+ * @param resumedFrom Смещение, с которого продолжен импорт, {@code 0} для импорта с начала
+ * @param bytes       Размер файла в байтах
+ * @param imported    Количество переданных событий с учетом предыдущих запусков
+ * @param rejected    Количество отклоненных строк с учетом предыдущих запусков
+ * @param chunks      Количество обработанных в этом запуске кусков
+ * @param duration    Длительность этого запуска
+ */
+public record ImportReport(
+        long resumedFrom,
+        long bytes,
+        long imported,
+        long rejected,
+        int chunks,
+        Duration duration
+) {
+
+    /**
+     * Возвращает скорость чтения в этом запуске
+     *
+     * @return Мегабайт в секунду
+     */
+    public double megabytesPerSecond() {
+        return duration.isZero() ? 0 : (bytes - resumedFrom) / 1_048_576.0 / (duration.toNanos() / 1e9);
+    }
+}
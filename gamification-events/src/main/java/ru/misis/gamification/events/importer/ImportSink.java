@@ -0,0 +1,32 @@
+package ru.misis.gamification.events.importer;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.List;
+
+/**
+ * Получатель импортированных событий
+ *
+ * <p>
+ * Методы вызываются из одного потока в порядке следования кусков в файле,
+ * поэтому события каждого пользователя приходят в том порядке, в котором
+ * они записаны в выгрузке.
+ * </p>
+ */
+public interface ImportSink {
+
+    /**
+     * Принимает события очередного куска файла
+     *
+     * @param events События в порядке файла
+     */
+    void accept(List<GamificationEvent> events);
+
+    /**
+     * Принимает отклоненные строки очередного куска файла
+     *
+     * @param errors Отклоненные строки
+     */
+    default void rejected(List<ImportError> errors) {
+    }
+}
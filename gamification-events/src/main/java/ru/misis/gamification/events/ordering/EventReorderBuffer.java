@@ -0,0 +1,441 @@
+package ru.misis.gamification.events.ordering;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Буфер упорядочивания событий пользователя по {@link GamificationEvent#occurredAt()}
+ *
+ * <p>
+ * Адаптеры доставляют события с опозданием и не по порядку, а {@code @PastOrPresent}
+ * отсекает только время из будущего. Буфер стоит в начале конвейера и передает дальше
+ * события каждого пользователя строго в порядке {@code occurredAt} (при равном времени -
+ * в порядке поступления), поэтому правила по временным окнам и серии активности
+ * не исправляют порядок сами.
+ * </p>
+ *
+ * <p>
+ * Водяной знак пользователя - самое позднее его {@code occurredAt} минус
+ * {@link ReorderPolicy#allowedLateness()}: события не позже водяного знака
+ * выпускаются дальше. Водяной знак считается по времени событий самого пользователя,
+ * поэтому отстающие часы одного адаптера не задерживают остальных. Событие раньше
+ * последнего выпущенного события пользователя нарушило бы порядок и уходит
+ * в побочный выход опоздавших событий.
+ * </p>
+ *
+ * <p>
+ * Память строго ограничена {@link ReorderPolicy}:
+ * </p>
+ * <ul>
+ *     <li>при переполнении буфера пользователя раньше срока выпускаются его самые ранние события</li>
+ *     <li>при переполнении общего лимита выпускаются события давно не активных пользователей</li>
+ *     <li>при превышении числа пользователей удаляется состояние самого давно активного
+ *     после выпуска его событий</li>
+ * </ul>
+ * <p>
+ * Досрочный выпуск порядок не нарушает, но делает более поздних опоздавших
+ * слишком поздними. Буфер пользователя, не получавшего событий
+ * {@link ReorderPolicy#idleTimeout()}, сбрасывается {@link #flushIdle()}.
+ * </p>
+ *
+ * <p>
+ * Время последнего выпущенного события удаленного пользователя сохраняется в таблице
+ * водяных знаков фиксированного размера по хешу идентификатора - 8 байт на ячейку
+ * вместо полного состояния. Когда пользователь снова появляется, его события раньше
+ * значения ячейки уходят в побочный выход, поэтому вытеснение не нарушает порядок.
+ * Ячейка общая для пользователей с одинаковым хешем и хранит наибольшее время, так что
+ * впервые появившийся пользователь при совпадении хеша может получить в побочный выход
+ * событие, которое иначе было бы выпущено; выпуск не по порядку при этом невозможен.
+ * </p>
+ *
+ * <p>
+ * Выходы вызываются под блокировкой буфера, поэтому должны быть быстрыми.
+ * Порядок гарантируется только на выходе буфера: обработчик, который переставляет
+ * события, например раскладывая их по полосам с разным приоритетом, его нарушит.
+ * Исключение выхода передается вызывающему, событие при этом считается выпущенным.
+ * Класс потокобезопасен.
+ * </p>
+ */
+public class EventReorderBuffer implements AutoCloseable {
+
+    private static final int MAX_WATERMARK_SLOTS = 1 << 20;
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private static final Comparator<Pending> ORDER = Comparator
+            .comparing((Pending pending) -> pending.event().occurredAt())
+            .thenComparingLong(Pending::sequence);
+
+    private final ReorderPolicy policy;
+
+    private final Consumer<GamificationEvent> downstream;
+
+    private final Consumer<GamificationEvent> lateOutput;
+
+    private final LongSupplier nanoClock;
+
+    private final long idleTimeoutNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Состояния пользователей в порядке последнего поступления события
+     */
+    private final LinkedHashMap<String, UserBuffer> users = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Время последнего выпущенного события удаленных пользователей в наносекундах
+     * от эпохи по ячейкам хеша идентификатора, {@link Long#MIN_VALUE} в пустой ячейке
+     */
+    private final long[] evictedWatermarks;
+
+    private final LongAdder emitted = new LongAdder();
+
+    private final LongAdder late = new LongAdder();
+
+    private final LongAdder forced = new LongAdder();
+
+    private int buffered;
+
+    private long sequence;
+
+    private ScheduledFuture<?> schedule;
+
+    private volatile Exception lastFailure;
+
+    /**
+     * Создает буфер
+     *
+     * @param policy     Ограничения буфера
+     * @param downstream Выход упорядоченных событий
+     * @param lateOutput Побочный выход слишком поздних событий
+     */
+    public EventReorderBuffer(ReorderPolicy policy,
+                              Consumer<GamificationEvent> downstream,
+                              Consumer<GamificationEvent> lateOutput) {
+        this(policy, downstream, lateOutput, System::nanoTime);
+    }
+
+    /**
+     * Создает буфер
+     *
+     * @param policy     Ограничения буфера
+     * @param downstream Выход упорядоченных событий
+     * @param lateOutput Побочный выход слишком поздних событий
+     * @param nanoClock  Монотонные часы в наносекундах
+     */
+    public EventReorderBuffer(ReorderPolicy policy,
+                              Consumer<GamificationEvent> downstream,
+                              Consumer<GamificationEvent> lateOutput,
+                              LongSupplier nanoClock) {
+        this.policy = policy;
+        this.downstream = downstream;
+        this.lateOutput = lateOutput;
+        this.nanoClock = nanoClock;
+        this.idleTimeoutNanos = policy.idleTimeout().toNanos();
+        this.evictedWatermarks = new long[watermarkSlots(policy.maxTrackedUsers())];
+        Arrays.fill(evictedWatermarks, Long.MIN_VALUE);
+    }
+
+    /**
+     * Принимает событие
+     *
+     * <p>
+     * Выпускает дальше все события пользователя, которые оказались не позже
+     * его водяного знака, либо передает событие в побочный выход, если оно слишком позднее.
+     * </p>
+     *
+     * @param event Событие геймификации
+     */
+    public void accept(GamificationEvent event) {
+        LocalDateTime occurredAt = event.occurredAt();
+        long now = nanoClock.getAsLong();
+        lock.lock();
+        try {
+            UserBuffer user = users.get(event.userId());
+            if (user == null) {
+                user = new UserBuffer();
+                long watermark = evictedWatermarks[slot(event.userId())];
+                if (watermark != Long.MIN_VALUE) {
+                    user.lastEmitted = fromEpochNanos(watermark);
+                }
+                users.put(event.userId(), user);
+                evictTracked();
+            }
+            if (user.lastEmitted != null && occurredAt.isBefore(user.lastEmitted)) {
+                late.increment();
+                lateOutput.accept(event);
+                return;
+            }
+            user.lastArrivalNanos = now;
+            user.pending.add(new Pending(event, sequence++));
+            buffered++;
+            if (user.maxSeen == null || occurredAt.isAfter(user.maxSeen)) {
+                user.maxSeen = occurredAt;
+            }
+
+            LocalDateTime watermark = user.maxSeen.minus(policy.allowedLateness());
+            while (!user.pending.isEmpty() && !user.pending.peek().event().occurredAt().isAfter(watermark)) {
+                release(user);
+            }
+            while (user.pending.size() > policy.maxBufferedPerUser()) {
+                release(user);
+                forced.increment();
+            }
+            if (buffered > policy.maxBufferedTotal()) {
+                shed();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Сбрасывает буферы пользователей, не получавших событий дольше {@code idleTimeout}
+     *
+     * <p>
+     * Водяной знак такого пользователя сдвигается до его самого позднего события.
+     * Вызывается периодически после {@link #start(ScheduledExecutorService, Duration)}.
+     * </p>
+     */
+    public void flushIdle() {
+        long now = nanoClock.getAsLong();
+        lock.lock();
+        try {
+            for (UserBuffer user : users.values()) {
+                if (now - user.lastArrivalNanos < idleTimeoutNanos) {
+                    break;
+                }
+                releaseAll(user);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Выпускает все события из буферов
+     *
+     * <p>
+     * Нужен при остановке конвейера. Состояние пользователей сохраняется,
+     * поэтому более ранние события после сброса считаются слишком поздними.
+     * </p>
+     */
+    public void flushAll() {
+        lock.lock();
+        try {
+            for (UserBuffer user : users.values()) {
+                releaseAll(user);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Запускает периодический сброс простаивающих буферов
+     *
+     * <p>
+     * Ошибка выхода не останавливает сброс и доступна через {@link #lastFailure()}.
+     * </p>
+     *
+     * @param scheduler Планировщик
+     * @param interval  Пауза между запусками
+     * @throws IllegalStateException Если сброс уже запущен
+     */
+    public synchronized void start(ScheduledExecutorService scheduler, Duration interval) {
+        if (schedule != null) {
+            throw new IllegalStateException("Сброс буферов уже запущен");
+        }
+        long millis = interval.toMillis();
+        schedule = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                flushIdle();
+                lastFailure = null;
+            } catch (Exception e) {
+                lastFailure = e;
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Возвращает ошибку последнего периодического сброса
+     *
+     * @return Ошибка или {@code null}, если последний сброс успешен
+     */
+    public Exception lastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Количество событий в буферах
+     *
+     * @return Количество событий
+     */
+    public int buffered() {
+        lock.lock();
+        try {
+            return buffered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Количество пользователей, состояние которых хранится
+     *
+     * @return Количество пользователей
+     */
+    public int trackedUsers() {
+        lock.lock();
+        try {
+            return users.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Количество выпущенных событий
+     *
+     * @return Количество событий
+     */
+    public long emittedCount() {
+        return emitted.sum();
+    }
+
+    /**
+     * Количество событий, переданных в побочный выход
+     *
+     * @return Количество событий
+     */
+    public long lateCount() {
+        return late.sum();
+    }
+
+    /**
+     * Количество событий, выпущенных раньше водяного знака из-за ограничений памяти
+     *
+     * @return Количество событий
+     */
+    public long forcedCount() {
+        return forced.sum();
+    }
+
+    /**
+     * Останавливает периодический сброс и выпускает все события из буферов
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (schedule != null) {
+                schedule.cancel(false);
+            }
+        }
+        flushAll();
+    }
+
+    private void evictTracked() {
+        Iterator<Map.Entry<String, UserBuffer>> iterator = users.entrySet().iterator();
+        while (users.size() > policy.maxTrackedUsers()) {
+            Map.Entry<String, UserBuffer> eldest = iterator.next();
+            UserBuffer user = eldest.getValue();
+            forced.add(user.pending.size());
+            releaseAll(user);
+            if (user.lastEmitted != null) {
+                int slot = slot(eldest.getKey());
+                evictedWatermarks[slot] = Math.max(evictedWatermarks[slot], toEpochNanos(user.lastEmitted));
+            }
+            iterator.remove();
+        }
+    }
+
+    private int slot(String userId) {
+        int hash = userId.hashCode();
+        return (hash ^ (hash >>> 16)) & (evictedWatermarks.length - 1);
+    }
+
+    /**
+     * Степень двойки не меньше лимита пользователей, но не больше 2^20 ячеек (8 МБ)
+     */
+    private static int watermarkSlots(int maxTrackedUsers) {
+        int slots = Integer.highestOneBit(Math.min(maxTrackedUsers, MAX_WATERMARK_SLOTS));
+        return slots < maxTrackedUsers && slots < MAX_WATERMARK_SLOTS ? slots << 1 : slots;
+    }
+
+    /**
+     * Время до 1677 года сдвигается к наименьшему значению, что только расширяет
+     * побочный выход; время после 2262 года не проходит {@code @PastOrPresent}
+     */
+    private static long toEpochNanos(LocalDateTime time) {
+        long seconds = time.toEpochSecond(ZoneOffset.UTC);
+        if (seconds >= Long.MAX_VALUE / NANOS_PER_SECOND) {
+            return Long.MAX_VALUE / NANOS_PER_SECOND * NANOS_PER_SECOND;
+        }
+        if (seconds <= Long.MIN_VALUE / NANOS_PER_SECOND) {
+            return Long.MIN_VALUE / NANOS_PER_SECOND * NANOS_PER_SECOND;
+        }
+        return seconds * NANOS_PER_SECOND + time.getNano();
+    }
+
+    private static LocalDateTime fromEpochNanos(long nanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND),
+                (int) Math.floorMod(nanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+    }
+
+    private void shed() {
+        for (UserBuffer user : users.values()) {
+            while (buffered > policy.maxBufferedTotal() && !user.pending.isEmpty()) {
+                release(user);
+                forced.increment();
+            }
+            if (buffered <= policy.maxBufferedTotal()) {
+                return;
+            }
+        }
+    }
+
+    private void releaseAll(UserBuffer user) {
+        while (!user.pending.isEmpty()) {
+            release(user);
+        }
+    }
+
+    private void release(UserBuffer user) {
+        GamificationEvent event = user.pending.poll().event();
+        buffered--;
+        user.lastEmitted = event.occurredAt();
+        emitted.increment();
+        downstream.accept(event);
+    }
+
+    private record Pending(GamificationEvent event, long sequence) {
+    }
+
+    private static final class UserBuffer {
+
+        private final PriorityQueue<Pending> pending = new PriorityQueue<>(ORDER);
+
+        private LocalDateTime maxSeen;
+
+        private LocalDateTime lastEmitted;
+
+        private long lastArrivalNanos;
+    }
+}
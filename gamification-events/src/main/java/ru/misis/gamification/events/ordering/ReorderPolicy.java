@@ -0,0 +1,49 @@
+package ru.misis.gamification.events.ordering;
+
+import java.time.Duration;
+
+/**
+ * Ограничения буфера упорядочивания событий
+ *
+ * @param allowedLateness    Допустимое опоздание события относительно самого позднего
+ *                           {@code occurredAt} пользователя
+ * @param idleTimeout        Время без новых событий пользователя, после которого его буфер сбрасывается
+ * @param maxBufferedPerUser Максимальное количество событий в буфере одного пользователя
+ * @param maxBufferedTotal   Максимальное количество событий во всех буферах
+ * @param maxTrackedUsers    Максимальное количество пользователей, состояние которых хранится
+ */
+public record ReorderPolicy(Duration allowedLateness,
+                            Duration idleTimeout,
+                            int maxBufferedPerUser,
+                            int maxBufferedTotal,
+                            int maxTrackedUsers) {
+
+    /**
+     * Создает ограничения буфера упорядочивания
+     *
+     * @throws IllegalArgumentException Если опоздание отрицательно, время простоя
+     *                                  не положительно или один из лимитов не положителен
+     */
+    public ReorderPolicy {
+        if (allowedLateness.isNegative()) {
+            throw new IllegalArgumentException("allowedLateness не может быть отрицательным");
+        }
+        if (idleTimeout.isNegative() || idleTimeout.isZero()) {
+            throw new IllegalArgumentException("idleTimeout должен быть положительным");
+        }
+        if (maxBufferedPerUser <= 0 || maxBufferedTotal <= 0 || maxTrackedUsers <= 0) {
+            throw new IllegalArgumentException(
+                    "maxBufferedPerUser, maxBufferedTotal и maxTrackedUsers должны быть положительными");
+        }
+    }
+
+    /**
+     * Ограничения по умолчанию: опоздание до 5 минут, сброс после 30 секунд простоя,
+     * до 1000 событий на пользователя, 100000 событий и 200000 пользователей всего
+     *
+     * @return Ограничения буфера
+     */
+    public static ReorderPolicy defaults() {
+        return new ReorderPolicy(Duration.ofMinutes(5), Duration.ofSeconds(30), 1000, 100_000, 200_000);
+    }
+}
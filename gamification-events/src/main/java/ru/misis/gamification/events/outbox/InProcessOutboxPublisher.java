@@ -0,0 +1,44 @@
+package ru.misis.gamification.events.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Публикация событий outbox получателю в том же процессе
+ *
+ * <p>
+ * Десериализует событие и синхронно передает его получателю.
+ * Подходит для тестов и однопроцессного развертывания.
+ * </p>
+ */
+public class InProcessOutboxPublisher implements OutboxPublisher {
+
+    private final ObjectMapper objectMapper;
+
+    private final Consumer<GamificationEvent> consumer;
+
+    /**
+     * Создает транспорт, передающий события получателю в вызывающем потоке
+     *
+     * @param objectMapper ObjectMapper с поддержкой {@code java.time}
+     * @param consumer     Получатель событий
+     */
+    public InProcessOutboxPublisher(ObjectMapper objectMapper, Consumer<GamificationEvent> consumer) {
+        this.objectMapper = objectMapper;
+        this.consumer = consumer;
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(OutboxRecord record) {
+        try {
+            consumer.accept(objectMapper.readValue(record.payload(), GamificationEvent.class));
+            return CompletableFuture.completedFuture(null);
+        } catch (JsonProcessingException | RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
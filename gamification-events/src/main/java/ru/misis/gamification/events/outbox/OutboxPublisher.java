@@ -0,0 +1,23 @@
+package ru.misis.gamification.events.outbox;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Транспорт публикации событий из outbox
+ *
+ * <p>
+ * Метод {@link #publish(OutboxRecord)} не должен ждать подтверждения брокера:
+ * ретранслятор отправляет всю пачку и только затем ждет все подтверждения.
+ * </p>
+ */
+@FunctionalInterface
+public interface OutboxPublisher {
+
+    /**
+     * Асинхронно публикует событие
+     *
+     * @param record Строка outbox
+     * @return Future, завершающийся после подтверждения публикации
+     */
+    CompletableFuture<Void> publish(OutboxRecord record);
+}
@@ -0,0 +1,21 @@
+package ru.misis.gamification.events.outbox;
+
+import java.util.UUID;
+
+/**
+ * Строка outbox, ожидающая публикации
+ *
+ * @param id        Идентификатор строки, по нему строка удаляется после публикации
+ * @param eventId   Идентификатор события, по нему получатели отбрасывают повторы
+ * @param type      Тип события
+ * @param userId    Идентификатор пользователя, ключ партиционирования при публикации
+ * @param payload   JSON события
+ */
+public record OutboxRecord(
+        long id,
+        UUID eventId,
+        String type,
+        String userId,
+        String payload
+) {
+}
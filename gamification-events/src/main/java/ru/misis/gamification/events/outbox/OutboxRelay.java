@@ -0,0 +1,251 @@
+package ru.misis.gamification.events.outbox;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Ретранслятор outbox: публикует накопленные события пачками
+ *
+ * <p>
+ * За один проход в отдельной транзакции:
+ * </p>
+ * <ol>
+ *     <li>захватывает до {@code batchSize} строк через {@code FOR UPDATE SKIP LOCKED},
+ *     поэтому несколько экземпляров ретранслятора не мешают друг другу;</li>
+ *     <li>отправляет все события пачки, не дожидаясь подтверждения каждого;</li>
+ *     <li>ждет все подтверждения и удаляет строки одним запросом {@code DELETE ... WHERE id = ANY(?)}.</li>
+ * </ol>
+ *
+ * <p>
+ * Если публикация хотя бы одного события не удалась, транзакция откатывается
+ * и пачка будет опубликована повторно: доставка "хотя бы один раз",
+ * получатели отбрасывают повторы по {@code eventId}.
+ * </p>
+ *
+ * <p>
+ * Порядок публикации не гарантируется, в том числе для событий одного пользователя.
+ * Строки захватываются по возрастанию {@code id}, но несколько ретрансляторов публикуют
+ * свои пачки одновременно, а {@code id} выдается при вставке, до фиксации транзакции:
+ * строка с меньшим {@code id} может стать видна уже после публикации строки с большим.
+ * Получатели, которым важен порядок событий пользователя, восстанавливают его сами,
+ * например {@link ru.misis.gamification.events.ordering.EventReorderBuffer}.
+ * </p>
+ */
+public class OutboxRelay implements AutoCloseable {
+
+    /**
+     * Размер пачки по умолчанию
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Время ожидания подтверждений пачки по умолчанию
+     */
+    public static final Duration DEFAULT_PUBLISH_TIMEOUT = Duration.ofSeconds(30);
+
+    private final DataSource dataSource;
+
+    private final OutboxPublisher publisher;
+
+    private final int batchSize;
+
+    private final Duration publishTimeout;
+
+    private final String claimSql;
+
+    private final String deleteSql;
+
+    private volatile ScheduledFuture<?> schedule;
+
+    private volatile Exception lastFailure;
+
+    /**
+     * Создает ретранслятор с параметрами по умолчанию
+     *
+     * @param dataSource Источник соединений с базой outbox
+     * @param publisher  Транспорт публикации
+     */
+    public OutboxRelay(DataSource dataSource, OutboxPublisher publisher) {
+        this(dataSource, publisher, OutboxWriter.DEFAULT_TABLE, DEFAULT_BATCH_SIZE, DEFAULT_PUBLISH_TIMEOUT);
+    }
+
+    /**
+     * Создает ретранслятор
+     *
+     * @param dataSource     Источник соединений с базой outbox
+     * @param publisher      Транспорт публикации
+     * @param table          Имя таблицы outbox
+     * @param batchSize      Максимальное количество строк за проход
+     * @param publishTimeout Время ожидания подтверждений пачки
+     * @throws IllegalArgumentException Если параметры некорректны
+     */
+    public OutboxRelay(DataSource dataSource, OutboxPublisher publisher, String table,
+                       int batchSize, Duration publishTimeout) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize должен быть положительным");
+        }
+        OutboxWriter.validateTable(table);
+        this.dataSource = dataSource;
+        this.publisher = publisher;
+        this.batchSize = batchSize;
+        this.publishTimeout = publishTimeout;
+        this.claimSql = "SELECT id, event_id, event_type, user_id, payload FROM " + table
+                + " ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+        this.deleteSql = "DELETE FROM " + table + " WHERE id = ANY(?)";
+    }
+
+    /**
+     * Публикует одну пачку событий
+     *
+     * @return Количество опубликованных и удаленных событий
+     * @throws SQLException          Если не удалось захватить или удалить строки
+     * @throws IllegalStateException Если публикация пачки не подтверждена
+     */
+    public int relayBatch() throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                List<OutboxRecord> records = claim(connection);
+                if (!records.isEmpty()) {
+                    publishAll(records);
+                    delete(connection, records);
+                }
+                connection.commit();
+                return records.size();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        }
+    }
+
+    /**
+     * Публикует пачки, пока outbox не опустеет
+     *
+     * @return Общее количество опубликованных событий
+     * @throws SQLException Если не удалось захватить или удалить строки
+     */
+    public long relayAll() throws SQLException {
+        long total = 0;
+        int relayed;
+        do {
+            relayed = relayBatch();
+            total += relayed;
+        } while (relayed == batchSize);
+        return total;
+    }
+
+    /**
+     * Запускает периодическую ретрансляцию
+     *
+     * <p>
+     * Каждый запуск вычерпывает outbox полностью. Ошибка не прерывает расписание
+     * и доступна через {@link #lastFailure()}.
+     * </p>
+     *
+     * @param scheduler    Планировщик
+     * @param pollInterval Пауза между запусками
+     * @throws IllegalStateException Если ретрансляция уже запущена
+     */
+    public synchronized void start(ScheduledExecutorService scheduler, Duration pollInterval) {
+        if (schedule != null) {
+            throw new IllegalStateException("Ретрансляция уже запущена");
+        }
+        long millis = pollInterval.toMillis();
+        schedule = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                relayAll();
+                lastFailure = null;
+            } catch (Exception e) {
+                lastFailure = e;
+            }
+        }, 0, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Возвращает ошибку последнего периодического запуска
+     *
+     * @return Ошибка или {@code null}, если последний запуск успешен
+     */
+    public Exception lastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Останавливает периодическую ретрансляцию
+     */
+    @Override
+    public void close() {
+        ScheduledFuture<?> current = schedule;
+        if (current != null) {
+            current.cancel(false);
+        }
+    }
+
+    private List<OutboxRecord> claim(Connection connection) throws SQLException {
+        List<OutboxRecord> records = new ArrayList<>(batchSize);
+        try (PreparedStatement statement = connection.prepareStatement(claimSql)) {
+            statement.setInt(1, batchSize);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    records.add(new OutboxRecord(
+                            resultSet.getLong("id"),
+                            resultSet.getObject("event_id", UUID.class),
+                            resultSet.getString("event_type"),
+                            resultSet.getString("user_id"),
+                            resultSet.getString("payload")
+                    ));
+                }
+            }
+        }
+        return records;
+    }
+
+    private void publishAll(List<OutboxRecord> records) {
+        CompletableFuture<?>[] acknowledgements = new CompletableFuture<?>[records.size()];
+        for (int i = 0; i < records.size(); i++) {
+            acknowledgements[i] = publisher.publish(records.get(i));
+        }
+        try {
+            CompletableFuture.allOf(acknowledgements).get(publishTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Публикация пачки прервана", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Не удалось опубликовать пачку outbox", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Публикация пачки не подтверждена за " + publishTimeout, e);
+        }
+    }
+
+    private void delete(Connection connection, List<OutboxRecord> records) throws SQLException {
+        Long[] ids = new Long[records.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = records.get(i).id();
+        }
+        Array idArray = connection.createArrayOf("bigint", ids);
+        try (PreparedStatement statement = connection.prepareStatement(deleteSql)) {
+            statement.setArray(1, idArray);
+            statement.executeUpdate();
+        } finally {
+            idArray.free();
+        }
+    }
+}
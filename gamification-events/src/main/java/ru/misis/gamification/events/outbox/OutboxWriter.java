@@ -0,0 +1,106 @@
+package ru.misis.gamification.events.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Запись внутренних событий в outbox в транзакции изменения баланса
+ *
+ * <p>
+ * Событие ({@code PointsChangedEvent}, {@code LevelUpEvent}, {@code AchievementEvent})
+ * вставляется через то же соединение, что и изменение баланса, поэтому оно
+ * появится в outbox только при фиксации транзакции и будет опубликовано
+ * {@link OutboxRelay} даже после падения сервиса.
+ * </p>
+ */
+public class OutboxWriter {
+
+    /**
+     * Имя таблицы outbox по умолчанию
+     */
+    public static final String DEFAULT_TABLE = "gamification_outbox";
+
+    private static final Pattern TABLE_NAME = Pattern.compile("[A-Za-z_][A-Za-z0-9_.]*");
+
+    private final ObjectMapper objectMapper;
+
+    private final String insertSql;
+
+    /**
+     * Создает писателя для таблицы по умолчанию
+     *
+     * @param objectMapper ObjectMapper с поддержкой {@code java.time}
+     */
+    public OutboxWriter(ObjectMapper objectMapper) {
+        this(objectMapper, DEFAULT_TABLE);
+    }
+
+    /**
+     * Создает писателя
+     *
+     * @param objectMapper ObjectMapper с поддержкой {@code java.time}
+     * @param table        Имя таблицы outbox
+     * @throws IllegalArgumentException Если имя таблицы некорректно
+     */
+    public OutboxWriter(ObjectMapper objectMapper, String table) {
+        this.objectMapper = objectMapper;
+        this.insertSql = "INSERT INTO " + validateTable(table)
+                + " (event_id, event_type, user_id, payload) VALUES (?, ?, ?, ?)";
+    }
+
+    /**
+     * Добавляет событие в outbox в текущей транзакции соединения
+     *
+     * @param connection Соединение с открытой транзакцией изменения баланса
+     * @param event      Внутреннее событие
+     * @throws SQLException Если вставка не удалась
+     */
+    public void append(Connection connection, GamificationEvent event) throws SQLException {
+        appendAll(connection, List.of(event));
+    }
+
+    /**
+     * Добавляет события в outbox одной пачкой в текущей транзакции соединения
+     *
+     * @param connection Соединение с открытой транзакцией изменения баланса
+     * @param events     Внутренние события
+     * @throws SQLException Если вставка не удалась
+     */
+    public void appendAll(Connection connection, List<? extends GamificationEvent> events) throws SQLException {
+        if (events.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+            for (GamificationEvent event : events) {
+                statement.setObject(1, event.eventId());
+                statement.setString(2, event.type());
+                statement.setString(3, event.userId());
+                statement.setString(4, serialize(event));
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        }
+    }
+
+    private String serialize(GamificationEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Не удалось сериализовать событие " + event.eventId(), e);
+        }
+    }
+
+    static String validateTable(String table) {
+        if (table == null || !TABLE_NAME.matcher(table).matches()) {
+            throw new IllegalArgumentException("Некорректное имя таблицы outbox: " + table);
+        }
+        return table;
+    }
+}
@@ -0,0 +1,37 @@
+package ru.misis.gamification.events.publish;
+
+import java.time.Duration;
+
+/**
+ * Ограничения пачки при публикации событий
+ *
+ * @param partitions    Количество партиций; события одного пользователя всегда попадают в одну партицию
+ * @param maxBatchSize  Максимальное количество событий в пачке
+ * @param maxBatchBytes Максимальный размер пачки в байтах
+ * @param maxLinger     Максимальное время ожидания пополнения пачки
+ */
+public record BatchPolicy(int partitions, int maxBatchSize, int maxBatchBytes, Duration maxLinger) {
+
+    /**
+     * Проверяет ограничения пачки
+     *
+     * @throws IllegalArgumentException Если количество партиций, размер пачки или ожидание некорректны
+     */
+    public BatchPolicy {
+        if (partitions <= 0 || maxBatchSize <= 0 || maxBatchBytes <= 0) {
+            throw new IllegalArgumentException("partitions, maxBatchSize и maxBatchBytes должны быть положительными");
+        }
+        if (maxLinger.isNegative()) {
+            throw new IllegalArgumentException("maxLinger не может быть отрицательным");
+        }
+    }
+
+    /**
+     * Ограничения по умолчанию: 16 партиций, до 500 событий или 1 МБ, ожидание до 20 мс
+     *
+     * @return Ограничения пачки
+     */
+    public static BatchPolicy defaults() {
+        return new BatchPolicy(16, 500, 1024 * 1024, Duration.ofMillis(20));
+    }
+}
@@ -0,0 +1,27 @@
+package ru.misis.gamification.events.publish;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Транспорт отправки пачек внутренних событий
+ *
+ * <p>
+ * Пачки одной партиции передаются транспорту по одной: следующая пачка
+ * отправляется только после завершения future предыдущей.
+ * </p>
+ */
+@FunctionalInterface
+public interface BatchTransport {
+
+    /**
+     * Асинхронно отправляет пачку
+     *
+     * @param partition Номер партиции
+     * @param batch     События в порядке публикации
+     * @return Future, завершающийся после подтверждения отправки
+     */
+    CompletableFuture<Void> send(int partition, List<GamificationEvent> batch);
+}
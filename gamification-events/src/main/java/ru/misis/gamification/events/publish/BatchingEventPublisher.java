@@ -0,0 +1,307 @@
+package ru.misis.gamification.events.publish;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.util.Hashing;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * Публикация внутренних событий пачками с адаптивным ожиданием
+ *
+ * <p>
+ * События распределяются по партициям по хешу {@link GamificationEvent#userId()} и копятся
+ * в пачку, пока она не заполнится по количеству или размеру либо не истечет время ожидания.
+ * Время ожидания зависит от нагрузки: по каждой партиции считается экспоненциальное
+ * скользящее среднее интервала между событиями, и если за {@code maxLinger} ожидается
+ * меньше одного нового события, пачка из одного события отправляется сразу. С ростом
+ * нагрузки ожидание растет пропорционально и достигает {@code maxLinger}, когда за это
+ * время успевает набраться полная пачка.
+ * </p>
+ *
+ * <p>
+ * Пачки одной партиции отправляются строго по очереди, поэтому порядок событий пользователя
+ * сохраняется. Отправка выполняется на переданном планировщике, а не в потоке публикации.
+ * {@link #close()} отправляет накопленные пачки и ждет их подтверждения.
+ * </p>
+ */
+public class BatchingEventPublisher implements AutoCloseable {
+
+    /**
+     * Вес нового интервала в скользящем среднем
+     */
+    private static final double EWMA_ALPHA = 0.1;
+
+    private final BatchTransport transport;
+
+    private final BatchPolicy policy;
+
+    private final ToIntFunction<GamificationEvent> eventSize;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Partition[] partitions;
+
+    private final LongAdder batchesSent = new LongAdder();
+
+    private final LongAdder eventsSent = new LongAdder();
+
+    private volatile boolean closed;
+
+    /**
+     * Создает публикатор
+     *
+     * @param transport Транспорт пачек
+     * @param policy    Ограничения пачки
+     * @param eventSize Оценка размера события в байтах
+     * @param scheduler Планировщик таймеров ожидания и отправки пачек, публикатор его не закрывает
+     */
+    public BatchingEventPublisher(BatchTransport transport, BatchPolicy policy,
+                                  ToIntFunction<GamificationEvent> eventSize, ScheduledExecutorService scheduler) {
+        this.transport = transport;
+        this.policy = policy;
+        this.eventSize = eventSize;
+        this.scheduler = scheduler;
+        this.partitions = new Partition[policy.partitions()];
+        for (int i = 0; i < partitions.length; i++) {
+            partitions[i] = new Partition(i);
+        }
+    }
+
+    /**
+     * Оценка размера события по длине его JSON
+     *
+     * @param objectMapper ObjectMapper с поддержкой {@code java.time}
+     * @return Размер события в байтах
+     */
+    public static ToIntFunction<GamificationEvent> jsonSize(ObjectMapper objectMapper) {
+        return event -> {
+            try {
+                return objectMapper.writeValueAsBytes(event).length;
+            } catch (JsonProcessingException e) {
+                throw new IllegalArgumentException("Не удалось сериализовать событие " + event.eventId(), e);
+            }
+        };
+    }
+
+    /**
+     * Добавляет событие в пачку его партиции
+     *
+     * @param event Внутреннее событие
+     * @return Future, завершающийся после отправки пачки с событием
+     * @throws IllegalStateException Если публикатор закрыт
+     */
+    public CompletableFuture<Void> publish(GamificationEvent event) {
+        int size = eventSize.applyAsInt(event);
+        Partition partition = partitions[partitionOf(event.userId())];
+        partition.lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Публикатор закрыт");
+            }
+            partition.onArrival(System.nanoTime());
+            if (!partition.events.isEmpty() && partition.bytes + size > policy.maxBatchBytes()) {
+                partition.dispatch();
+            }
+            if (partition.events.isEmpty()) {
+                partition.batchDone = new CompletableFuture<>();
+            }
+            partition.events.add(event);
+            partition.bytes += size;
+            CompletableFuture<Void> done = partition.batchDone;
+
+            if (partition.events.size() >= policy.maxBatchSize() || partition.bytes >= policy.maxBatchBytes()) {
+                partition.dispatch();
+            } else if (partition.events.size() == 1) {
+                long linger = partition.lingerNanos();
+                if (linger == 0) {
+                    partition.dispatch();
+                } else {
+                    List<GamificationEvent> batch = partition.events;
+                    partition.timer = scheduler.schedule(() -> partition.dispatchIfCurrent(batch),
+                            linger, TimeUnit.NANOSECONDS);
+                }
+            }
+            return done;
+        } finally {
+            partition.lock.unlock();
+        }
+    }
+
+    /**
+     * Отправляет накопленные пачки всех партиций, не дожидаясь таймеров
+     *
+     * @return Future, завершающийся после отправки всех пачек, начатых до вызова
+     */
+    public CompletableFuture<Void> flush() {
+        CompletableFuture<?>[] tails = new CompletableFuture<?>[partitions.length];
+        for (Partition partition : partitions) {
+            partition.lock.lock();
+            try {
+                if (!partition.events.isEmpty()) {
+                    partition.dispatch();
+                }
+                tails[partition.index] = partition.tail;
+            } finally {
+                partition.lock.unlock();
+            }
+        }
+        return CompletableFuture.allOf(tails);
+    }
+
+    /**
+     * Возвращает текущее время ожидания партиции
+     *
+     * @param partition Номер партиции
+     * @return Время, которое ждет новая пачка перед отправкой
+     */
+    public Duration currentLinger(int partition) {
+        Partition target = partitions[partition];
+        target.lock.lock();
+        try {
+            return Duration.ofNanos(target.lingerNanos());
+        } finally {
+            target.lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает номер партиции пользователя
+     *
+     * @param userId Идентификатор пользователя
+     * @return Номер партиции
+     */
+    public int partitionOf(String userId) {
+        return (int) Long.remainderUnsigned(Hashing.hash64(userId), partitions.length);
+    }
+
+    /**
+     * Возвращает количество пачек, успешно переданных транспорту
+     *
+     * @return Количество отправленных пачек
+     */
+    public long batchesSent() {
+        return batchesSent.sum();
+    }
+
+    /**
+     * Возвращает количество событий в успешно отправленных пачках
+     *
+     * @return Количество отправленных событий
+     */
+    public long eventsSent() {
+        return eventsSent.sum();
+    }
+
+    /**
+     * Прекращает прием событий, отправляет накопленные пачки и ждет их подтверждения
+     */
+    @Override
+    public void close() {
+        closed = true;
+        flush().handle((ignored, error) -> null).join();
+    }
+
+    private final class Partition {
+
+        final int index;
+
+        final ReentrantLock lock = new ReentrantLock();
+
+        List<GamificationEvent> events = new ArrayList<>();
+
+        int bytes;
+
+        CompletableFuture<Void> batchDone;
+
+        ScheduledFuture<?> timer;
+
+        /**
+         * Завершение последней отправленной пачки, следующая пачка отправляется после него
+         */
+        CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        long lastArrivalNanos;
+
+        double intervalNanos = Double.POSITIVE_INFINITY;
+
+        Partition(int index) {
+            this.index = index;
+        }
+
+        void onArrival(long now) {
+            if (lastArrivalNanos != 0) {
+                long interval = Math.max(0, now - lastArrivalNanos);
+                intervalNanos = Double.isInfinite(intervalNanos)
+                        ? interval
+                        : EWMA_ALPHA * interval + (1 - EWMA_ALPHA) * intervalNanos;
+            }
+            lastArrivalNanos = now;
+        }
+
+        long lingerNanos() {
+            long maxLinger = policy.maxLinger().toNanos();
+            double expectedArrivals = intervalNanos == 0 ? Double.MAX_VALUE : maxLinger / intervalNanos;
+            if (expectedArrivals < 1) {
+                return 0;
+            }
+            return (long) (maxLinger * Math.min(1, expectedArrivals / policy.maxBatchSize()));
+        }
+
+        void dispatchIfCurrent(List<GamificationEvent> batch) {
+            lock.lock();
+            try {
+                if (events == batch) {
+                    dispatch();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Ставит текущую пачку в очередь отправки партиции, вызывается под блокировкой
+         */
+        void dispatch() {
+            List<GamificationEvent> batch = List.copyOf(events);
+            CompletableFuture<Void> done = batchDone;
+            events = new ArrayList<>();
+            bytes = 0;
+            batchDone = null;
+            if (timer != null) {
+                timer.cancel(false);
+                timer = null;
+            }
+
+            tail = tail.handle((ignored, error) -> null)
+                    .thenComposeAsync(ignored -> send(batch), scheduler);
+            tail.whenComplete((ignored, error) -> {
+                if (error == null) {
+                    batchesSent.increment();
+                    eventsSent.add(batch.size());
+                    done.complete(null);
+                } else {
+                    done.completeExceptionally(error);
+                }
+            });
+        }
+
+        private CompletableFuture<Void> send(List<GamificationEvent> batch) {
+            try {
+                return transport.send(index, batch);
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+    }
+}
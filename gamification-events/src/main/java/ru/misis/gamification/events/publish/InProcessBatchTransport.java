@@ -0,0 +1,38 @@
+package ru.misis.gamification.events.publish;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BiConsumer;
+
+/**
+ * Отправка пачек получателю в том же процессе
+ *
+ * <p>
+ * Синхронно передает пачку получателю. Подходит для тестов и однопроцессного развертывания.
+ * </p>
+ */
+public class InProcessBatchTransport implements BatchTransport {
+
+    private final BiConsumer<Integer, List<GamificationEvent>> consumer;
+
+    /**
+     * Создает транспорт, передающий пачки получателю в вызывающем потоке
+     *
+     * @param consumer Получатель номера партиции и пачки событий
+     */
+    public InProcessBatchTransport(BiConsumer<Integer, List<GamificationEvent>> consumer) {
+        this.consumer = consumer;
+    }
+
+    @Override
+    public CompletableFuture<Void> send(int partition, List<GamificationEvent> batch) {
+        try {
+            consumer.accept(partition, batch);
+            return CompletableFuture.completedFuture(null);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package ru.misis.gamification.events.ratelimit;
+
+import ru.misis.gamification.events.constants.EventConstants;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Ограничитель частоты внешних событий по пользователю и типу события
+ *
+ * <p>
+ * Отсекает накрутку очков (спам {@link EventConstants#FORUM_POST_CREATED},
+ * повторные {@link EventConstants#ASSIGNMENT_SUBMITTED}) на входе, до движка правил.
+ * Корзина токенов реализована алгоритмом GCRA: состояние пользователя - одно
+ * значение {@link AtomicLong} (теоретическое время следующего события), которое
+ * обновляется CAS без блокировок.
+ * </p>
+ *
+ * <p>
+ * Состояние хранится только для пользователей, отправлявших события за последние
+ * {@code idleTimeout}: простаивающие корзины полностью пополнены и удаляются
+ * периодической очисткой ({@link #start(ScheduledExecutorService, Duration)}) в потоке
+ * планировщика, а не в вызывающем {@link #tryAcquire(GamificationEvent)}, поэтому память
+ * ограничена числом активных пользователей.
+ * События типов без политики не ограничиваются. Класс потокобезопасен.
+ * </p>
+ */
+public class EventRateLimiter implements AutoCloseable {
+
+    /**
+     * Время простоя, после которого состояние пользователя удаляется, по умолчанию
+     */
+    public static final Duration DEFAULT_IDLE_TIMEOUT = Duration.ofHours(1);
+
+    /**
+     * Значение новой корзины: заполнена полностью
+     */
+    private static final long FULL = Long.MIN_VALUE + 1;
+
+    /**
+     * Значение удаленной корзины, которую нельзя больше обновлять
+     */
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    private final Map<String, TypeLimiter> limiters;
+
+    private final long idleTimeoutNanos;
+
+    private final LongSupplier nanoClock;
+
+    private ScheduledFuture<?> schedule;
+
+    /**
+     * Создает ограничитель с временем простоя по умолчанию
+     *
+     * @param policies Политики по типам событий из {@link EventConstants}
+     */
+    public EventRateLimiter(Map<String, RateLimitPolicy> policies) {
+        this(policies, DEFAULT_IDLE_TIMEOUT, System::nanoTime);
+    }
+
+    /**
+     * Создает ограничитель
+     *
+     * @param policies    Политики по типам событий из {@link EventConstants}
+     * @param idleTimeout Время простоя, после которого состояние пользователя удаляется
+     * @param nanoClock   Монотонные часы в наносекундах
+     * @throws IllegalArgumentException Если время простоя меньше периода какой-либо политики
+     */
+    public EventRateLimiter(Map<String, RateLimitPolicy> policies, Duration idleTimeout, LongSupplier nanoClock) {
+        Map<String, TypeLimiter> byType = new HashMap<>();
+        policies.forEach((type, policy) -> {
+            if (idleTimeout.compareTo(policy.period()) < 0) {
+                throw new IllegalArgumentException("idleTimeout не может быть меньше периода политики " + type);
+            }
+            byType.put(type, new TypeLimiter(policy));
+        });
+        this.limiters = Map.copyOf(byType);
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Политики по умолчанию для внешних событий
+     *
+     * @return Неизменяемая карта политик по типам событий
+     */
+    public static Map<String, RateLimitPolicy> defaultPolicies() {
+        return Map.of(
+                EventConstants.FORUM_POST_CREATED, RateLimitPolicy.of(10, Duration.ofMinutes(10)),
+                EventConstants.ASSIGNMENT_SUBMITTED, RateLimitPolicy.of(5, Duration.ofMinutes(10)),
+                EventConstants.TASK_COMPLETED, RateLimitPolicy.of(60, Duration.ofMinutes(10)),
+                EventConstants.TEST_PASSED, RateLimitPolicy.of(30, Duration.ofMinutes(10)),
+                EventConstants.COURSE_ENROLLED, RateLimitPolicy.of(20, Duration.ofHours(1))
+        );
+    }
+
+    /**
+     * Пытается пропустить событие
+     *
+     * @param event Внешнее событие
+     * @return {@code true} Если событие укладывается в лимит и должно быть обработано
+     */
+    public boolean tryAcquire(GamificationEvent event) {
+        return tryAcquire(event.userId(), event.type());
+    }
+
+    /**
+     * Пытается пропустить событие пользователя заданного типа
+     *
+     * @param userId Идентификатор пользователя
+     * @param type   Тип события из {@link EventConstants}
+     * @return {@code true} Если событие укладывается в лимит и должно быть обработано
+     */
+    public boolean tryAcquire(String userId, String type) {
+        TypeLimiter limiter = limiters.get(type);
+        if (limiter == null) {
+            return true;
+        }
+        boolean allowed = limiter.tryAcquire(userId, nanoClock.getAsLong());
+        (allowed ? limiter.accepted : limiter.rejected).increment();
+        return allowed;
+    }
+
+    /**
+     * Удаляет состояние пользователей, простаивающих дольше {@code idleTimeout}
+     *
+     * <p>
+     * Обходит все корзины, поэтому вызывается периодически после
+     * {@link #start(ScheduledExecutorService, Duration)}, а не на пути обработки событий.
+     * </p>
+     */
+    public void evictIdle() {
+        long threshold = nanoClock.getAsLong() - idleTimeoutNanos;
+        limiters.values().forEach(limiter -> limiter.evictIdle(threshold));
+    }
+
+    /**
+     * Запускает периодическую очистку простаивающих корзин
+     *
+     * @param scheduler Планировщик
+     * @param interval  Пауза между запусками
+     * @throws IllegalStateException Если очистка уже запущена
+     */
+    public synchronized void start(ScheduledExecutorService scheduler, Duration interval) {
+        if (schedule != null) {
+            throw new IllegalStateException("Очистка корзин уже запущена");
+        }
+        long millis = interval.toMillis();
+        schedule = scheduler.scheduleWithFixedDelay(this::evictIdle, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Останавливает периодическую очистку
+     */
+    @Override
+    public synchronized void close() {
+        if (schedule != null) {
+            schedule.cancel(false);
+        }
+    }
+
+    /**
+     * Возвращает количество отклоненных событий типа
+     *
+     * @param type Тип события
+     * @return Количество отклоненных событий
+     */
+    public long rejectedCount(String type) {
+        TypeLimiter limiter = limiters.get(type);
+        return limiter == null ? 0 : limiter.rejected.sum();
+    }
+
+    /**
+     * Возвращает количество пропущенных событий типа
+     *
+     * @param type Тип события
+     * @return Количество пропущенных событий
+     */
+    public long acceptedCount(String type) {
+        TypeLimiter limiter = limiters.get(type);
+        return limiter == null ? 0 : limiter.accepted.sum();
+    }
+
+    /**
+     * Возвращает количество хранимых корзин по всем типам
+     *
+     * @return Количество пар пользователь-тип с состоянием
+     */
+    public int trackedBuckets() {
+        return limiters.values().stream().mapToInt(limiter -> limiter.buckets.size()).sum();
+    }
+
+    /**
+     * Корзины пользователей для одного типа событий
+     */
+    private static final class TypeLimiter {
+
+        private final long emissionInterval;
+
+        private final long burstTolerance;
+
+        private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+        private final LongAdder accepted = new LongAdder();
+
+        private final LongAdder rejected = new LongAdder();
+
+        private TypeLimiter(RateLimitPolicy policy) {
+            this.emissionInterval = policy.emissionIntervalNanos();
+            this.burstTolerance = policy.burstToleranceNanos();
+        }
+
+        private boolean tryAcquire(String userId, long now) {
+            while (true) {
+                AtomicLong bucket = buckets.computeIfAbsent(userId, id -> new AtomicLong(FULL));
+                long tat = bucket.get();
+                if (tat == EVICTED) {
+                    buckets.remove(userId, bucket);
+                    continue;
+                }
+                long base = Math.max(tat, now);
+                if (base - now > burstTolerance) {
+                    return false;
+                }
+                if (bucket.compareAndSet(tat, base + emissionInterval)) {
+                    return true;
+                }
+            }
+        }
+
+        private void evictIdle(long threshold) {
+            buckets.forEach((userId, bucket) -> {
+                long tat = bucket.get();
+                if (tat != EVICTED && (tat == FULL || tat - threshold <= 0) && bucket.compareAndSet(tat, EVICTED)) {
+                    buckets.remove(userId, bucket);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ru.misis.gamification.events.ratelimit;
+
+import java.time.Duration;
+
+/**
+ * Политика ограничения частоты событий одного типа для одного пользователя
+ *
+ * <p>
+ * Корзина вмещает {@code capacity} токенов и полностью пополняется за {@code period},
+ * то есть пользователь может отправить до {@code capacity} событий подряд,
+ * а затем не чаще одного события в {@code period / capacity}.
+ * </p>
+ *
+ * @param capacity Емкость корзины (допустимый всплеск)
+ * @param period   Время полного пополнения корзины
+ */
+public record RateLimitPolicy(int capacity, Duration period) {
+
+    /**
+     * Проверяет параметры политики
+     *
+     * @throws IllegalArgumentException Если емкость или период не положительны, либо частота слишком высока
+     */
+    public RateLimitPolicy {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity должен быть положительным");
+        }
+        if (period == null || period.isNegative() || period.isZero()) {
+            throw new IllegalArgumentException("period должен быть положительным");
+        }
+        if (period.toNanos() / capacity == 0) {
+            throw new IllegalArgumentException("Слишком высокая частота для period");
+        }
+    }
+
+    /**
+     * Создает политику "не более {@code permits} событий за {@code period}"
+     *
+     * @param permits Количество событий
+     * @param period  Период
+     * @return Политика ограничения
+     */
+    public static RateLimitPolicy of(int permits, Duration period) {
+        return new RateLimitPolicy(permits, period);
+    }
+
+    /**
+     * Возвращает интервал пополнения одного токена
+     *
+     * @return Интервал в наносекундах
+     */
+    long emissionIntervalNanos() {
+        return period.toNanos() / capacity;
+    }
+
+    /**
+     * Возвращает допустимое опережение графика, соответствующее всплеску
+     *
+     * @return Допуск в наносекундах
+     */
+    long burstToleranceNanos() {
+        return emissionIntervalNanos() * (capacity - 1);
+    }
+}
@@ -0,0 +1,50 @@
+package ru.misis.gamification.events.scheduling;
+
+import ru.misis.gamification.events.constants.EventConstants;
+
+import java.util.Set;
+
+/**
+ * Полоса обработки событий
+ *
+ * <p>
+ * За один круг планировщик выдает из полосы до {@code weight} событий,
+ * поэтому доля полосы в обработке под нагрузкой пропорциональна ее весу,
+ * а полоса с минимальным весом все равно получает свою долю.
+ * </p>
+ *
+ * @param name     Имя полосы
+ * @param weight   Вес полосы
+ * @param capacity Максимальное количество событий в очереди полосы
+ * @param types    Типы событий из {@link EventConstants}
+ */
+public record Lane(String name, int weight, int capacity, Set<String> types) {
+
+    /**
+     * Проверяет параметры полосы и копирует набор типов
+     *
+     * @throws IllegalArgumentException Если имя пустое, вес или емкость не положительны
+     */
+    public Lane {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("name не может быть пустым");
+        }
+        if (weight <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("weight и capacity должны быть положительными");
+        }
+        types = Set.copyOf(types);
+    }
+
+    /**
+     * Создает полосу
+     *
+     * @param name     Имя полосы
+     * @param weight   Вес полосы
+     * @param capacity Максимальное количество событий в очереди
+     * @param types    Типы событий из {@link EventConstants}
+     * @return Полоса
+     */
+    public static Lane of(String name, int weight, int capacity, String... types) {
+        return new Lane(name, weight, capacity, Set.of(types));
+    }
+}
@@ -0,0 +1,21 @@
+package ru.misis.gamification.events.scheduling;
+
+/**
+ * Метрики полосы обработки
+ *
+ * @param lane     Имя полосы
+ * @param depth    Текущее количество событий в очереди
+ * @param maxDepth Максимальное количество событий в очереди с момента создания
+ * @param enqueued Количество принятых событий
+ * @param dequeued Количество выданных на обработку событий
+ * @param rejected Количество событий, отклоненных из-за переполнения очереди
+ */
+public record LaneStats(
+        String lane,
+        int depth,
+        int maxDepth,
+        long enqueued,
+        long dequeued,
+        long rejected
+) {
+}
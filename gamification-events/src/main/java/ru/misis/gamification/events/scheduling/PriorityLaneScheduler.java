@@ -0,0 +1,254 @@
+package ru.misis.gamification.events.scheduling;
+
+import ru.misis.gamification.events.constants.EventConstants;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Очередь событий с полосами приоритета по типам событий
+ *
+ * <p>
+ * Полосы выбираются по взвешенному круговому обходу с дефицитом (deficit round robin):
+ * на каждом круге полоса получает кредит, равный весу, и отдает события, пока кредит
+ * не кончится или полоса не опустеет. Событие видимой студенту полосы ждет не дольше
+ * одного круга остальных полос независимо от глубины их очередей, а полосы с малым
+ * весом не голодают.
+ * </p>
+ *
+ * <p>
+ * Порядок сохраняется только внутри полосы: события одного пользователя разных типов,
+ * попавшие в разные полосы, выдаются не в порядке поступления. Например, повышение уровня
+ * может обогнать изменение баланса, которое к нему привело. Получатель, которому важен
+ * порядок событий пользователя, должен упорядочивать их сам (по {@code occurredAt}
+ * или позиции в журнале) либо держать зависимые типы в одной полосе.
+ * </p>
+ *
+ * <pre>{@code
+ * PriorityLaneScheduler scheduler = new PriorityLaneScheduler(PriorityLaneScheduler.defaultLanes(), "standard");
+ * scheduler.offer(event);
+ * GamificationEvent next = scheduler.take();
+ * }</pre>
+ */
+public class PriorityLaneScheduler {
+
+    private final LaneQueue[] lanes;
+
+    private final Map<String, LaneQueue> byType = new HashMap<>();
+
+    private final LaneQueue defaultLane;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition notEmpty = lock.newCondition();
+
+    private int current;
+
+    private int size;
+
+    /**
+     * Создает планировщик
+     *
+     * @param lanes       Полосы в порядке обхода
+     * @param defaultLane Имя полосы для типов событий, не указанных ни в одной полосе
+     * @throws IllegalArgumentException Если тип указан в нескольких полосах или полосы по умолчанию нет
+     */
+    public PriorityLaneScheduler(List<Lane> lanes, String defaultLane) {
+        if (lanes.isEmpty()) {
+            throw new IllegalArgumentException("Нужна хотя бы одна полоса");
+        }
+        this.lanes = new LaneQueue[lanes.size()];
+        LaneQueue fallback = null;
+        for (int i = 0; i < lanes.size(); i++) {
+            LaneQueue queue = new LaneQueue(lanes.get(i));
+            this.lanes[i] = queue;
+            for (String type : queue.lane.types()) {
+                if (byType.put(type, queue) != null) {
+                    throw new IllegalArgumentException("Тип " + type + " указан в нескольких полосах");
+                }
+            }
+            if (queue.lane.name().equals(defaultLane)) {
+                fallback = queue;
+            }
+        }
+        if (fallback == null) {
+            throw new IllegalArgumentException("Нет полосы по умолчанию: " + defaultLane);
+        }
+        this.defaultLane = fallback;
+    }
+
+    /**
+     * Полосы по умолчанию
+     *
+     * <ul>
+     *     <li>{@code interactive} (вес 8) - повышение уровня и достижения</li>
+     *     <li>{@code standard} (вес 3) - изменение баланса, тесты, задания, запись на курс и форум;
+     *     массовый импорт порождает поток изменений баланса, который не должен задерживать
+     *     повышения уровня и достижения</li>
+     *     <li>{@code bulk} (вес 1) - завершение задач, основной поток массовых импортов оценок</li>
+     * </ul>
+     *
+     * @return Полосы в порядке обхода
+     */
+    public static List<Lane> defaultLanes() {
+        return List.of(
+                Lane.of("interactive", 8, 10_000,
+                        EventConstants.LEVEL_UP, EventConstants.ACHIEVEMENT_UNLOCKED),
+                Lane.of("standard", 3, 50_000,
+                        EventConstants.POINTS_CHANGED, EventConstants.TEST_PASSED, EventConstants.ASSIGNMENT_SUBMITTED,
+                        EventConstants.COURSE_ENROLLED, EventConstants.FORUM_POST_CREATED),
+                Lane.of("bulk", 1, 200_000,
+                        EventConstants.TASK_COMPLETED)
+        );
+    }
+
+    /**
+     * Ставит событие в очередь его полосы
+     *
+     * @param event Событие
+     * @return {@code true} Если событие принято; {@code false}, если очередь полосы заполнена
+     */
+    public boolean offer(GamificationEvent event) {
+        LaneQueue queue = byType.getOrDefault(event.type(), defaultLane);
+        lock.lock();
+        try {
+            if (queue.events.size() >= queue.lane.capacity()) {
+                queue.rejected++;
+                return false;
+            }
+            queue.events.addLast(event);
+            queue.enqueued++;
+            queue.maxDepth = Math.max(queue.maxDepth, queue.events.size());
+            size++;
+            notEmpty.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Извлекает следующее событие, ожидая его появления
+     *
+     * @return Событие
+     * @throws InterruptedException Если поток прерван во время ожидания
+     */
+    public GamificationEvent take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Извлекает следующее событие, ожидая его появления не дольше {@code timeout}
+     *
+     * @param timeout Время ожидания
+     * @return Событие или {@code null}, если за время ожидания событий не появилось
+     * @throws InterruptedException Если поток прерван во время ожидания
+     */
+    public GamificationEvent poll(Duration timeout) throws InterruptedException {
+        long remaining = timeout.toNanos();
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (remaining <= 0) {
+                    return null;
+                }
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает количество событий во всех полосах
+     *
+     * @return Количество событий
+     */
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает метрики полос
+     *
+     * @return Метрики в порядке обхода полос
+     */
+    public List<LaneStats> stats() {
+        lock.lock();
+        try {
+            List<LaneStats> stats = new ArrayList<>(lanes.length);
+            for (LaneQueue queue : lanes) {
+                stats.add(new LaneStats(queue.lane.name(), queue.events.size(), queue.maxDepth,
+                        queue.enqueued, queue.dequeued, queue.rejected));
+            }
+            return stats;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Выбирает событие по кругу с дефицитом, вызывается под блокировкой при непустой очереди
+     */
+    private GamificationEvent next() {
+        while (true) {
+            LaneQueue queue = lanes[current];
+            if (queue.events.isEmpty()) {
+                queue.deficit = 0;
+            } else if (queue.deficit > 0) {
+                queue.deficit--;
+                queue.dequeued++;
+                size--;
+                return queue.events.pollFirst();
+            }
+            current = (current + 1) % lanes.length;
+            LaneQueue nextQueue = lanes[current];
+            if (!nextQueue.events.isEmpty()) {
+                nextQueue.deficit += nextQueue.lane.weight();
+            }
+        }
+    }
+
+    private static final class LaneQueue {
+
+        final Lane lane;
+
+        final ArrayDeque<GamificationEvent> events = new ArrayDeque<>();
+
+        int deficit;
+
+        int maxDepth;
+
+        long enqueued;
+
+        long dequeued;
+
+        long rejected;
+
+        LaneQueue(Lane lane) {
+            this.lane = lane;
+        }
+    }
+}
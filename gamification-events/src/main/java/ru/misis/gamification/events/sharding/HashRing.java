@@ -0,0 +1,182 @@
+package ru.misis.gamification.events.sharding;
+
+import ru.misis.gamification.events.util.Hashing;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Кольцо консистентного хеширования пользователей по узлам
+ *
+ * <p>
+ * Пространство хешей идентификаторов разбито на {@value #RANGES} диапазонов одинаковой ширины.
+ * Каждый узел занимает на кольце {@code virtualNodes} точек, диапазон принадлежит
+ * узлу первой точки по часовой стрелке от конца диапазона. Диапазон - единица
+ * передачи состояния между узлами: все его пользователи переезжают вместе.
+ * При добавлении или удалении узла меняют владельца только диапазоны,
+ * попавшие на дуги этого узла, - в среднем {@code 1/N} от всех.
+ * </p>
+ *
+ * <p>
+ * Кольцо неизменяемо, изменения возвращают новое кольцо.
+ * </p>
+ */
+public final class HashRing {
+
+    /**
+     * Количество виртуальных узлов на узел по умолчанию
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    /**
+     * Количество диапазонов хешей
+     */
+    public static final int RANGES = 1024;
+
+    private static final int RANGE_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(RANGES);
+
+    private final Set<String> nodes;
+
+    private final int virtualNodes;
+
+    private final long[] points;
+
+    private final String[] owners;
+
+    private HashRing(Set<String> nodes, int virtualNodes) {
+        this.nodes = Set.copyOf(nodes);
+        this.virtualNodes = virtualNodes;
+
+        String[] sortedNodes = new TreeSet<>(nodes).toArray(String[]::new);
+        long[] rawPoints = new long[sortedNodes.length * virtualNodes];
+        int[] rawOwners = new int[rawPoints.length];
+        Integer[] order = new Integer[rawPoints.length];
+        for (int node = 0; node < sortedNodes.length; node++) {
+            for (int replica = 0; replica < virtualNodes; replica++) {
+                int index = node * virtualNodes + replica;
+                rawPoints[index] = Hashing.hash64(sortedNodes[node], replica);
+                rawOwners[index] = node;
+                order[index] = index;
+            }
+        }
+        Arrays.sort(order, (left, right) -> {
+            int compared = Long.compareUnsigned(rawPoints[left], rawPoints[right]);
+            return compared != 0 ? compared : Integer.compare(rawOwners[left], rawOwners[right]);
+        });
+
+        this.points = new long[order.length];
+        this.owners = new String[order.length];
+        for (int i = 0; i < order.length; i++) {
+            points[i] = rawPoints[order[i]];
+            owners[i] = sortedNodes[rawOwners[order[i]]];
+        }
+    }
+
+    /**
+     * Создает кольцо
+     *
+     * @param nodes        Идентификаторы узлов
+     * @param virtualNodes Количество виртуальных узлов на узел
+     * @return Кольцо
+     */
+    public static HashRing of(Collection<String> nodes, int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes должен быть положительным");
+        }
+        return new HashRing(new TreeSet<>(nodes), virtualNodes);
+    }
+
+    /**
+     * Возвращает кольцо с добавленным узлом
+     *
+     * @param nodeId Идентификатор узла
+     * @return Новое кольцо
+     */
+    public HashRing withNode(String nodeId) {
+        Set<String> updated = new TreeSet<>(nodes);
+        updated.add(nodeId);
+        return new HashRing(updated, virtualNodes);
+    }
+
+    /**
+     * Возвращает кольцо без узла
+     *
+     * @param nodeId Идентификатор узла
+     * @return Новое кольцо
+     */
+    public HashRing withoutNode(String nodeId) {
+        Set<String> updated = new TreeSet<>(nodes);
+        updated.remove(nodeId);
+        return new HashRing(updated, virtualNodes);
+    }
+
+    /**
+     * Возвращает диапазон хешей пользователя
+     *
+     * @param userId Идентификатор пользователя
+     * @return Номер диапазона от {@code 0} до {@link #RANGES} (не включая)
+     */
+    public static int rangeOf(String userId) {
+        return (int) (Hashing.hash64(userId) >>> RANGE_SHIFT);
+    }
+
+    /**
+     * Возвращает узел-владелец пользователя
+     *
+     * @param userId Идентификатор пользователя
+     * @return Идентификатор узла
+     * @throws IllegalStateException Если в кольце нет узлов
+     */
+    public String ownerOf(String userId) {
+        return ownerOfRange(rangeOf(userId));
+    }
+
+    /**
+     * Возвращает узел-владелец диапазона
+     *
+     * @param range Номер диапазона
+     * @return Идентификатор узла
+     * @throws IllegalArgumentException Если номер диапазона вне {@code [0, RANGES)}
+     * @throws IllegalStateException    Если в кольце нет узлов
+     */
+    public String ownerOfRange(int range) {
+        if (range < 0 || range >= RANGES) {
+            throw new IllegalArgumentException("Номер диапазона вне [0, " + RANGES + "): " + range);
+        }
+        if (points.length == 0) {
+            throw new IllegalStateException("В кольце нет узлов");
+        }
+        long hash = ((long) (range + 1) << RANGE_SHIFT) - 1;
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (Long.compareUnsigned(points[middle], hash) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return owners[low == points.length ? 0 : low];
+    }
+
+    /**
+     * Возвращает узлы, занимающие точки на кольце
+     *
+     * @return Идентификаторы узлов кольца
+     */
+    public Set<String> nodes() {
+        return nodes;
+    }
+
+    /**
+     * Возвращает количество точек кольца на один узел
+     *
+     * @return Количество виртуальных узлов на узел
+     */
+    public int virtualNodes() {
+        return virtualNodes;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.misis.gamification.events.sharding;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.state.UserState;
+import ru.misis.gamification.events.state.UserStateStore;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Пересылка событий и передача состояний между узлами в том же процессе
+ *
+ * <p>
+ * Синхронно вызывает зарегистрированный узел. Подходит для тестов перебалансировки
+ * и однопроцессного развертывания.
+ * </p>
+ */
+public class InProcessShardTransport implements ShardTransport, StateHandoff {
+
+    private final Map<String, ShardNode> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * Создает транспорт без зарегистрированных узлов
+     */
+    public InProcessShardTransport() {
+    }
+
+    /**
+     * Делает узел доступным для пересылки и передачи состояний
+     *
+     * @param node Узел
+     * @throws IllegalArgumentException Если узел с таким идентификатором уже зарегистрирован
+     */
+    public void register(ShardNode node) {
+        if (nodes.putIfAbsent(node.id(), node) != null) {
+            throw new IllegalArgumentException("Узел уже зарегистрирован: " + node.id());
+        }
+    }
+
+    @Override
+    public boolean forward(String nodeId, long position, GamificationEvent event, int hops) {
+        return node(nodeId).handle(position, event, hops);
+    }
+
+    @Override
+    public UserState get(String nodeId, String userId, int hops) {
+        return node(nodeId).get(userId, hops);
+    }
+
+    @Override
+    public void transfer(String nodeId, int range, UserStateStore.Snapshot snapshot) {
+        node(nodeId).accept(range, snapshot);
+    }
+
+    private ShardNode node(String nodeId) {
+        ShardNode node = nodes.get(nodeId);
+        if (node == null) {
+            throw new IllegalStateException("Узел не зарегистрирован: " + nodeId);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,171 @@
+package ru.misis.gamification.events.sharding;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.state.UserState;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Координатор группы узлов с состояниями пользователей, распределенными консистентным хешированием
+ *
+ * <p>
+ * При добавлении и удалении узла кластер сравнивает владельцев диапазонов в старом
+ * и новом кольце и переносит диапазоны по одному: прежний владелец блокирует только
+ * передаваемый диапазон, передает его снимок через {@link StateHandoff} и затем
+ * пересылает события диапазона новому владельцу. Остальные диапазоны все это время
+ * обрабатывают события. После переноса всех диапазонов новое кольцо сообщается узлам.
+ * Событие применяется либо прежним владельцем до передачи, либо новым после нее -
+ * и никогда обоими.
+ * </p>
+ *
+ * <p>
+ * Узлы взаимодействуют только через {@link ShardTransport} и {@link StateHandoff}.
+ * Кластер создает узлы в одном процессе с {@link InProcessShardTransport}, что позволяет
+ * проверять перебалансировку под нагрузкой без сети; при развертывании на нескольких
+ * процессах вызовы {@link ShardNode#release(int, String)} и {@link ShardNode#updateRing(HashRing)}
+ * выполняет служба членства по тому же алгоритму.
+ * </p>
+ *
+ * <pre>{@code
+ * ShardCluster cluster = new ShardCluster();
+ * ShardNode first = cluster.addNode("points-1");
+ * cluster.addNode("points-2");
+ * first.handle(offset, pointsChangedEvent); // переслано владельцу при необходимости
+ * }</pre>
+ */
+public class ShardCluster {
+
+    private final InProcessShardTransport transport = new InProcessShardTransport();
+
+    private final Map<String, ShardNode> nodes = new ConcurrentHashMap<>();
+
+    private volatile HashRing ring;
+
+    /**
+     * Создает пустой кластер с количеством виртуальных узлов по умолчанию
+     */
+    public ShardCluster() {
+        this(HashRing.DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Создает пустой кластер
+     *
+     * @param virtualNodes Количество виртуальных узлов на узел
+     */
+    public ShardCluster(int virtualNodes) {
+        this.ring = HashRing.of(Set.of(), virtualNodes);
+    }
+
+    /**
+     * Добавляет узел и передает ему диапазоны с его дуг кольца
+     *
+     * @param nodeId Идентификатор узла
+     * @return Новый узел
+     * @throws IllegalArgumentException Если узел уже есть в кластере или был удален из него
+     */
+    public synchronized ShardNode addNode(String nodeId) {
+        if (nodes.containsKey(nodeId)) {
+            throw new IllegalArgumentException("Узел уже есть в кластере: " + nodeId);
+        }
+        ShardNode node = new ShardNode(nodeId, ring, transport, transport);
+        transport.register(node);
+        nodes.put(nodeId, node);
+        rebalance(ring.withNode(nodeId));
+        return node;
+    }
+
+    /**
+     * Удаляет узел, передав его диапазоны оставшимся узлам
+     *
+     * <p>
+     * Удаленный узел остается доступным через транспорт и пересылает полученные
+     * события новым владельцам.
+     * </p>
+     *
+     * @param nodeId Идентификатор узла
+     * @throws IllegalArgumentException Если узла нет в кластере
+     * @throws IllegalStateException    Если это последний узел
+     */
+    public synchronized void removeNode(String nodeId) {
+        if (!nodes.containsKey(nodeId)) {
+            throw new IllegalArgumentException("Узла нет в кластере: " + nodeId);
+        }
+        if (nodes.size() == 1) {
+            throw new IllegalStateException("Нельзя удалить последний узел кластера");
+        }
+        rebalance(ring.withoutNode(nodeId));
+        nodes.remove(nodeId);
+    }
+
+    /**
+     * Передает событие узлу-владельцу
+     *
+     * @param position Позиция события в журнале, возрастающая в пределах диапазона пользователя
+     * @param event    Событие геймификации
+     * @return {@code true} Если событие применено
+     * @throws IllegalStateException Если в кластере нет узлов
+     */
+    public boolean route(long position, GamificationEvent event) {
+        return entryNode(event.userId()).handle(position, event);
+    }
+
+    /**
+     * Возвращает состояние пользователя с узла-владельца
+     *
+     * @param userId Идентификатор пользователя
+     * @return Состояние или {@code null}, если событий пользователя не было
+     */
+    public UserState get(String userId) {
+        return entryNode(userId).get(userId);
+    }
+
+    /**
+     * Возвращает узел кластера
+     *
+     * @param nodeId Идентификатор узла
+     * @return Узел или {@code null}, если его нет в кластере
+     */
+    public ShardNode node(String nodeId) {
+        return nodes.get(nodeId);
+    }
+
+    /**
+     * Возвращает кольцо, о котором узлам сообщено последним
+     *
+     * @return Текущее кольцо
+     */
+    public HashRing ring() {
+        return ring;
+    }
+
+    private ShardNode entryNode(String userId) {
+        ShardNode node = nodes.get(ring.ownerOf(userId));
+        if (node != null) {
+            return node;
+        }
+        return nodes.values().stream().findAny()
+                .orElseThrow(() -> new IllegalStateException("В кластере нет узлов"));
+    }
+
+    private void rebalance(HashRing updated) {
+        HashRing current = ring;
+        for (int range = 0; range < HashRing.RANGES; range++) {
+            String owner = updated.ownerOfRange(range);
+            if (current.nodes().isEmpty()) {
+                nodes.get(owner).acceptEmpty(range);
+                continue;
+            }
+            String previous = current.ownerOfRange(range);
+            if (!previous.equals(owner)) {
+                nodes.get(previous).release(range, owner);
+            }
+        }
+        ring = updated;
+        for (ShardNode node : nodes.values()) {
+            node.updateRing(updated);
+        }
+    }
+}
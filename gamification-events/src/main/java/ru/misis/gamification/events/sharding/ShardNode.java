@@ -0,0 +1,312 @@
+package ru.misis.gamification.events.sharding;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.state.UserState;
+import ru.misis.gamification.events.state.UserStateStore;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Узел, владеющий состояниями части пользователей
+ *
+ * <p>
+ * Состояния каждого принадлежащего узлу диапазона {@link HashRing} хранятся в отдельном
+ * {@link UserStateStore}, который пропускает события с позицией не больше последней
+ * примененной. Поэтому позиции должны возрастать в пределах диапазона: события приходят
+ * из одного журнала в его порядке или журнал разбит на партиции по тем же диапазонам.
+ * Повторная доставка и пересылка во время перебалансировки не применяют событие дважды.
+ * </p>
+ *
+ * <p>
+ * Событие чужого диапазона пересылается через {@link ShardTransport}: узлу, которому
+ * диапазон был передан, или владельцу по последнему полученному кольцу. Диапазон передается
+ * новому владельцу через {@link StateHandoff} снимком хранилища под блокировкой
+ * только этого диапазона; остальные диапазоны узла в это время обрабатывают события.
+ * </p>
+ *
+ * @see ShardCluster
+ */
+public class ShardNode {
+
+    /**
+     * Максимальное количество пересылок одного события, больше бывает только
+     * при непрерывной перебалансировке
+     */
+    private static final int MAX_HOPS = 16;
+
+    private static final UserStateStore.Snapshot EMPTY = new UserStateStore().snapshot();
+
+    private final String id;
+
+    private final ShardTransport transport;
+
+    private final StateHandoff handoff;
+
+    private final AtomicReferenceArray<Range> ranges = new AtomicReferenceArray<>(HashRing.RANGES);
+
+    private final LongAdder applied = new LongAdder();
+
+    private final LongAdder duplicates = new LongAdder();
+
+    private final LongAdder forwarded = new LongAdder();
+
+    private volatile HashRing ring;
+
+    /**
+     * Создает узел без диапазонов
+     *
+     * @param id        Идентификатор узла
+     * @param ring      Текущее кольцо кластера, по нему пересылаются события чужих диапазонов
+     * @param transport Пересылка событий и чтений другим узлам
+     * @param handoff   Передача состояний диапазонов другим узлам
+     */
+    public ShardNode(String id, HashRing ring, ShardTransport transport, StateHandoff handoff) {
+        this.id = id;
+        this.ring = ring;
+        this.transport = transport;
+        this.handoff = handoff;
+    }
+
+    /**
+     * Применяет событие журнала или пересылает его узлу-владельцу
+     *
+     * <p>
+     * События, не влияющие на {@link UserState}, не хранятся и возвращают {@code false}.
+     * </p>
+     *
+     * @param position Позиция события в журнале, возрастающая в пределах диапазона пользователя
+     * @param event    Событие геймификации
+     * @return {@code true} Если событие применено; {@code false}, если уже было учтено или не влияет на состояние
+     * @throws IllegalStateException Если событие не удалось доставить владельцу
+     */
+    public boolean handle(long position, GamificationEvent event) {
+        return handle(position, event, 0);
+    }
+
+    /**
+     * Применяет событие, пересланное другим узлом, или пересылает его дальше
+     *
+     * @param position Позиция события в журнале, возрастающая в пределах диапазона пользователя
+     * @param event    Событие геймификации
+     * @param hops     Количество уже выполненных пересылок
+     * @return {@code true} Если событие применено; {@code false}, если уже было учтено или не влияет на состояние
+     * @throws IllegalStateException Если событие не удалось доставить владельцу
+     */
+    public boolean handle(long position, GamificationEvent event, int hops) {
+        if (!UserState.isStateEvent(event)) {
+            return false;
+        }
+        int index = HashRing.rangeOf(event.userId());
+        while (true) {
+            Range range = ranges.get(index);
+            if (range != null && range.store != null) {
+                range.lock.lock();
+                try {
+                    if (range.movedTo == null) {
+                        boolean result = range.store.apply(position, event);
+                        (result ? applied : duplicates).increment();
+                        return result;
+                    }
+                } finally {
+                    range.lock.unlock();
+                }
+                // Диапазон передан, пока событие ждало блокировку: в массиве уже адрес нового владельца
+                continue;
+            }
+            String next = nextHop(index, range, event.userId(), hops);
+            forwarded.increment();
+            return transport.forward(next, position, event, hops + 1);
+        }
+    }
+
+    /**
+     * Возвращает состояние пользователя с узла-владельца
+     *
+     * @param userId Идентификатор пользователя
+     * @return Состояние или {@code null}, если событий пользователя не было
+     */
+    public UserState get(String userId) {
+        return get(userId, 0);
+    }
+
+    /**
+     * Возвращает состояние пользователя по запросу другого узла
+     *
+     * @param userId Идентификатор пользователя
+     * @param hops   Количество уже выполненных пересылок
+     * @return Состояние или {@code null}, если событий пользователя не было
+     */
+    public UserState get(String userId, int hops) {
+        int index = HashRing.rangeOf(userId);
+        while (true) {
+            Range range = ranges.get(index);
+            if (range != null && range.store != null) {
+                UserState state = range.store.get(userId);
+                if (range.movedTo == null) {
+                    return state;
+                }
+                continue;
+            }
+            return transport.get(nextHop(index, range, userId, hops), userId, hops + 1);
+        }
+    }
+
+    /**
+     * Принимает диапазон от прежнего владельца
+     *
+     * @param range    Номер диапазона
+     * @param snapshot Состояния пользователей диапазона и позиция журнала, до которой они учтены
+     * @throws IllegalStateException Если узел уже владеет диапазоном
+     */
+    public void accept(int range, UserStateStore.Snapshot snapshot) {
+        UserStateStore store = new UserStateStore();
+        store.restore(snapshot);
+        Range current = ranges.get(range);
+        if ((current != null && current.store != null) || !ranges.compareAndSet(range, current, new Range(store))) {
+            throw new IllegalStateException("Узел " + id + " уже владеет диапазоном " + range);
+        }
+    }
+
+    /**
+     * Принимает диапазон без состояний, у которого не было владельца
+     *
+     * @param range Номер диапазона
+     * @throws IllegalStateException Если узел уже владеет диапазоном
+     */
+    public void acceptEmpty(int range) {
+        accept(range, EMPTY);
+    }
+
+    /**
+     * Передает диапазон новому владельцу
+     *
+     * <p>
+     * События диапазона, пришедшие во время передачи, ждут ее окончания и затем
+     * пересылаются новому владельцу. Если передача не удалась, узел сохраняет диапазон.
+     * </p>
+     *
+     * @param range    Номер диапазона
+     * @param newOwner Идентификатор нового владельца
+     * @throws IllegalStateException Если узел не владеет диапазоном
+     */
+    public void release(int range, String newOwner) {
+        Range current = ranges.get(range);
+        if (current == null || current.store == null) {
+            throw new IllegalStateException("Узел " + id + " не владеет диапазоном " + range);
+        }
+        current.lock.lock();
+        try {
+            if (current.movedTo != null) {
+                throw new IllegalStateException("Узел " + id + " уже передал диапазон " + range);
+            }
+            handoff.transfer(newOwner, range, current.store.snapshot());
+            ranges.set(range, Range.moved(newOwner));
+            current.movedTo = newOwner;
+        } finally {
+            current.lock.unlock();
+        }
+    }
+
+    /**
+     * Сообщает узлу новое кольцо кластера
+     *
+     * @param ring Кольцо после перебалансировки
+     */
+    public void updateRing(HashRing ring) {
+        this.ring = ring;
+    }
+
+    /**
+     * Возвращает идентификатор узла
+     *
+     * @return Идентификатор узла
+     */
+    public String id() {
+        return id;
+    }
+
+    /**
+     * Возвращает количество пользователей в диапазонах узла
+     *
+     * @return Количество пользователей, которыми владеет узел
+     */
+    public int size() {
+        int size = 0;
+        for (int i = 0; i < HashRing.RANGES; i++) {
+            Range range = ranges.get(i);
+            if (range != null && range.store != null) {
+                size += range.store.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Возвращает количество событий, примененных узлом
+     *
+     * @return Количество событий
+     */
+    public long appliedCount() {
+        return applied.sum();
+    }
+
+    /**
+     * Возвращает количество пропущенных повторных событий
+     *
+     * @return Количество событий
+     */
+    public long duplicateCount() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Возвращает количество событий, пересланных другим узлам
+     *
+     * @return Количество событий
+     */
+    public long forwardedCount() {
+        return forwarded.sum();
+    }
+
+    private String nextHop(int index, Range range, String userId, int hops) {
+        if (hops >= MAX_HOPS) {
+            throw new IllegalStateException("Не удалось доставить событие пользователя " + userId
+                    + " владельцу за " + MAX_HOPS + " пересылок");
+        }
+        String next = range != null && range.movedTo != null ? range.movedTo : ring.ownerOfRange(index);
+        if (next.equals(id)) {
+            throw new IllegalStateException("Узел " + id + " не владеет диапазоном " + index
+                    + ", но по кольцу он его владелец");
+        }
+        return next;
+    }
+
+    /**
+     * Диапазон узла: хранилище принадлежащего диапазона или адрес, по которому он передан
+     */
+    private static final class Range {
+
+        private final UserStateStore store;
+
+        private final ReentrantLock lock;
+
+        private volatile String movedTo;
+
+        private Range(UserStateStore store) {
+            this.store = store;
+            this.lock = new ReentrantLock();
+        }
+
+        private Range(String movedTo) {
+            this.store = null;
+            this.lock = null;
+            this.movedTo = movedTo;
+        }
+
+        private static Range moved(String newOwner) {
+            return new Range(newOwner);
+        }
+    }
+}
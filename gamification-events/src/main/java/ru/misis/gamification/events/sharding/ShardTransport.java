@@ -0,0 +1,39 @@
+package ru.misis.gamification.events.sharding;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.state.UserState;
+
+/**
+ * Пересылка событий и чтений между узлами шардирования
+ *
+ * <p>
+ * Реализация доставляет вызов узлу {@code nodeId} (в том же процессе или по сети)
+ * и синхронно возвращает его результат. Количество уже выполненных пересылок
+ * передается узлу, чтобы ограничить цепочку пересылок во время перебалансировки.
+ * </p>
+ *
+ * @see InProcessShardTransport
+ */
+public interface ShardTransport {
+
+    /**
+     * Передает событие узлу
+     *
+     * @param nodeId   Идентификатор узла-получателя
+     * @param position Позиция события в журнале
+     * @param event    Событие геймификации
+     * @param hops     Количество выполненных пересылок, включая эту
+     * @return Результат {@link ShardNode#handle(long, GamificationEvent, int)} на узле-получателе
+     */
+    boolean forward(String nodeId, long position, GamificationEvent event, int hops);
+
+    /**
+     * Запрашивает состояние пользователя у узла
+     *
+     * @param nodeId Идентификатор узла-получателя
+     * @param userId Идентификатор пользователя
+     * @param hops   Количество выполненных пересылок, включая эту
+     * @return Результат {@link ShardNode#get(String, int)} на узле-получателе
+     */
+    UserState get(String nodeId, String userId, int hops);
+}
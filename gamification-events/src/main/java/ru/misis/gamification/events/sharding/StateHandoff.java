@@ -0,0 +1,28 @@
+package ru.misis.gamification.events.sharding;
+
+import ru.misis.gamification.events.state.UserStateStore;
+
+/**
+ * Передача состояния диапазона пользователей новому владельцу
+ *
+ * <p>
+ * Прежний владелец вызывает {@link #transfer(String, int, UserStateStore.Snapshot)}
+ * под блокировкой диапазона и начинает пересылать события диапазона только после
+ * возврата, поэтому реализация должна вернуть управление лишь после того,
+ * как получатель принял снимок. Ошибка передачи оставляет диапазон прежнему владельцу.
+ * </p>
+ *
+ * @see InProcessShardTransport
+ */
+@FunctionalInterface
+public interface StateHandoff {
+
+    /**
+     * Передает снимок диапазона узлу и дожидается его установки
+     *
+     * @param nodeId   Идентификатор нового владельца
+     * @param range    Номер диапазона {@link HashRing}
+     * @param snapshot Состояния пользователей диапазона и позиция журнала, до которой они учтены
+     */
+    void transfer(String nodeId, int range, UserStateStore.Snapshot snapshot);
+}
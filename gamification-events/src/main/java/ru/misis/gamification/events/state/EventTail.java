@@ -0,0 +1,25 @@
+package ru.misis.gamification.events.state;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Источник хвоста журнала событий для восстановления состояния после снимка
+ *
+ * <p>
+ * Реализуется поверх топика брокера (позиция - смещение) или таблицы событий
+ * (позиция - идентификатор строки).
+ * </p>
+ */
+@FunctionalInterface
+public interface EventTail {
+
+    /**
+     * Проигрывает события журнала с позицией больше заданной в порядке журнала
+     *
+     * @param position Позиция, после которой начинается проигрывание; {@code -1} - с начала журнала
+     * @param consumer Получатель события и его позиции
+     */
+    void replayAfter(long position, ObjLongConsumer<GamificationEvent> consumer);
+}
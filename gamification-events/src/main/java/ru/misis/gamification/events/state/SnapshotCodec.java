@@ -0,0 +1,149 @@
+package ru.misis.gamification.events.state;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Бинарный формат снимка состояний пользователей
+ *
+ * <pre>
+ * magic    int   'GMSS'
+ * version  int
+ * position long  позиция журнала
+ * count    int   количество записей
+ * записи:  userId (unsigned short длина до 65535 + UTF-8), balance long, totalBalance long, level int, achievements int
+ * checksum int   CRC32C всех предыдущих байт
+ * </pre>
+ */
+final class SnapshotCodec {
+
+    static final int MAGIC = 0x474D5353;
+
+    static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = Integer.BYTES * 3 + Long.BYTES;
+
+    /**
+     * Максимальная длина {@code userId} в UTF-8: длина записывается беззнаковым short
+     */
+    private static final int MAX_USER_ID_BYTES = 0xFFFF;
+
+    private SnapshotCodec() {
+    }
+
+    /**
+     * Атомарно записывает снимок в файл
+     *
+     * <p>
+     * Снимок пишется во временный файл рядом с целевым, сбрасывается на диск
+     * и переименовывается поверх целевого, поэтому при сбое на диске остается
+     * предыдущий целый снимок.
+     * </p>
+     *
+     * @param file     Целевой файл
+     * @param snapshot Снимок
+     * @throws IOException Если не удалось записать файл или {@code userId} длиннее 65535 байт в UTF-8
+     */
+    static void write(Path file, UserStateStore.Snapshot snapshot) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            CRC32C checksum = new CRC32C();
+            OutputStream channelStream = Channels.newOutputStream(channel);
+            DataOutputStream out = new DataOutputStream(new CheckedOutputStream(
+                    new BufferedOutputStream(channelStream, 1 << 16), checksum));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(snapshot.position());
+            out.writeInt(snapshot.states().size());
+            for (UserState state : snapshot.states()) {
+                byte[] userId = state.userId().getBytes(StandardCharsets.UTF_8);
+                if (userId.length > MAX_USER_ID_BYTES) {
+                    throw new UTFDataFormatException("userId длиннее " + MAX_USER_ID_BYTES
+                            + " байт в UTF-8: " + state.userId().substring(0, 32) + "...");
+                }
+                out.writeShort(userId.length);
+                out.write(userId);
+                out.writeLong(state.balance());
+                out.writeLong(state.totalBalance());
+                out.writeInt(state.level());
+                out.writeInt(state.achievements());
+            }
+            out.flush();
+            new DataOutputStream(channelStream).writeInt((int) checksum.getValue());
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Читает снимок, отображая файл в память
+     *
+     * @param file Файл снимка
+     * @return Снимок
+     * @throws IOException              Если не удалось прочитать файл
+     * @throws IllegalArgumentException Если файл поврежден или имеет неизвестный формат
+     */
+    static UserStateStore.Snapshot read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES + Integer.BYTES || size > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Некорректный размер снимка: " + size);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+
+            int payloadSize = (int) size - Integer.BYTES;
+            CRC32C checksum = new CRC32C();
+            checksum.update(buffer.slice(0, payloadSize));
+            if ((int) checksum.getValue() != buffer.getInt(payloadSize)) {
+                throw new IllegalArgumentException("Контрольная сумма снимка не совпадает");
+            }
+
+            ByteBuffer payload = buffer.slice(0, payloadSize);
+            if (payload.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Файл не является снимком состояний");
+            }
+            int version = payload.getInt();
+            if (version != VERSION) {
+                throw new IllegalArgumentException("Неподдерживаемая версия снимка: " + version);
+            }
+            long position = payload.getLong();
+            int count = payload.getInt();
+
+            List<UserState> states = new ArrayList<>(count);
+            byte[] userId = new byte[MAX_USER_ID_BYTES];
+            for (int i = 0; i < count; i++) {
+                int length = Short.toUnsignedInt(payload.getShort());
+                payload.get(userId, 0, length);
+                states.add(new UserState(
+                        new String(userId, 0, length, StandardCharsets.UTF_8),
+                        payload.getLong(),
+                        payload.getLong(),
+                        payload.getInt(),
+                        payload.getInt()
+                ));
+            }
+            return new UserStateStore.Snapshot(position, states);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package ru.misis.gamification.events.state;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.domain.internal.AchievementEvent;
+import ru.misis.gamification.events.domain.internal.LevelUpEvent;
+import ru.misis.gamification.events.domain.internal.PointsChangedEvent;
+
+/**
+ * Состояние геймификации пользователя, выводимое из внутренних событий
+ *
+ * @param userId       Идентификатор пользователя
+ * @param balance      Баланс на активном счете
+ * @param totalBalance Общий баланс (включая исторические начисления)
+ * @param level        Текущий уровень
+ * @param achievements Количество полученных достижений
+ * @see PointsChangedEvent
+ * @see LevelUpEvent
+ * @see AchievementEvent
+ */
+public record UserState(
+        String userId,
+        long balance,
+        long totalBalance,
+        int level,
+        int achievements
+) {
+
+    /**
+     * Проверяет идентификатор пользователя
+     *
+     * @throws IllegalArgumentException Если идентификатор пустой
+     */
+    public UserState {
+        if (userId == null || userId.isBlank()) {
+            throw new IllegalArgumentException("userId не может быть пустым");
+        }
+    }
+
+    /**
+     * Создает начальное состояние пользователя без очков и достижений
+     *
+     * @param userId Идентификатор пользователя
+     * @return Состояние на первом уровне
+     */
+    public static UserState initial(String userId) {
+        return new UserState(userId, 0, 0, 1, 0);
+    }
+
+    /**
+     * Применяет событие к состоянию
+     *
+     * @param event Событие геймификации того же пользователя
+     * @return Новое состояние или текущее, если событие не влияет на состояние
+     */
+    public UserState apply(GamificationEvent event) {
+        if (event instanceof PointsChangedEvent changed) {
+            return new UserState(userId, changed.newBalance(), changed.newTotalBalance(),
+                    changed.newLevel(), achievements);
+        }
+        if (event instanceof LevelUpEvent levelUp) {
+            return new UserState(userId, balance, levelUp.totalPoints(),
+                    Math.max(level, levelUp.newLevel()), achievements);
+        }
+        if (event instanceof AchievementEvent) {
+            return new UserState(userId, balance, totalBalance, level, achievements + 1);
+        }
+        return this;
+    }
+
+    /**
+     * Проверяет, влияет ли событие на состояние пользователя
+     *
+     * @param event Событие геймификации
+     * @return {@code true} Для внутренних событий баланса, уровня и достижений
+     */
+    public static boolean isStateEvent(GamificationEvent event) {
+        return event instanceof PointsChangedEvent
+                || event instanceof LevelUpEvent
+                || event instanceof AchievementEvent;
+    }
+}
@@ -0,0 +1,160 @@
+package ru.misis.gamification.events.state;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Периодические снимки состояний пользователей на локальный диск и быстрое восстановление
+ *
+ * <p>
+ * Вместо прогрева из базы данных при старте сервис отображает в память последний
+ * снимок и проигрывает только хвост журнала после позиции снимка.
+ * Снимок записывается атомарно и защищен контрольной суммой CRC32C; поврежденный
+ * или отсутствующий снимок приводит к полному проигрыванию журнала.
+ * </p>
+ */
+public class UserStateSnapshotter implements AutoCloseable {
+
+    private final UserStateStore store;
+
+    private final Path file;
+
+    private final AtomicLong lastSnapshotPosition = new AtomicLong(Long.MIN_VALUE);
+
+    private volatile ScheduledFuture<?> schedule;
+
+    private volatile Exception lastFailure;
+
+    /**
+     * Создает снапшоттер
+     *
+     * @param store Хранилище состояний
+     * @param file  Файл снимка
+     */
+    public UserStateSnapshotter(UserStateStore store, Path file) {
+        this.store = store;
+        this.file = file;
+    }
+
+    /**
+     * Восстанавливает хранилище из снимка и хвоста журнала
+     *
+     * @param tail Источник событий журнала
+     * @return Результат восстановления
+     */
+    public RecoveryResult recover(EventTail tail) {
+        boolean fromSnapshot = false;
+        Exception snapshotFailure = null;
+        try {
+            UserStateStore.Snapshot snapshot = SnapshotCodec.read(file);
+            store.restore(snapshot);
+            lastSnapshotPosition.set(snapshot.position());
+            fromSnapshot = true;
+        } catch (NoSuchFileException e) {
+            store.restore(new UserStateStore.Snapshot(-1, List.of()));
+        } catch (IOException | IllegalArgumentException e) {
+            snapshotFailure = e;
+            store.restore(new UserStateStore.Snapshot(-1, List.of()));
+        }
+
+        long snapshotPosition = store.position();
+        int restoredUsers = store.size();
+        long[] replayed = new long[1];
+        tail.replayAfter(snapshotPosition, (event, position) -> {
+            if (store.apply(position, event)) {
+                replayed[0]++;
+            }
+        });
+        return new RecoveryResult(fromSnapshot, snapshotPosition, restoredUsers, replayed[0], snapshotFailure);
+    }
+
+    /**
+     * Записывает снимок, если с прошлого снимка были применены новые события
+     *
+     * @return {@code true} Если снимок записан
+     * @throws IOException Если не удалось записать снимок
+     */
+    public synchronized boolean snapshot() throws IOException {
+        UserStateStore.Snapshot snapshot = store.snapshot();
+        if (snapshot.position() == lastSnapshotPosition.get()) {
+            return false;
+        }
+        SnapshotCodec.write(file, snapshot);
+        lastSnapshotPosition.set(snapshot.position());
+        return true;
+    }
+
+    /**
+     * Запускает периодическую запись снимков
+     *
+     * <p>
+     * Ошибка записи не прерывает расписание и доступна через {@link #lastFailure()}.
+     * </p>
+     *
+     * @param scheduler Планировщик
+     * @param interval  Интервал между снимками
+     * @throws IllegalStateException Если запись уже запущена
+     */
+    public synchronized void start(ScheduledExecutorService scheduler, Duration interval) {
+        if (schedule != null) {
+            throw new IllegalStateException("Периодические снимки уже запущены");
+        }
+        long millis = interval.toMillis();
+        schedule = scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+                lastFailure = null;
+            } catch (Exception e) {
+                lastFailure = e;
+            }
+        }, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Возвращает ошибку последней периодической записи снимка
+     *
+     * @return Ошибка или {@code null}, если последняя запись успешна
+     */
+    public Exception lastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * Останавливает периодическую запись и записывает финальный снимок
+     *
+     * @throws IOException Если не удалось записать снимок
+     */
+    @Override
+    public void close() throws IOException {
+        ScheduledFuture<?> current = schedule;
+        if (current != null) {
+            current.cancel(false);
+        }
+        snapshot();
+    }
+
+    /**
+     * Результат восстановления состояний
+     *
+     * @param fromSnapshot     Использован ли снимок
+     * @param snapshotPosition Позиция журнала, с которой начато проигрывание
+     * @param restoredUsers    Количество пользователей, загруженных из снимка
+     * @param replayedEvents   Количество проигранных событий хвоста
+     * @param snapshotFailure  Причина, по которой снимок не использован, или {@code null}
+     */
+    public record RecoveryResult(
+            boolean fromSnapshot,
+            long snapshotPosition,
+            int restoredUsers,
+            long replayedEvents,
+            Exception snapshotFailure
+    ) {
+    }
+}
@@ -0,0 +1,161 @@
+package ru.misis.gamification.events.state;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Хранилище состояний пользователей в памяти
+ *
+ * <p>
+ * Состояния обновляются событиями из журнала, каждое событие имеет позицию
+ * в журнале (смещение в топике, идентификатор строки outbox). Хранилище
+ * запоминает позицию последнего примененного события и пропускает события
+ * с меньшей или равной позицией, поэтому повторное проигрывание хвоста журнала
+ * идемпотентно.
+ * </p>
+ *
+ * <p>
+ * События применяются из одного потока на хранилище; чтение и
+ * {@link #snapshot()} безопасны из любых потоков.
+ * </p>
+ */
+public class UserStateStore {
+
+    private final Map<String, UserState> states = new ConcurrentHashMap<>();
+
+    private final ReadWriteLock snapshotLock = new ReentrantReadWriteLock();
+
+    private volatile long position = -1;
+
+    /**
+     * Создает пустое хранилище, не применившее ни одного события
+     */
+    public UserStateStore() {
+    }
+
+    /**
+     * Применяет событие журнала
+     *
+     * @param eventPosition Позиция события в журнале
+     * @param event         Событие геймификации
+     * @return {@code true} Если событие применено; {@code false}, если оно уже было учтено
+     */
+    public boolean apply(long eventPosition, GamificationEvent event) {
+        snapshotLock.readLock().lock();
+        try {
+            if (eventPosition <= position) {
+                return false;
+            }
+            if (UserState.isStateEvent(event)) {
+                states.compute(event.userId(), (userId, state) ->
+                        (state == null ? UserState.initial(userId) : state).apply(event));
+            }
+            position = eventPosition;
+            return true;
+        } finally {
+            snapshotLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Возвращает состояние пользователя
+     *
+     * @param userId Идентификатор пользователя
+     * @return Состояние или {@code null}, если событий пользователя не было
+     */
+    public UserState get(String userId) {
+        return states.get(userId);
+    }
+
+    /**
+     * Возвращает позицию последнего примененного события
+     *
+     * @return Позиция или {@code -1}, если событий не было
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Возвращает количество пользователей с состоянием
+     *
+     * @return Количество пользователей
+     */
+    public int size() {
+        return states.size();
+    }
+
+    /**
+     * Возвращает согласованную копию состояний на позиции журнала
+     *
+     * <p>
+     * Применение событий приостанавливается только на время копирования ссылок.
+     * </p>
+     *
+     * @return Снимок хранилища
+     */
+    public Snapshot snapshot() {
+        snapshotLock.writeLock().lock();
+        try {
+            return new Snapshot(position, List.copyOf(states.values()));
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Заменяет содержимое хранилища снимком
+     *
+     * @param snapshot Снимок
+     */
+    public void restore(Snapshot snapshot) {
+        snapshotLock.writeLock().lock();
+        try {
+            states.clear();
+            snapshot.states().forEach(this::put);
+            position = snapshot.position();
+        } finally {
+            snapshotLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Сохраняет состояние пользователя, заменяя текущее
+     *
+     * @param state Состояние пользователя
+     */
+    public void put(UserState state) {
+        states.put(state.userId(), state);
+    }
+
+    /**
+     * Удаляет состояние пользователя
+     *
+     * @param userId Идентификатор пользователя
+     * @return Удаленное состояние или {@code null}
+     */
+    public UserState remove(String userId) {
+        return states.remove(userId);
+    }
+
+    /**
+     * Согласованный снимок состояний пользователей
+     *
+     * @param position Позиция журнала, до которой включительно учтены события
+     * @param states   Состояния пользователей
+     */
+    public record Snapshot(long position, List<UserState> states) {
+
+        /**
+         * Копирует список состояний, чтобы снимок не менялся вместе с исходным списком
+         */
+        public Snapshot {
+            states = List.copyOf(states);
+        }
+    }
+}
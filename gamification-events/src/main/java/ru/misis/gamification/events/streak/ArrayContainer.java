@@ -0,0 +1,142 @@
+package ru.misis.gamification.events.streak;
+
+import java.util.Arrays;
+
+/**
+ * Контейнер в виде отсортированного массива значений, для не более чем 4096 значений
+ */
+final class ArrayContainer extends Container {
+
+    /**
+     * Максимальное количество значений, при котором массив не больше битовой карты
+     */
+    static final int MAX_SIZE = 4096;
+
+    private char[] values;
+
+    private int size;
+
+    ArrayContainer() {
+        this(new char[4], 0);
+    }
+
+    private ArrayContainer(char[] values, int size) {
+        this.values = values;
+        this.size = size;
+    }
+
+    static ArrayContainer fromWords(long[] words, int cardinality) {
+        char[] values = new char[Math.max(4, cardinality)];
+        int size = 0;
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                values[size++] = (char) (i * Long.SIZE + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return new ArrayContainer(values, size);
+    }
+
+    @Override
+    Container add(int value) {
+        int index = Arrays.binarySearch(values, 0, size, (char) value);
+        if (index >= 0) {
+            return this;
+        }
+        if (size == MAX_SIZE) {
+            return new BitmapContainer(toWords(), size).add(value);
+        }
+        int insertAt = -index - 1;
+        if (size == values.length) {
+            values = Arrays.copyOf(values, Math.min(MAX_SIZE, size * 2));
+        }
+        System.arraycopy(values, insertAt, values, insertAt + 1, size - insertAt);
+        values[insertAt] = (char) value;
+        size++;
+        return this;
+    }
+
+    @Override
+    boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, (char) value) >= 0;
+    }
+
+    @Override
+    int cardinality() {
+        return size;
+    }
+
+    @Override
+    int rank(int value) {
+        int index = Arrays.binarySearch(values, 0, size, (char) value);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    @Override
+    int previousAbsent(int value) {
+        int index = Arrays.binarySearch(values, 0, size, (char) value);
+        if (index < 0) {
+            return value;
+        }
+        while (index > 0 && values[index - 1] == values[index] - 1) {
+            index--;
+        }
+        return values[index] - 1;
+    }
+
+    @Override
+    void forEachRun(RunConsumer consumer) {
+        int i = 0;
+        while (i < size) {
+            int start = values[i];
+            while (i + 1 < size && values[i + 1] == values[i] + 1) {
+                i++;
+            }
+            consumer.accept(start, values[i]);
+            i++;
+        }
+    }
+
+    @Override
+    Container and(Container other) {
+        if (!(other instanceof ArrayContainer array)) {
+            return super.and(other);
+        }
+        char[] result = new char[Math.max(4, Math.min(size, array.size))];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < size && j < array.size) {
+            if (values[i] < array.values[j]) {
+                i++;
+            } else if (values[i] > array.values[j]) {
+                j++;
+            } else {
+                result[count++] = values[i];
+                i++;
+                j++;
+            }
+        }
+        return new ArrayContainer(result, count);
+    }
+
+    @Override
+    long[] toWords() {
+        long[] words = new long[WORDS];
+        for (int i = 0; i < size; i++) {
+            words[values[i] >>> 6] |= 1L << values[i];
+        }
+        return words;
+    }
+
+    @Override
+    Container copy() {
+        return new ArrayContainer(Arrays.copyOf(values, Math.max(4, size)), size);
+    }
+
+    @Override
+    int sizeInBytes() {
+        return values.length * Character.BYTES;
+    }
+}
@@ -0,0 +1,104 @@
+package ru.misis.gamification.events.streak;
+
+/**
+ * Контейнер в виде битовой карты на все 65536 значений
+ */
+final class BitmapContainer extends Container {
+
+    private final long[] words;
+
+    private int cardinality;
+
+    BitmapContainer(long[] words, int cardinality) {
+        this.words = words;
+        this.cardinality = cardinality;
+    }
+
+    @Override
+    Container add(int value) {
+        long bit = 1L << value;
+        int index = value >>> 6;
+        if ((words[index] & bit) == 0) {
+            words[index] |= bit;
+            cardinality++;
+        }
+        return this;
+    }
+
+    @Override
+    boolean contains(int value) {
+        return (words[value >>> 6] & (1L << value)) != 0;
+    }
+
+    @Override
+    int cardinality() {
+        return cardinality;
+    }
+
+    @Override
+    int rank(int value) {
+        int index = value >>> 6;
+        int rank = 0;
+        for (int i = 0; i < index; i++) {
+            rank += Long.bitCount(words[i]);
+        }
+        return rank + Long.bitCount(words[index] & (-1L >>> (63 - (value & 63))));
+    }
+
+    @Override
+    int previousAbsent(int value) {
+        int index = value >>> 6;
+        long absent = ~words[index] & (-1L >>> (63 - (value & 63)));
+        while (absent == 0) {
+            if (--index < 0) {
+                return -1;
+            }
+            absent = ~words[index];
+        }
+        return index * Long.SIZE + 63 - Long.numberOfLeadingZeros(absent);
+    }
+
+    @Override
+    void forEachRun(RunConsumer consumer) {
+        int start = -1;
+        for (int i = 0; i < WORDS; i++) {
+            long word = words[i];
+            for (int bit = 0; bit < Long.SIZE; ) {
+                if (start < 0) {
+                    long ones = word >>> bit;
+                    if (ones == 0) {
+                        break;
+                    }
+                    bit += Long.numberOfTrailingZeros(ones);
+                    start = i * Long.SIZE + bit;
+                } else {
+                    long zeros = ~word >>> bit;
+                    if (zeros == 0) {
+                        break;
+                    }
+                    bit += Long.numberOfTrailingZeros(zeros);
+                    consumer.accept(start, i * Long.SIZE + bit - 1);
+                    start = -1;
+                }
+            }
+        }
+        if (start >= 0) {
+            consumer.accept(start, MAX_VALUES - 1);
+        }
+    }
+
+    @Override
+    long[] toWords() {
+        return words.clone();
+    }
+
+    @Override
+    Container copy() {
+        return new BitmapContainer(words.clone(), cardinality);
+    }
+
+    @Override
+    int sizeInBytes() {
+        return BITMAP_BYTES;
+    }
+}
@@ -0,0 +1,123 @@
+package ru.misis.gamification.events.streak;
+
+/**
+ * Контейнер младших 16 бит значений одного старшего ключа {@link DayBitmap}
+ *
+ * <p>
+ * Как в Roaring bitmap, контейнер хранится в одном из трех представлений,
+ * выбирая самое компактное: отсортированный массив для редких значений,
+ * битовая карта для плотных и список непрерывных интервалов для длинных серий.
+ * </p>
+ */
+abstract sealed class Container permits ArrayContainer, BitmapContainer, RunContainer {
+
+    /**
+     * Количество значений в контейнере
+     */
+    static final int MAX_VALUES = 1 << 16;
+
+    /**
+     * Количество 64-битных слов битовой карты
+     */
+    static final int WORDS = MAX_VALUES / Long.SIZE;
+
+    /**
+     * Размер битовой карты в байтах
+     */
+    static final int BITMAP_BYTES = WORDS * Long.BYTES;
+
+    /**
+     * Добавляет значение
+     *
+     * @return Этот же или новый контейнер, если представление сменилось
+     */
+    abstract Container add(int value);
+
+    abstract boolean contains(int value);
+
+    abstract int cardinality();
+
+    /**
+     * Возвращает количество значений, не превышающих {@code value}
+     */
+    abstract int rank(int value);
+
+    /**
+     * Возвращает наибольшее отсутствующее значение, не превышающее {@code value}
+     *
+     * @return Значение или {@code -1}, если присутствуют все значения от 0 до {@code value}
+     */
+    abstract int previousAbsent(int value);
+
+    /**
+     * Перебирает непрерывные интервалы значений по возрастанию
+     */
+    abstract void forEachRun(RunConsumer consumer);
+
+    abstract long[] toWords();
+
+    abstract Container copy();
+
+    abstract int sizeInBytes();
+
+    Container and(Container other) {
+        long[] words = toWords();
+        long[] otherWords = other.toWords();
+        for (int i = 0; i < WORDS; i++) {
+            words[i] &= otherWords[i];
+        }
+        return fromWords(words);
+    }
+
+    Container or(Container other) {
+        long[] words = toWords();
+        long[] otherWords = other.toWords();
+        for (int i = 0; i < WORDS; i++) {
+            words[i] |= otherWords[i];
+        }
+        return fromWords(words);
+    }
+
+    /**
+     * Возвращает самое компактное представление тех же значений
+     */
+    Container optimize() {
+        return fromWords(toWords());
+    }
+
+    /**
+     * Создает самый компактный контейнер по битовой карте
+     */
+    static Container fromWords(long[] words) {
+        int cardinality = 0;
+        int runs = 0;
+        long previousTopBit = 0;
+        for (long word : words) {
+            cardinality += Long.bitCount(word);
+            runs += Long.bitCount(word & ~((word << 1) | previousTopBit));
+            previousTopBit = word >>> 63;
+        }
+        int arrayBytes = cardinality <= ArrayContainer.MAX_SIZE ? cardinality * Character.BYTES : Integer.MAX_VALUE;
+        int runBytes = runs * 2 * Character.BYTES;
+        if (runBytes < arrayBytes && runBytes < BITMAP_BYTES) {
+            return RunContainer.fromWords(words, runs);
+        }
+        if (arrayBytes < BITMAP_BYTES) {
+            return ArrayContainer.fromWords(words, cardinality);
+        }
+        return new BitmapContainer(words, cardinality);
+    }
+
+    /**
+     * Получатель непрерывного интервала значений
+     */
+    @FunctionalInterface
+    interface RunConsumer {
+
+        /**
+         * @param start Первое значение интервала
+         * @param end   Последнее значение интервала включительно
+         */
+        void accept(int start, int end);
+    }
+}
@@ -0,0 +1,313 @@
+package ru.misis.gamification.events.streak;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * Сжатое множество дней в стиле Roaring bitmap
+ *
+ * <p>
+ * День хранится как номер дня от 1970-01-01. Старшие 16 бит номера выбирают
+ * контейнер, младшие хранятся в контейнере в одном из трех представлений:
+ * массив, битовая карта или список серий. Многолетняя история пользователя
+ * занимает один контейнер, а регулярная активность после {@link #runOptimize()}
+ * хранится по 4 байта на серию дней.
+ * </p>
+ *
+ * <p>
+ * Класс не потокобезопасен.
+ * </p>
+ */
+public final class DayBitmap {
+
+    private char[] keys;
+
+    private Container[] containers;
+
+    private int size;
+
+    /**
+     * Создает пустое множество
+     */
+    public DayBitmap() {
+        this(new char[1], new Container[1], 0);
+    }
+
+    private DayBitmap(char[] keys, Container[] containers, int size) {
+        this.keys = keys;
+        this.containers = containers;
+        this.size = size;
+    }
+
+    /**
+     * Добавляет день
+     *
+     * @param day День не раньше 1970-01-01
+     * @return {@code true} Если дня еще не было в множестве
+     */
+    public boolean add(LocalDate day) {
+        int value = toValue(day);
+        int index = indexOf(key(value));
+        if (index < 0) {
+            index = -index - 1;
+            insert(index, key(value), new ArrayContainer());
+        }
+        Container container = containers[index];
+        int before = container.cardinality();
+        containers[index] = container.add(low(value));
+        return containers[index].cardinality() != before;
+    }
+
+    /**
+     * Проверяет, есть ли день в множестве
+     *
+     * @param day День
+     * @return {@code true} Если день есть в множестве
+     */
+    public boolean contains(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        if (epochDay < 0 || epochDay > Integer.MAX_VALUE) {
+            return false;
+        }
+        int value = (int) epochDay;
+        int index = indexOf(key(value));
+        return index >= 0 && containers[index].contains(low(value));
+    }
+
+    /**
+     * Возвращает количество активных дней
+     *
+     * @return Количество дней в множестве
+     */
+    public int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < size; i++) {
+            cardinality += containers[i].cardinality();
+        }
+        return cardinality;
+    }
+
+    /**
+     * Возвращает количество дней в диапазоне
+     *
+     * @param from Первый день диапазона
+     * @param to   Последний день диапазона включительно
+     * @return Количество дней
+     */
+    public int cardinality(LocalDate from, LocalDate to) {
+        if (to.isBefore(from)) {
+            return 0;
+        }
+        long last = Math.min(to.toEpochDay(), Integer.MAX_VALUE);
+        if (last < 0) {
+            return 0;
+        }
+        long first = Math.max(0, from.toEpochDay());
+        return rank((int) last) - (first == 0 ? 0 : rank((int) first - 1));
+    }
+
+    /**
+     * Возвращает длину текущей серии дней
+     *
+     * <p>
+     * Серия не прерывается, пока не закончился следующий за последним активным день:
+     * если пользователь был активен вчера, но еще не сегодня, серия продолжается.
+     * </p>
+     *
+     * @param today Текущий день
+     * @return Количество дней подряд, заканчивающихся сегодня или вчера
+     */
+    public int currentStreak(LocalDate today) {
+        LocalDate end = contains(today) ? today : today.minusDays(1);
+        if (!contains(end)) {
+            return 0;
+        }
+        int value = toValue(end);
+        return value - previousAbsent(value);
+    }
+
+    /**
+     * Возвращает длину самой длинной серии дней
+     *
+     * @return Количество дней подряд
+     */
+    public int longestStreak() {
+        int[] longest = new int[1];
+        forEachRun((start, end) -> longest[0] = Math.max(longest[0], end - start + 1));
+        return longest[0];
+    }
+
+    /**
+     * Возвращает дни, которые есть в обоих множествах
+     *
+     * @param other Другое множество
+     * @return Новое множество
+     */
+    public DayBitmap and(DayBitmap other) {
+        DayBitmap result = new DayBitmap(new char[Math.max(1, Math.min(size, other.size))],
+                new Container[Math.max(1, Math.min(size, other.size))], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size && j < other.size) {
+            if (keys[i] < other.keys[j]) {
+                i++;
+            } else if (keys[i] > other.keys[j]) {
+                j++;
+            } else {
+                Container container = containers[i].and(other.containers[j]);
+                if (container.cardinality() > 0) {
+                    result.insert(result.size, keys[i], container);
+                }
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает дни, которые есть хотя бы в одном из множеств
+     *
+     * @param other Другое множество
+     * @return Новое множество
+     */
+    public DayBitmap or(DayBitmap other) {
+        DayBitmap result = new DayBitmap(new char[Math.max(1, size + other.size)],
+                new Container[Math.max(1, size + other.size)], 0);
+        int i = 0;
+        int j = 0;
+        while (i < size || j < other.size) {
+            if (j == other.size || (i < size && keys[i] < other.keys[j])) {
+                result.insert(result.size, keys[i], containers[i].copy());
+                i++;
+            } else if (i == size || keys[i] > other.keys[j]) {
+                result.insert(result.size, other.keys[j], other.containers[j].copy());
+                j++;
+            } else {
+                result.insert(result.size, keys[i], containers[i].or(other.containers[j]));
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Переводит контейнеры в самое компактное представление, в том числе в списки серий
+     */
+    public void runOptimize() {
+        for (int i = 0; i < size; i++) {
+            containers[i] = containers[i].optimize();
+        }
+    }
+
+    /**
+     * Создает независимую копию множества
+     *
+     * @return Копия множества
+     */
+    public DayBitmap copy() {
+        Container[] copies = new Container[Math.max(1, size)];
+        for (int i = 0; i < size; i++) {
+            copies[i] = containers[i].copy();
+        }
+        return new DayBitmap(Arrays.copyOf(keys, Math.max(1, size)), copies, size);
+    }
+
+    /**
+     * Возвращает примерный объем памяти множества
+     *
+     * @return Размер в байтах
+     */
+    public long sizeInBytes() {
+        long bytes = (long) keys.length * Character.BYTES;
+        for (int i = 0; i < size; i++) {
+            bytes += containers[i].sizeInBytes();
+        }
+        return bytes;
+    }
+
+    private int rank(int value) {
+        int key = key(value);
+        int rank = 0;
+        for (int i = 0; i < size && keys[i] <= key; i++) {
+            rank += keys[i] < key ? containers[i].cardinality() : containers[i].rank(low(value));
+        }
+        return rank;
+    }
+
+    /**
+     * Возвращает наибольшее отсутствующее значение, не превышающее {@code value}
+     */
+    private int previousAbsent(int value) {
+        int current = value;
+        while (current >= 0) {
+            int index = indexOf(key(current));
+            if (index < 0) {
+                return current;
+            }
+            int absent = containers[index].previousAbsent(low(current));
+            if (absent >= 0) {
+                return (key(current) << 16) | absent;
+            }
+            current = (key(current) << 16) - 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Перебирает серии дней по возрастанию, объединяя серии на границе контейнеров
+     */
+    private void forEachRun(Container.RunConsumer consumer) {
+        int[] pending = {-1, -1};
+        for (int i = 0; i < size; i++) {
+            int base = keys[i] << 16;
+            containers[i].forEachRun((start, end) -> {
+                if (pending[0] >= 0 && pending[1] + 1 == base + start) {
+                    pending[1] = base + end;
+                    return;
+                }
+                if (pending[0] >= 0) {
+                    consumer.accept(pending[0], pending[1]);
+                }
+                pending[0] = base + start;
+                pending[1] = base + end;
+            });
+        }
+        if (pending[0] >= 0) {
+            consumer.accept(pending[0], pending[1]);
+        }
+    }
+
+    private int indexOf(int key) {
+        return Arrays.binarySearch(keys, 0, size, (char) key);
+    }
+
+    private void insert(int index, int key, Container container) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            containers = Arrays.copyOf(containers, size * 2);
+        }
+        System.arraycopy(keys, index, keys, index + 1, size - index);
+        System.arraycopy(containers, index, containers, index + 1, size - index);
+        keys[index] = (char) key;
+        containers[index] = container;
+        size++;
+    }
+
+    private static int toValue(LocalDate day) {
+        long epochDay = day.toEpochDay();
+        if (epochDay < 0 || epochDay > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("День вне поддерживаемого диапазона: " + day);
+        }
+        return (int) epochDay;
+    }
+
+    private static int key(int value) {
+        return value >>> 16;
+    }
+
+    private static int low(int value) {
+        return value & 0xFFFF;
+    }
+}
@@ -0,0 +1,178 @@
+package ru.misis.gamification.events.streak;
+
+import java.util.Arrays;
+
+/**
+ * Контейнер в виде отсортированного списка непрерывных интервалов
+ *
+ * <p>
+ * Серия активных дней хранится как одна пара (начало, длина - 1) независимо от длины,
+ * поэтому для регулярно активных пользователей это самое компактное представление.
+ * </p>
+ */
+final class RunContainer extends Container {
+
+    /**
+     * Количество интервалов, при котором список занимает столько же, сколько битовая карта
+     */
+    private static final int MAX_RUNS = BITMAP_BYTES / (2 * Character.BYTES);
+
+    private char[] starts;
+
+    private char[] lengths;
+
+    private int runs;
+
+    RunContainer() {
+        this(new char[4], new char[4], 0);
+    }
+
+    private RunContainer(char[] starts, char[] lengths, int runs) {
+        this.starts = starts;
+        this.lengths = lengths;
+        this.runs = runs;
+    }
+
+    static RunContainer fromWords(long[] words, int runs) {
+        RunContainer container = new RunContainer(new char[Math.max(4, runs)], new char[Math.max(4, runs)], 0);
+        new BitmapContainer(words, 0).forEachRun(container::appendRun);
+        return container;
+    }
+
+    @Override
+    Container add(int value) {
+        int index = runIndex(value);
+        if (index >= 0 && value <= end(index)) {
+            return this;
+        }
+        boolean extendsPrevious = index >= 0 && end(index) + 1 == value;
+        boolean extendsNext = index + 1 < runs && starts[index + 1] == value + 1;
+        if (extendsPrevious && extendsNext) {
+            lengths[index] = (char) (end(index + 1) - starts[index]);
+            remove(index + 1);
+        } else if (extendsPrevious) {
+            lengths[index]++;
+        } else if (extendsNext) {
+            starts[index + 1]--;
+            lengths[index + 1]++;
+        } else {
+            if (runs == MAX_RUNS) {
+                return optimize().add(value);
+            }
+            insert(index + 1, value);
+        }
+        return this;
+    }
+
+    @Override
+    boolean contains(int value) {
+        int index = runIndex(value);
+        return index >= 0 && value <= end(index);
+    }
+
+    @Override
+    int cardinality() {
+        int cardinality = 0;
+        for (int i = 0; i < runs; i++) {
+            cardinality += lengths[i] + 1;
+        }
+        return cardinality;
+    }
+
+    @Override
+    int rank(int value) {
+        int rank = 0;
+        for (int i = 0; i < runs && starts[i] <= value; i++) {
+            rank += Math.min(value, end(i)) - starts[i] + 1;
+        }
+        return rank;
+    }
+
+    @Override
+    int previousAbsent(int value) {
+        int index = runIndex(value);
+        return index >= 0 && value <= end(index) ? starts[index] - 1 : value;
+    }
+
+    @Override
+    void forEachRun(RunConsumer consumer) {
+        for (int i = 0; i < runs; i++) {
+            consumer.accept(starts[i], end(i));
+        }
+    }
+
+    @Override
+    long[] toWords() {
+        long[] words = new long[WORDS];
+        for (int i = 0; i < runs; i++) {
+            int start = starts[i];
+            int end = end(i);
+            int firstWord = start >>> 6;
+            int lastWord = end >>> 6;
+            long firstMask = -1L << start;
+            long lastMask = -1L >>> (63 - (end & 63));
+            if (firstWord == lastWord) {
+                words[firstWord] |= firstMask & lastMask;
+            } else {
+                words[firstWord] |= firstMask;
+                Arrays.fill(words, firstWord + 1, lastWord, -1L);
+                words[lastWord] |= lastMask;
+            }
+        }
+        return words;
+    }
+
+    @Override
+    Container copy() {
+        return new RunContainer(Arrays.copyOf(starts, Math.max(4, runs)), Arrays.copyOf(lengths, Math.max(4, runs)), runs);
+    }
+
+    @Override
+    int sizeInBytes() {
+        return (starts.length + lengths.length) * Character.BYTES;
+    }
+
+    private int end(int index) {
+        return starts[index] + lengths[index];
+    }
+
+    /**
+     * Возвращает индекс последнего интервала, начинающегося не позже {@code value}, или {@code -1}
+     */
+    private int runIndex(int value) {
+        int low = 0;
+        int high = runs - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (starts[middle] <= value) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    private void appendRun(int start, int end) {
+        insert(runs, start);
+        lengths[runs - 1] = (char) (end - start);
+    }
+
+    private void insert(int index, int value) {
+        if (runs == starts.length) {
+            starts = Arrays.copyOf(starts, runs * 2);
+            lengths = Arrays.copyOf(lengths, runs * 2);
+        }
+        System.arraycopy(starts, index, starts, index + 1, runs - index);
+        System.arraycopy(lengths, index, lengths, index + 1, runs - index);
+        starts[index] = (char) value;
+        lengths[index] = 0;
+        runs++;
+    }
+
+    private void remove(int index) {
+        System.arraycopy(starts, index + 1, starts, index, runs - index - 1);
+        System.arraycopy(lengths, index + 1, lengths, index, runs - index - 1);
+        runs--;
+    }
+}
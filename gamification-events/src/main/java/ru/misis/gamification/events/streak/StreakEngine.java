@@ -0,0 +1,218 @@
+package ru.misis.gamification.events.streak;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.domain.extenal.AssignmentSubmittedEvent;
+import ru.misis.gamification.events.domain.extenal.CourseEnrolledEvent;
+import ru.misis.gamification.events.domain.extenal.ForumPostCreatedEvent;
+import ru.misis.gamification.events.domain.extenal.TaskCompletedEvent;
+import ru.misis.gamification.events.domain.extenal.TestPassedEvent;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Серии активных дней и вовлеченность пользователей
+ *
+ * <p>
+ * Для каждого пользователя хранится {@link DayBitmap} дней, в которые было хотя бы одно
+ * внешнее событие (день берется из {@link GamificationEvent#occurredAt()}). Вместо строки
+ * на пользователя и день многолетняя история занимает несколько байт на серию, а серии,
+ * активные дни в диапазоне и пересечения по когортам считаются битовыми операциями.
+ * </p>
+ *
+ * <pre>{@code
+ * StreakEngine streaks = new StreakEngine();
+ * streaks.record(event);
+ * int streak = streaks.currentStreak("student-42", LocalDate.now());
+ * DayBitmap everyone = streaks.allActive(groupMembers);
+ * }</pre>
+ */
+public class StreakEngine {
+
+    private final Map<String, DayBitmap> days = new ConcurrentHashMap<>();
+
+    /**
+     * Создает движок без истории активности
+     */
+    public StreakEngine() {
+    }
+
+    /**
+     * Отмечает день события активным
+     *
+     * @param event Событие геймификации
+     * @return {@code true} Если день стал активным впервые; {@code false} для повторной активности и внутренних событий
+     */
+    public boolean record(GamificationEvent event) {
+        if (!isActivityEvent(event)) {
+            return false;
+        }
+        DayBitmap bitmap = days.computeIfAbsent(event.userId(), userId -> new DayBitmap());
+        synchronized (bitmap) {
+            return bitmap.add(event.occurredAt().toLocalDate());
+        }
+    }
+
+    /**
+     * Возвращает длину текущей серии пользователя
+     *
+     * @param userId Идентификатор пользователя
+     * @param today  Текущий день
+     * @return Количество дней подряд, заканчивающихся сегодня или вчера
+     * @see DayBitmap#currentStreak(LocalDate)
+     */
+    public int currentStreak(String userId, LocalDate today) {
+        DayBitmap bitmap = days.get(userId);
+        if (bitmap == null) {
+            return 0;
+        }
+        synchronized (bitmap) {
+            return bitmap.currentStreak(today);
+        }
+    }
+
+    /**
+     * Возвращает длину самой длинной серии пользователя
+     *
+     * @param userId Идентификатор пользователя
+     * @return Количество дней подряд
+     */
+    public int longestStreak(String userId) {
+        DayBitmap bitmap = days.get(userId);
+        if (bitmap == null) {
+            return 0;
+        }
+        synchronized (bitmap) {
+            return bitmap.longestStreak();
+        }
+    }
+
+    /**
+     * Возвращает количество активных дней пользователя в диапазоне
+     *
+     * @param userId Идентификатор пользователя
+     * @param from   Первый день диапазона
+     * @param to     Последний день диапазона включительно
+     * @return Количество активных дней
+     */
+    public int activeDays(String userId, LocalDate from, LocalDate to) {
+        DayBitmap bitmap = days.get(userId);
+        if (bitmap == null) {
+            return 0;
+        }
+        synchronized (bitmap) {
+            return bitmap.cardinality(from, to);
+        }
+    }
+
+    /**
+     * Возвращает копию активных дней пользователя
+     *
+     * @param userId Идентификатор пользователя
+     * @return Активные дни, пустое множество для пользователя без активности
+     */
+    public DayBitmap activeDays(String userId) {
+        DayBitmap bitmap = days.get(userId);
+        if (bitmap == null) {
+            return new DayBitmap();
+        }
+        synchronized (bitmap) {
+            return bitmap.copy();
+        }
+    }
+
+    /**
+     * Возвращает дни, в которые были активны все пользователи когорты
+     *
+     * @param userIds Пользователи когорты
+     * @return Пересечение активных дней, пустое для пустой когорты
+     */
+    public DayBitmap allActive(Collection<String> userIds) {
+        DayBitmap result = null;
+        for (String userId : userIds) {
+            DayBitmap bitmap = days.get(userId);
+            if (bitmap == null) {
+                return new DayBitmap();
+            }
+            synchronized (bitmap) {
+                result = result == null ? bitmap.copy() : result.and(bitmap);
+            }
+        }
+        return result == null ? new DayBitmap() : result;
+    }
+
+    /**
+     * Возвращает дни, в которые был активен хотя бы один пользователь когорты
+     *
+     * @param userIds Пользователи когорты
+     * @return Объединение активных дней
+     */
+    public DayBitmap anyActive(Collection<String> userIds) {
+        DayBitmap result = new DayBitmap();
+        for (String userId : userIds) {
+            DayBitmap bitmap = days.get(userId);
+            if (bitmap != null) {
+                synchronized (bitmap) {
+                    result = result.or(bitmap);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Переводит истории пользователей в самое компактное представление
+     *
+     * <p>
+     * Вызывается периодически, например раз в сутки: после этого продолжение серии
+     * удлиняет существующий интервал и не занимает дополнительной памяти.
+     * </p>
+     */
+    public void compact() {
+        days.values().forEach(bitmap -> {
+            synchronized (bitmap) {
+                bitmap.runOptimize();
+            }
+        });
+    }
+
+    /**
+     * Возвращает количество пользователей, у которых отмечен хотя бы один день
+     *
+     * @return Количество пользователей с активностью
+     */
+    public int size() {
+        return days.size();
+    }
+
+    /**
+     * Возвращает примерный объем памяти историй пользователей
+     *
+     * @return Размер в байтах без учета идентификаторов пользователей
+     */
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (DayBitmap bitmap : days.values()) {
+            synchronized (bitmap) {
+                bytes += bitmap.sizeInBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Проверяет, является ли событие активностью пользователя в LMS
+     *
+     * @param event Событие геймификации
+     * @return {@code true} Для внешних событий
+     */
+    public static boolean isActivityEvent(GamificationEvent event) {
+        return event instanceof TaskCompletedEvent
+                || event instanceof TestPassedEvent
+                || event instanceof CourseEnrolledEvent
+                || event instanceof ForumPostCreatedEvent
+                || event instanceof AssignmentSubmittedEvent;
+    }
+}
@@ -0,0 +1,66 @@
+package ru.misis.gamification.events.util;
+
+/**
+ * Быстрые некриптографические хеш-функции для идентификаторов событий
+ *
+ * <p>
+ * Используются вероятностными структурами данных и распределением пользователей
+ * по группам, где важны скорость и равномерность, а не стойкость к коллизиям.
+ * </p>
+ */
+public final class Hashing {
+
+    private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+
+    private static final long FNV_PRIME = 0x100000001B3L;
+
+    private Hashing() {
+    }
+
+    /**
+     * Вычисляет 64-битный хеш строки
+     *
+     * @param value Хешируемое значение, не может быть {@code null}
+     * @return 64-битный хеш
+     */
+    public static long hash64(CharSequence value) {
+        return hash64(value, 0L);
+    }
+
+    /**
+     * Вычисляет 64-битный хеш строки с заданной солью
+     *
+     * <p>
+     * FNV-1a по символам строки с финализатором MurmurHash3, который
+     * перемешивает все биты результата.
+     * </p>
+     *
+     * @param value Хешируемое значение, не может быть {@code null}
+     * @param seed  Соль, разные значения дают независимые хеши
+     * @return 64-битный хеш
+     */
+    public static long hash64(CharSequence value, long seed) {
+        long hash = FNV_OFFSET_BASIS ^ seed;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return mix64(hash);
+    }
+
+    /**
+     * Финализатор MurmurHash3 (fmix64)
+     *
+     * @param value Исходное значение
+     * @return Перемешанное значение
+     */
+    public static long mix64(long value) {
+        long hash = value;
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
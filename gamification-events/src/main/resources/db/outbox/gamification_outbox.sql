@@ -0,0 +1,10 @@
+-- Таблица transactional outbox для внутренних событий геймификации (PostgreSQL)
+CREATE TABLE IF NOT EXISTS gamification_outbox
+(
+    id         BIGSERIAL PRIMARY KEY,
+    event_id   UUID         NOT NULL,
+    event_type VARCHAR(50)  NOT NULL,
+    user_id    VARCHAR(100) NOT NULL,
+    payload    TEXT         NOT NULL,
+    created_at TIMESTAMP    NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
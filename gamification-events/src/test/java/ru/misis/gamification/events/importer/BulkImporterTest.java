@@ -0,0 +1,182 @@
+package ru.misis.gamification.events.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.domain.extenal.TaskCompletedEvent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Проверка {@link BulkImporter} на файлах NDJSON и CSV
+ */
+class BulkImporterTest {
+
+    private static final byte[] BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    private static final String CSV_HEADER = "type,eventId,userId,occurredAt,taskId,score";
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @TempDir
+    private Path directory;
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void importsCsvWithoutBom() throws IOException {
+        List<TaskCompletedEvent> events = events(50);
+        Path file = write("activity.csv", false, csv(events));
+
+        List<GamificationEvent> imported = new ArrayList<>();
+        ImportReport report = importer(BulkImporter.DEFAULT_CHUNK_SIZE, 2)
+                .importFile(file, ImportFormat.CSV, imported::addAll, null);
+
+        assertEquals(events, imported);
+        assertEquals(events.size(), report.imported());
+        assertEquals(0, report.rejected());
+        assertEquals(Files.size(file), report.bytes());
+    }
+
+    @Test
+    void importsCsvWithBom() throws IOException {
+        List<TaskCompletedEvent> events = events(50);
+        Path file = write("activity.csv", true, csv(events));
+
+        List<GamificationEvent> imported = new ArrayList<>();
+        ImportReport report = importer(BulkImporter.DEFAULT_CHUNK_SIZE, 2)
+                .importFile(file, ImportFormat.CSV, imported::addAll, null);
+
+        assertEquals(events, imported);
+        assertEquals(events.size(), report.imported());
+        assertEquals(0, report.rejected());
+    }
+
+    @Test
+    void importsNdjson() throws IOException {
+        List<TaskCompletedEvent> events = events(50);
+        Path file = write("activity.ndjson", false, ndjson(events));
+
+        List<GamificationEvent> imported = new ArrayList<>();
+        ImportReport report = importer(BulkImporter.DEFAULT_CHUNK_SIZE, 2)
+                .importFile(file, ImportFormat.NDJSON, imported::addAll, null);
+
+        assertEquals(events, imported);
+        assertEquals(events.size(), report.imported());
+        assertEquals(0, report.rejected());
+        assertEquals(1, report.chunks());
+    }
+
+    @Test
+    void chunkSmallerThanLineKeepsOrderAndCounts() throws IOException {
+        List<TaskCompletedEvent> events = events(200);
+        Path ndjson = write("activity.ndjson", false, ndjson(events));
+        Path csv = write("activity.csv", true, csv(events));
+        BulkImporter importer = importer(8, 3);
+
+        List<GamificationEvent> fromNdjson = new ArrayList<>();
+        ImportReport ndjsonReport = importer.importFile(ndjson, ImportFormat.NDJSON, fromNdjson::addAll, null);
+        List<GamificationEvent> fromCsv = new ArrayList<>();
+        ImportReport csvReport = importer.importFile(csv, ImportFormat.CSV, fromCsv::addAll, null);
+
+        assertEquals(events, fromNdjson);
+        assertEquals(events.size(), ndjsonReport.imported());
+        assertEquals(events.size(), ndjsonReport.chunks());
+        assertEquals(events, fromCsv);
+        assertEquals(events.size(), csvReport.imported());
+        assertEquals(events.size(), csvReport.chunks());
+    }
+
+    @Test
+    void rejectedLineIsReportedWithItsOffset() throws IOException {
+        List<TaskCompletedEvent> events = events(10);
+        List<String> lines = ndjson(events);
+        String broken = "{\"type\":\"TASK_COMPLETED\",\"userId\":";
+        lines.add(5, broken);
+        Path file = write("activity.ndjson", false, lines);
+        long brokenOffset = String.join("\n", lines.subList(0, 5)).getBytes(StandardCharsets.UTF_8).length + 1;
+
+        List<GamificationEvent> imported = new ArrayList<>();
+        List<ImportError> errors = new ArrayList<>();
+        ImportReport report = importer(64, 2).importFile(file, ImportFormat.NDJSON, new ImportSink() {
+            @Override
+            public void accept(List<GamificationEvent> chunk) {
+                imported.addAll(chunk);
+            }
+
+            @Override
+            public void rejected(List<ImportError> chunk) {
+                errors.addAll(chunk);
+            }
+        }, null);
+
+        assertEquals(events, imported);
+        assertEquals(events.size(), report.imported());
+        assertEquals(1, report.rejected());
+        assertEquals(1, errors.size());
+        assertEquals(brokenOffset, errors.get(0).offset());
+    }
+
+    private BulkImporter importer(int chunkSize, int maxInFlightChunks) {
+        return new BulkImporter(objectMapper, EventValidator.NONE, executor, chunkSize, maxInFlightChunks);
+    }
+
+    private Path write(String name, boolean bom, List<String> lines) throws IOException {
+        Path file = directory.resolve(name);
+        byte[] content = (String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8);
+        byte[] bytes = content;
+        if (bom) {
+            bytes = new byte[BOM.length + content.length];
+            System.arraycopy(BOM, 0, bytes, 0, BOM.length);
+            System.arraycopy(content, 0, bytes, BOM.length, content.length);
+        }
+        return Files.write(file, bytes);
+    }
+
+    private List<String> ndjson(List<TaskCompletedEvent> events) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (TaskCompletedEvent event : events) {
+            lines.add(objectMapper.writeValueAsString(event));
+        }
+        return lines;
+    }
+
+    private static List<String> csv(List<TaskCompletedEvent> events) {
+        List<String> lines = new ArrayList<>();
+        lines.add(CSV_HEADER);
+        for (TaskCompletedEvent event : events) {
+            lines.add(String.join(",", event.type(), event.eventId().toString(), event.userId(),
+                    event.occurredAt().toString(), event.taskId(), String.valueOf(event.score())));
+        }
+        return lines;
+    }
+
+    private static List<TaskCompletedEvent> events(int count) {
+        LocalDateTime start = LocalDateTime.of(2019, 9, 1, 10, 0);
+        List<TaskCompletedEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(new TaskCompletedEvent(UUID.randomUUID(), "student-" + (i % 3),
+                    start.plusMinutes(i), "task-course-1-" + i, i % 100));
+        }
+        return events;
+    }
+}
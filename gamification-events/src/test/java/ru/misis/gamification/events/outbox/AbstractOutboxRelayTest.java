@@ -0,0 +1,182 @@
+package ru.misis.gamification.events.outbox;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.domain.internal.PointsChangedEvent;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверки {@link OutboxWriter} и {@link OutboxRelay}, общие для всех баз outbox
+ */
+abstract class AbstractOutboxRelayTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+
+    private DataSource dataSource;
+
+    /**
+     * Возвращает источник соединений с базой, в которой создается таблица outbox
+     *
+     * @return Источник соединений
+     */
+    abstract DataSource createDataSource();
+
+    @BeforeEach
+    void createTable() throws SQLException, IOException {
+        dataSource = createDataSource();
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute(ddl());
+            statement.execute("TRUNCATE TABLE " + OutboxWriter.DEFAULT_TABLE);
+        }
+    }
+
+    @Test
+    void relayPublishesClaimedBatchesAndDeletesThem() throws SQLException {
+        List<GamificationEvent> events = events(5);
+        append(events);
+        List<GamificationEvent> published = new ArrayList<>();
+        OutboxRelay relay = new OutboxRelay(dataSource, new InProcessOutboxPublisher(objectMapper, published::add),
+                OutboxWriter.DEFAULT_TABLE, 2, Duration.ofSeconds(5));
+
+        assertEquals(2, relay.relayBatch());
+        assertEquals(2, published.size());
+        assertEquals(3, countRows());
+
+        assertEquals(3, relay.relayAll());
+        assertEquals(events.size(), published.size());
+        assertEquals(Set.copyOf(events), Set.copyOf(published));
+        assertEquals(0, countRows());
+        assertEquals(0, relay.relayBatch());
+    }
+
+    @Test
+    void failedPublishRollsBackClaimAndKeepsRows() throws SQLException {
+        append(events(3));
+        OutboxRelay failing = new OutboxRelay(dataSource,
+                record -> CompletableFuture.failedFuture(new IllegalStateException("брокер недоступен")));
+
+        assertThrows(IllegalStateException.class, failing::relayBatch);
+        assertEquals(3, countRows());
+
+        List<GamificationEvent> published = new ArrayList<>();
+        assertEquals(3, new OutboxRelay(dataSource, new InProcessOutboxPublisher(objectMapper, published::add))
+                .relayAll());
+        assertEquals(3, published.size());
+        assertEquals(0, countRows());
+    }
+
+    @Test
+    void concurrentRelaysClaimDisjointBatches() throws Exception {
+        List<GamificationEvent> events = events(1000);
+        append(events);
+        ConcurrentLinkedQueue<UUID> published = new ConcurrentLinkedQueue<>();
+        CountDownLatch bothClaimed = new CountDownLatch(2);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Long>> results = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                AtomicBoolean first = new AtomicBoolean(true);
+                OutboxRelay relay = new OutboxRelay(dataSource, record -> {
+                    if (first.getAndSet(false)) {
+                        // Пачка первого прохода остается захваченной, пока второй ретранслятор не захватит свою:
+                        // без SKIP LOCKED второй ждал бы блокировки строк и защелка не открылась бы
+                        bothClaimed.countDown();
+                        await(bothClaimed);
+                    }
+                    published.add(record.eventId());
+                    return CompletableFuture.completedFuture(null);
+                }, OutboxWriter.DEFAULT_TABLE, 50, Duration.ofSeconds(30));
+                results.add(executor.submit(relay::relayAll));
+            }
+
+            long relayed = 0;
+            for (Future<Long> result : results) {
+                long count = result.get(60, TimeUnit.SECONDS);
+                assertTrue(count > 0, "Каждый ретранслятор должен опубликовать свою пачку");
+                relayed += count;
+            }
+            assertEquals(events.size(), relayed);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Set<UUID> unique = new HashSet<>(published);
+        assertEquals(events.size(), published.size());
+        assertEquals(events.size(), unique.size());
+        assertEquals(0, countRows());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            if (!latch.await(10, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("Второй ретранслятор не захватил пачку");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void append(List<GamificationEvent> events) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            new OutboxWriter(objectMapper).appendAll(connection, events);
+            connection.commit();
+        }
+    }
+
+    private long countRows() throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT count(*) FROM " + OutboxWriter.DEFAULT_TABLE)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static List<GamificationEvent> events(int count) {
+        List<GamificationEvent> events = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            events.add(PointsChangedEvent.awardPoints(UUID.randomUUID(), "student-" + (i % 7),
+                    10, 10L * (i + 1), 10L * (i + 1), 1, UUID.randomUUID(), "rule-1"));
+        }
+        return events;
+    }
+
+    private static String ddl() throws IOException {
+        try (InputStream in = AbstractOutboxRelayTest.class.getResourceAsStream("/db/outbox/gamification_outbox.sql")) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package ru.misis.gamification.events.outbox;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * Проверка {@link OutboxWriter} и {@link OutboxRelay} на встроенной H2 в режиме PostgreSQL
+ *
+ * <p>
+ * Не требует Docker. H2 поддерживает {@code FOR UPDATE SKIP LOCKED} и {@code = ANY(?)},
+ * поэтому выполняются те же проверки, что и на PostgreSQL.
+ * </p>
+ */
+class OutboxRelayH2Test extends AbstractOutboxRelayTest {
+
+    @Override
+    DataSource createDataSource() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:outbox;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
@@ -0,0 +1,31 @@
+package ru.misis.gamification.events.outbox;
+
+import org.postgresql.ds.PGSimpleDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+
+/**
+ * Проверка {@link OutboxWriter} и {@link OutboxRelay} на PostgreSQL
+ *
+ * <p>
+ * Требует Docker; без него тесты пропускаются.
+ * </p>
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class OutboxRelayTest extends AbstractOutboxRelayTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>("postgres:16-alpine");
+
+    @Override
+    DataSource createDataSource() {
+        PGSimpleDataSource dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(POSTGRES.getJdbcUrl());
+        dataSource.setUser(POSTGRES.getUsername());
+        dataSource.setPassword(POSTGRES.getPassword());
+        return dataSource;
+    }
+}
@@ -0,0 +1,187 @@
+package ru.misis.gamification.events.sharding;
+
+import org.junit.jupiter.api.Test;
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.domain.internal.AchievementEvent;
+import ru.misis.gamification.events.domain.internal.PointsChangedEvent;
+import ru.misis.gamification.events.state.UserStateStore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка перебалансировки {@link ShardCluster} на нескольких узлах в одном процессе
+ *
+ * <p>
+ * Итоговое состояние каждого пользователя сравнивается с воспроизведением того же журнала
+ * одним {@link UserStateStore}. События достижений увеличивают счетчик, поэтому потерянное
+ * или примененное дважды событие меняет результат.
+ * </p>
+ */
+class ShardClusterTest {
+
+    private static final int USERS = 500;
+
+    private static final int EVENTS = 40_000;
+
+    @Test
+    void rebalancingBetweenBatchesMatchesSingleNodeReplay() {
+        List<GamificationEvent> log = log(EVENTS, new Random(1));
+        ShardCluster cluster = new ShardCluster();
+        cluster.addNode("points-1");
+        cluster.addNode("points-2");
+
+        int step = log.size() / 5;
+        route(cluster, log, 0, step);
+        cluster.addNode("points-3");
+        route(cluster, log, step, 2 * step);
+        cluster.removeNode("points-1");
+        route(cluster, log, 2 * step, 3 * step);
+        cluster.addNode("points-4");
+        cluster.addNode("points-5");
+        route(cluster, log, 3 * step, 4 * step);
+        cluster.removeNode("points-2");
+        route(cluster, log, 4 * step, log.size());
+
+        assertMatchesReplay(cluster, log);
+    }
+
+    @Test
+    void redeliveryAfterRebalancingIsNotAppliedTwice() {
+        List<GamificationEvent> log = log(EVENTS / 4, new Random(2));
+        ShardCluster cluster = new ShardCluster();
+        cluster.addNode("points-1");
+        route(cluster, log, 0, log.size());
+
+        cluster.addNode("points-2");
+        cluster.addNode("points-3");
+        cluster.removeNode("points-1");
+        for (int position = 0; position < log.size(); position++) {
+            assertFalse(cluster.route(position, log.get(position)), "Событие " + position + " применено повторно");
+        }
+
+        assertMatchesReplay(cluster, log);
+    }
+
+    @Test
+    void concurrentRoutingDuringMembershipChangesMatchesSingleNodeReplay() throws Exception {
+        List<GamificationEvent> log = log(EVENTS, new Random(3));
+        ShardCluster cluster = new ShardCluster();
+        cluster.addNode("points-1");
+        cluster.addNode("points-2");
+        cluster.addNode("points-3");
+
+        // Позиции должны возрастать в пределах диапазона, поэтому каждый поток ведет свои диапазоны
+        int threads = 4;
+        List<List<Integer>> positionsByThread = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            positionsByThread.add(new ArrayList<>());
+        }
+        for (int position = 0; position < log.size(); position++) {
+            positionsByThread.get(HashRing.rangeOf(log.get(position).userId()) % threads).add(position);
+        }
+
+        AtomicLong routed = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> routers = new ArrayList<>();
+            for (List<Integer> positions : positionsByThread) {
+                routers.add(executor.submit(() -> {
+                    for (int position : positions) {
+                        assertTrue(cluster.route(position, log.get(position)), "Событие " + position + " не применено");
+                        routed.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+
+            awaitRouted(routed::get, log.size() / 5);
+            cluster.addNode("points-4");
+            awaitRouted(routed::get, 2L * log.size() / 5);
+            cluster.removeNode("points-2");
+            awaitRouted(routed::get, 3L * log.size() / 5);
+            cluster.addNode("points-5");
+            cluster.removeNode("points-3");
+
+            for (Future<?> router : routers) {
+                router.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(log.size(), routed.get());
+        assertMatchesReplay(cluster, log);
+    }
+
+    private static void route(ShardCluster cluster, List<GamificationEvent> log, int from, int to) {
+        for (int position = from; position < to; position++) {
+            assertTrue(cluster.route(position, log.get(position)), "Событие " + position + " не применено");
+        }
+    }
+
+    private static void assertMatchesReplay(ShardCluster cluster, List<GamificationEvent> log) {
+        UserStateStore replay = new UserStateStore();
+        for (int position = 0; position < log.size(); position++) {
+            replay.apply(position, log.get(position));
+        }
+        int owned = 0;
+        for (String nodeId : cluster.ring().nodes()) {
+            owned += cluster.node(nodeId).size();
+        }
+        assertEquals(replay.size(), owned);
+        for (int user = 0; user < USERS; user++) {
+            String userId = userId(user);
+            assertEquals(replay.get(userId), cluster.get(userId), "Состояние пользователя " + userId);
+        }
+    }
+
+    private static void awaitRouted(LongSupplier routed, long target) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (routed.getAsLong() < target) {
+            if (System.nanoTime() > deadline) {
+                throw new IllegalStateException("Маршрутизация не продвигается");
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Журнал начислений и достижений: баланс в событиях абсолютный, а достижения считаются
+     */
+    private static List<GamificationEvent> log(int size, Random random) {
+        Map<String, Long> balances = new HashMap<>();
+        List<GamificationEvent> log = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            String userId = userId(random.nextInt(USERS));
+            if (random.nextInt(5) == 0) {
+                log.add(AchievementEvent.create(userId, "achievement-" + i, "Достижение", "Описание",
+                        10L, "COMMON", null));
+            } else {
+                long points = 1 + random.nextInt(50);
+                long balance = balances.merge(userId, points, Long::sum);
+                log.add(PointsChangedEvent.awardPoints(UUID.randomUUID(), userId, points, balance, balance,
+                        1 + (int) (balance / 500), UUID.randomUUID(), "rule-1"));
+            }
+        }
+        return log;
+    }
+
+    private static String userId(int user) {
+        return "student-" + user;
+    }
+}
@@ -0,0 +1,124 @@
+package ru.misis.gamification.loadtest;
+
+import ru.misis.gamification.events.analytics.CourseResolver;
+import ru.misis.gamification.events.constants.EventConstants;
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.domain.extenal.AssignmentSubmittedEvent;
+import ru.misis.gamification.events.domain.extenal.CourseEnrolledEvent;
+import ru.misis.gamification.events.domain.extenal.ForumPostCreatedEvent;
+import ru.misis.gamification.events.domain.extenal.TaskCompletedEvent;
+import ru.misis.gamification.events.domain.extenal.TestPassedEvent;
+
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.UUID;
+import java.util.random.RandomGenerator;
+
+/**
+ * Фабрика синтетических внешних событий LMS
+ *
+ * <p>
+ * Активность пользователей распределена по Ципфу, идентификаторы задач, тестов,
+ * заданий, тем форума и курсов выбираются равномерно из заданного количества.
+ * </p>
+ */
+public class EventFactory {
+
+    /**
+     * Типы событий, которые умеет создавать фабрика
+     */
+    public static final Set<String> SUPPORTED_TYPES = Set.of(
+            EventConstants.TASK_COMPLETED,
+            EventConstants.TEST_PASSED,
+            EventConstants.COURSE_ENROLLED,
+            EventConstants.FORUM_POST_CREATED,
+            EventConstants.ASSIGNMENT_SUBMITTED
+    );
+
+    private final ZipfianGenerator users;
+
+    private final int courses;
+
+    private final int itemsPerCourse;
+
+    /**
+     * Создает фабрику
+     *
+     * @param users          Распределение активности пользователей
+     * @param courses        Количество курсов
+     * @param itemsPerCourse Количество задач, тестов и заданий в курсе
+     */
+    public EventFactory(ZipfianGenerator users, int courses, int itemsPerCourse) {
+        if (courses <= 0 || itemsPerCourse <= 0) {
+            throw new IllegalArgumentException("courses и itemsPerCourse должны быть положительными");
+        }
+        this.users = users;
+        this.courses = courses;
+        this.itemsPerCourse = itemsPerCourse;
+    }
+
+    /**
+     * Создает событие заданного типа для случайного пользователя
+     *
+     * @param type   Тип события из {@link #SUPPORTED_TYPES}
+     * @param random Источник случайных чисел
+     * @return Событие с текущим временем
+     * @throws IllegalArgumentException Если тип не поддерживается
+     */
+    public GamificationEvent create(String type, RandomGenerator random) {
+        String userId = "student-" + users.next(random);
+        String course = "course-" + random.nextInt(courses);
+        String item = course + "-" + random.nextInt(itemsPerCourse);
+        return switch (type) {
+            case EventConstants.TASK_COMPLETED ->
+                    GamificationEvent.taskCompleted(userId, "task-" + item, random.nextInt(EventConstants.MAX_SCORE + 1));
+            case EventConstants.TEST_PASSED ->
+                    GamificationEvent.testPassed(userId, "test-" + item, testPercentage(random));
+            case EventConstants.COURSE_ENROLLED ->
+                    new CourseEnrolledEvent(UUID.randomUUID(), userId, LocalDateTime.now(), course);
+            case EventConstants.FORUM_POST_CREATED ->
+                    new ForumPostCreatedEvent(UUID.randomUUID(), userId, LocalDateTime.now(),
+                            "post-" + UUID.randomUUID().toString().substring(0, 8), "topic-" + item);
+            case EventConstants.ASSIGNMENT_SUBMITTED ->
+                    new AssignmentSubmittedEvent(UUID.randomUUID(), userId, LocalDateTime.now(),
+                            "assignment-" + item, random.nextDouble() < 0.85);
+            default -> throw new IllegalArgumentException("Неподдерживаемый тип события: " + type);
+        };
+    }
+
+    /**
+     * Возвращает резолвер курса для событий этой фабрики
+     *
+     * <p>
+     * Идентификаторы задач, тестов, заданий и тем форума имеют вид
+     * {@code <вид>-course-<n>-<m>}, из них и извлекается курс.
+     * </p>
+     *
+     * @return Резолвер курса
+     */
+    public static CourseResolver courseResolver() {
+        return CourseResolver.enrollmentOr(event -> {
+            String item = null;
+            if (event instanceof TaskCompletedEvent task) {
+                item = task.taskId();
+            } else if (event instanceof TestPassedEvent test) {
+                item = test.testId();
+            } else if (event instanceof AssignmentSubmittedEvent assignment) {
+                item = assignment.assignmentId();
+            } else if (event instanceof ForumPostCreatedEvent post) {
+                item = post.topicId();
+            }
+            if (item == null) {
+                return null;
+            }
+            int from = item.indexOf('-') + 1;
+            int to = item.lastIndexOf('-');
+            return from > 0 && to > from ? item.substring(from, to) : null;
+        });
+    }
+
+    private static double testPercentage(RandomGenerator random) {
+        double percentage = 70 + random.nextGaussian() * 15;
+        return Math.max(EventConstants.MIN_PERCENTAGE, Math.min(EventConstants.MAX_PERCENTAGE, percentage));
+    }
+}
@@ -0,0 +1,92 @@
+package ru.misis.gamification.loadtest;
+
+import ru.misis.gamification.events.constants.EventConstants;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.random.RandomGenerator;
+
+/**
+ * Доли типов внешних событий в нагрузке
+ *
+ * <p>
+ * Веса хранятся в порядке имен типов, а не в порядке исходной карты: порядок обхода
+ * {@link Map#of} и {@link Map#copyOf} зависит от запуска JVM, и одно зерно давало бы разные прогоны.
+ * </p>
+ *
+ * @param weights Веса типов событий из {@link EventConstants}
+ */
+public record EventMix(Map<String, Double> weights) {
+
+    /**
+     * Проверяет веса и копирует их в карту с фиксированным порядком обхода
+     *
+     * @throws IllegalArgumentException Если веса пусты, содержат неподдерживаемый тип или отрицательный вес
+     */
+    public EventMix {
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("weights не может быть пустым");
+        }
+        weights.forEach((type, weight) -> {
+            if (!EventFactory.SUPPORTED_TYPES.contains(type)) {
+                throw new IllegalArgumentException("Неподдерживаемый тип события: " + type);
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("Вес не может быть отрицательным: " + type);
+            }
+        });
+        weights = Collections.unmodifiableSortedMap(new TreeMap<>(weights));
+    }
+
+    /**
+     * Смесь обычного учебного дня: в основном задачи и тесты, реже форум, сдачи и записи на курс
+     *
+     * @return Смесь событий
+     */
+    public static EventMix typicalDay() {
+        return new EventMix(Map.of(
+                EventConstants.TASK_COMPLETED, 0.45,
+                EventConstants.TEST_PASSED, 0.25,
+                EventConstants.FORUM_POST_CREATED, 0.15,
+                EventConstants.ASSIGNMENT_SUBMITTED, 0.12,
+                EventConstants.COURSE_ENROLLED, 0.03
+        ));
+    }
+
+    /**
+     * Смесь окончания экзамена: массовая сдача заданий и тестов
+     *
+     * @return Смесь событий
+     */
+    public static EventMix examEnd() {
+        return new EventMix(Map.of(
+                EventConstants.ASSIGNMENT_SUBMITTED, 0.6,
+                EventConstants.TEST_PASSED, 0.35,
+                EventConstants.FORUM_POST_CREATED, 0.05
+        ));
+    }
+
+    /**
+     * Выбирает тип события пропорционально весам
+     *
+     * @param random Источник случайных чисел
+     * @return Тип события
+     */
+    public String nextType(RandomGenerator random) {
+        double total = 0;
+        for (double weight : weights.values()) {
+            total += weight;
+        }
+        double point = random.nextDouble() * total;
+        String last = null;
+        for (Map.Entry<String, Double> entry : weights.entrySet()) {
+            last = entry.getKey();
+            point -= entry.getValue();
+            if (point < 0) {
+                return last;
+            }
+        }
+        return last;
+    }
+}
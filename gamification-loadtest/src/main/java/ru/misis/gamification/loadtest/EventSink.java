@@ -0,0 +1,20 @@
+package ru.misis.gamification.loadtest;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Получатель нагрузки: конвейер обработки событий в процессе или по HTTP
+ */
+@FunctionalInterface
+public interface EventSink {
+
+    /**
+     * Отправляет событие в конвейер
+     *
+     * @param event Событие
+     * @return Future, завершающийся после обработки события конвейером
+     */
+    CompletableFuture<Void> send(GamificationEvent event);
+}
@@ -0,0 +1,64 @@
+package ru.misis.gamification.loadtest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Отправка нагрузки в сервис приема событий по HTTP
+ *
+ * <p>
+ * Событие отправляется POST-запросом с JSON-телом. Ответ вне диапазона 2xx
+ * считается ошибкой.
+ * </p>
+ */
+public class HttpEventSink implements EventSink {
+
+    private final HttpClient client;
+
+    private final URI endpoint;
+
+    private final ObjectMapper objectMapper;
+
+    private final Duration timeout;
+
+    /**
+     * @param client       HTTP-клиент
+     * @param endpoint     Адрес приема событий
+     * @param objectMapper ObjectMapper с поддержкой {@code java.time}
+     * @param timeout      Таймаут запроса
+     */
+    public HttpEventSink(HttpClient client, URI endpoint, ObjectMapper objectMapper, Duration timeout) {
+        this.client = client;
+        this.endpoint = endpoint;
+        this.objectMapper = objectMapper;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public CompletableFuture<Void> send(GamificationEvent event) {
+        HttpRequest request;
+        try {
+            request = HttpRequest.newBuilder(endpoint)
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(event)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .thenAccept(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        throw new IllegalStateException("Сервис ответил статусом " + response.statusCode());
+                    }
+                });
+    }
+}
@@ -0,0 +1,31 @@
+package ru.misis.gamification.loadtest;
+
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+/**
+ * Отправка нагрузки в конвейер в том же процессе
+ */
+public class InProcessEventSink implements EventSink {
+
+    private final Consumer<GamificationEvent> pipeline;
+
+    private final Executor executor;
+
+    /**
+     * @param pipeline Обработка события
+     * @param executor Пул потоков конвейера
+     */
+    public InProcessEventSink(Consumer<GamificationEvent> pipeline, Executor executor) {
+        this.pipeline = pipeline;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<Void> send(GamificationEvent event) {
+        return CompletableFuture.runAsync(() -> pipeline.accept(event), executor);
+    }
+}
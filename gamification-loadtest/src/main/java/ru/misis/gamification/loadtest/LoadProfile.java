@@ -0,0 +1,130 @@
+package ru.misis.gamification.loadtest;
+
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Профиль нагрузки: базовая интенсивность и всплески по времени суток
+ *
+ * <p>
+ * Время прогона отображается на время суток начиная с {@code startTime},
+ * поэтому всплеск "экзамен заканчивается в 12:00" задается как есть,
+ * а прогон запускается, например, с 11:50.
+ * </p>
+ *
+ * @param startTime         Время суток, соответствующее началу прогона
+ * @param baseRatePerSecond Базовая интенсивность, событий в секунду
+ * @param baseMix           Смесь событий вне всплесков
+ * @param bursts            Всплески нагрузки
+ */
+public record LoadProfile(
+        LocalTime startTime,
+        double baseRatePerSecond,
+        EventMix baseMix,
+        List<Burst> bursts
+) {
+
+    public LoadProfile {
+        if (baseRatePerSecond <= 0) {
+            throw new IllegalArgumentException("baseRatePerSecond должен быть положительным");
+        }
+        bursts = List.copyOf(bursts);
+    }
+
+    /**
+     * Создает профиль с постоянной интенсивностью и смесью обычного учебного дня
+     *
+     * @param startTime         Время суток начала прогона
+     * @param baseRatePerSecond Интенсивность, событий в секунду
+     * @return Профиль нагрузки
+     */
+    public static LoadProfile steady(LocalTime startTime, double baseRatePerSecond) {
+        return new LoadProfile(startTime, baseRatePerSecond, EventMix.typicalDay(), List.of());
+    }
+
+    /**
+     * Возвращает профиль с дополнительным всплеском
+     *
+     * @param burst Всплеск
+     * @return Новый профиль
+     */
+    public LoadProfile withBurst(Burst burst) {
+        List<Burst> updated = new ArrayList<>(bursts);
+        updated.add(burst);
+        return new LoadProfile(startTime, baseRatePerSecond, baseMix, updated);
+    }
+
+    /**
+     * Возвращает интенсивность в момент прогона
+     *
+     * @param elapsed Время от начала прогона
+     * @return Интенсивность, событий в секунду
+     */
+    public double rateAt(Duration elapsed) {
+        Burst burst = activeBurst(elapsed);
+        return burst == null ? baseRatePerSecond : baseRatePerSecond * burst.rateMultiplier();
+    }
+
+    /**
+     * Возвращает смесь событий в момент прогона
+     *
+     * @param elapsed Время от начала прогона
+     * @return Смесь событий
+     */
+    public EventMix mixAt(Duration elapsed) {
+        Burst burst = activeBurst(elapsed);
+        return burst == null ? baseMix : burst.mix();
+    }
+
+    private Burst activeBurst(Duration elapsed) {
+        LocalTime now = startTime.plus(elapsed);
+        Burst strongest = null;
+        for (Burst burst : bursts) {
+            if (burst.isActive(now) && (strongest == null || burst.rateMultiplier() > strongest.rateMultiplier())) {
+                strongest = burst;
+            }
+        }
+        return strongest;
+    }
+
+    /**
+     * Всплеск нагрузки
+     *
+     * @param at             Время суток начала всплеска
+     * @param length         Длительность всплеска
+     * @param rateMultiplier Множитель базовой интенсивности
+     * @param mix            Смесь событий во время всплеска
+     */
+    public record Burst(LocalTime at, Duration length, double rateMultiplier, EventMix mix) {
+
+        public Burst {
+            if (length.isNegative() || length.isZero()) {
+                throw new IllegalArgumentException("length должен быть положительным");
+            }
+            if (rateMultiplier <= 0) {
+                throw new IllegalArgumentException("rateMultiplier должен быть положительным");
+            }
+        }
+
+        /**
+         * Создает всплеск окончания экзамена: массовая сдача заданий и тестов
+         *
+         * @param examEnd        Время окончания экзамена
+         * @param length         Длительность всплеска
+         * @param rateMultiplier Множитель базовой интенсивности
+         * @return Всплеск нагрузки
+         */
+        public static Burst examEnd(LocalTime examEnd, Duration length, double rateMultiplier) {
+            return new Burst(examEnd, length, rateMultiplier, EventMix.examEnd());
+        }
+
+        private boolean isActive(LocalTime now) {
+            LocalTime end = at.plus(length);
+            return end.isAfter(at)
+                    ? !now.isBefore(at) && now.isBefore(end)
+                    : !now.isBefore(at) || now.isBefore(end);
+        }
+    }
+}
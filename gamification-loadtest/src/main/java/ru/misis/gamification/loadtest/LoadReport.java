@@ -0,0 +1,83 @@
+package ru.misis.gamification.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+
+/**
+ * Результат нагрузочного прогона
+ *
+ * <p>
+ * Скорректированная задержка отсчитывается от запланированного момента отправки,
+ * поэтому учитывает время, которое событие ждало из-за перегруженного конвейера
+ * (coordinated omission). Нескорректированная отсчитывается от фактической
+ * отправки и приведена для сравнения.
+ * </p>
+ *
+ * @param duration    Длительность прогона
+ * @param sent        Количество отправленных событий
+ * @param completed   Количество обработанных событий
+ * @param failed      Количество событий, завершившихся ошибкой
+ * @param timedOut    Количество событий, не обработанных за время ожидания после отправки
+ * @param corrected   Задержки от запланированного момента отправки
+ * @param uncorrected Задержки от фактического момента отправки
+ */
+public record LoadReport(
+        Duration duration,
+        long sent,
+        long completed,
+        long failed,
+        long timedOut,
+        Latency corrected,
+        Latency uncorrected
+) {
+
+    /**
+     * Возвращает достигнутую интенсивность
+     *
+     * @return Обработанных событий в секунду
+     */
+    public double throughputPerSecond() {
+        return duration.isZero() ? 0 : completed * 1_000_000_000.0 / duration.toNanos();
+    }
+
+    /**
+     * Форматирует отчет для вывода в консоль
+     *
+     * @return Текст отчета
+     */
+    public String format() {
+        return String.format(
+                "Длительность: %s, отправлено: %d, обработано: %d, ошибок: %d, не дождались: %d, %.1f событий/с%n"
+                        + "Задержка с коррекцией, мкс:    %s%n"
+                        + "Задержка без коррекции, мкс:   %s",
+                duration, sent, completed, failed, timedOut, throughputPerSecond(),
+                corrected.format(), uncorrected.format());
+    }
+
+    /**
+     * Перцентили задержки в микросекундах
+     *
+     * @param p50  Медиана
+     * @param p90  90-й перцентиль
+     * @param p99  99-й перцентиль
+     * @param p999 99.9-й перцентиль
+     * @param max  Максимум
+     */
+    public record Latency(long p50, long p90, long p99, long p999, long max) {
+
+        static Latency of(Histogram histogram) {
+            return new Latency(
+                    histogram.getValueAtPercentile(50),
+                    histogram.getValueAtPercentile(90),
+                    histogram.getValueAtPercentile(99),
+                    histogram.getValueAtPercentile(99.9),
+                    histogram.getMaxValue()
+            );
+        }
+
+        String format() {
+            return String.format("p50=%d p90=%d p99=%d p99.9=%d max=%d", p50, p90, p99, p999, max);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package ru.misis.gamification.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import ru.misis.gamification.events.analytics.CourseAnalyticsAggregator;
+import ru.misis.gamification.events.ratelimit.EventRateLimiter;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Точка входа нагрузочного прогона
+ *
+ * <p>
+ * Параметры передаются в виде {@code ключ=значение}:
+ * </p>
+ * <ul>
+ *     <li>{@code target} - {@code inprocess} или URL HTTP-приемника событий, по умолчанию {@code inprocess}</li>
+ *     <li>{@code rate} - базовая интенсивность, событий в секунду, по умолчанию 500</li>
+ *     <li>{@code duration} - длительность в формате ISO-8601, по умолчанию {@code PT5M}</li>
+ *     <li>{@code users} - количество пользователей, по умолчанию 100000</li>
+ *     <li>{@code courses} - количество курсов, по умолчанию 200</li>
+ *     <li>{@code start} - время суток начала прогона, по умолчанию текущее</li>
+ *     <li>{@code examEnd} - время окончания экзамена для всплеска нагрузки, по умолчанию без всплеска</li>
+ *     <li>{@code burst} - множитель интенсивности во время всплеска, по умолчанию 10</li>
+ *     <li>{@code seed} - зерно генератора, по умолчанию 42</li>
+ * </ul>
+ *
+ * <pre>{@code
+ * mvn -pl gamification-loadtest exec:java \
+ *     -Dexec.mainClass=ru.misis.gamification.loadtest.LoadTestApplication \
+ *     -Dexec.args="rate=1000 duration=PT30M start=11:50 examEnd=12:00 burst=20"
+ * }</pre>
+ */
+public final class LoadTestApplication {
+
+    private static final Duration BURST_LENGTH = Duration.ofMinutes(10);
+
+    private static final Duration DRAIN_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final int ITEMS_PER_COURSE = 50;
+
+    private static final Duration EVICTION_INTERVAL = Duration.ofMinutes(1);
+
+    private LoadTestApplication() {
+    }
+
+    public static void main(String[] args) {
+        Map<String, String> params = parse(args);
+
+        LoadProfile profile = LoadProfile.steady(
+                LocalTime.parse(params.getOrDefault("start", LocalTime.now().withNano(0).toString())),
+                Double.parseDouble(params.getOrDefault("rate", "500")));
+        if (params.containsKey("examEnd")) {
+            profile = profile.withBurst(LoadProfile.Burst.examEnd(
+                    LocalTime.parse(params.get("examEnd")), BURST_LENGTH,
+                    Double.parseDouble(params.getOrDefault("burst", "10"))));
+        }
+
+        EventFactory factory = new EventFactory(
+                new ZipfianGenerator(Long.parseLong(params.getOrDefault("users", "100000")),
+                        ZipfianGenerator.DEFAULT_THETA),
+                Integer.parseInt(params.getOrDefault("courses", "200")),
+                ITEMS_PER_COURSE);
+
+        String target = params.getOrDefault("target", "inprocess");
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            EventSink sink = "inprocess".equals(target)
+                    ? inProcessSink(executor, scheduler)
+                    : httpSink(URI.create(target));
+            SoakHarness harness = new SoakHarness(profile, factory, sink, Long.parseLong(params.getOrDefault("seed", "42")));
+            LoadReport report = harness.run(Duration.parse(params.getOrDefault("duration", "PT5M")), DRAIN_TIMEOUT);
+            System.out.println(report.format());
+        } finally {
+            executor.shutdownNow();
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static EventSink inProcessSink(ExecutorService executor, ScheduledExecutorService scheduler) {
+        EventRateLimiter rateLimiter = new EventRateLimiter(EventRateLimiter.defaultPolicies());
+        rateLimiter.start(scheduler, EVICTION_INTERVAL);
+        CourseAnalyticsAggregator aggregator = new CourseAnalyticsAggregator(EventFactory.courseResolver());
+        return new InProcessEventSink(event -> {
+            if (rateLimiter.tryAcquire(event)) {
+                aggregator.record(event);
+            }
+        }, executor);
+    }
+
+    private static EventSink httpSink(URI endpoint) {
+        ObjectMapper objectMapper = new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        return new HttpEventSink(client, endpoint, objectMapper, Duration.ofSeconds(10));
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Ожидается параметр вида ключ=значение: " + arg);
+            }
+            params.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return params;
+    }
+}
@@ -0,0 +1,159 @@
+package ru.misis.gamification.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import ru.misis.gamification.events.domain.GamificationEvent;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Soak-прогон конвейера событий по открытой модели нагрузки
+ *
+ * <p>
+ * Моменты отправки планируются заранее по пуассоновскому потоку с интенсивностью
+ * {@link LoadProfile#rateAt(Duration)} и не зависят от того, успевает ли конвейер.
+ * Если отправка опаздывает, события уходят пачкой, а задержка считается от
+ * запланированного момента - так отчет не скрывает очереди перед конвейером
+ * (коррекция coordinated omission).
+ * </p>
+ *
+ * <p>
+ * События, не обработанные за время ожидания после окончания отправки, считаются
+ * превысившими время ожидания: их задержка записывается на момент окончания ожидания,
+ * чтобы зависшие запросы не выпадали из перцентилей.
+ * </p>
+ */
+public class SoakHarness {
+
+    private static final long MAX_TRACKED_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final LoadProfile profile;
+
+    private final EventFactory factory;
+
+    private final EventSink sink;
+
+    private final long seed;
+
+    /**
+     * @param profile Профиль нагрузки
+     * @param factory Фабрика событий
+     * @param sink    Получатель нагрузки
+     * @param seed    Зерно генератора случайных чисел для воспроизводимости
+     */
+    public SoakHarness(LoadProfile profile, EventFactory factory, EventSink sink, long seed) {
+        this.profile = profile;
+        this.factory = factory;
+        this.sink = sink;
+        this.seed = seed;
+    }
+
+    /**
+     * Выполняет прогон и ждет обработки отправленных событий
+     *
+     * @param duration     Длительность отправки нагрузки
+     * @param drainTimeout Максимальное ожидание обработки после окончания отправки
+     * @return Отчет прогона
+     */
+    public LoadReport run(Duration duration, Duration drainTimeout) {
+        Histogram corrected = new ConcurrentHistogram(MAX_TRACKED_MICROS, 3);
+        Histogram uncorrected = new ConcurrentHistogram(MAX_TRACKED_MICROS, 3);
+        AtomicLong completed = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        Map<Long, Request> inFlight = new ConcurrentHashMap<>();
+        SplittableRandom random = new SplittableRandom(seed);
+
+        long durationNanos = duration.toNanos();
+        long start = System.nanoTime();
+        long intended = start;
+        long sent = 0;
+
+        while (true) {
+            Duration elapsed = Duration.ofNanos(intended - start);
+            intended += nextIntervalNanos(profile.rateAt(elapsed), random);
+            if (intended - start >= durationNanos) {
+                break;
+            }
+            waitUntil(intended);
+
+            GamificationEvent event = factory.create(profile.mixAt(elapsed).nextType(random), random);
+            Long id = sent++;
+            Request request = new Request(intended, System.nanoTime());
+            inFlight.put(id, request);
+            send(event).whenComplete((ignored, error) -> {
+                long now = System.nanoTime();
+                if (!inFlight.remove(id, request)) {
+                    return;
+                }
+                if (error == null) {
+                    record(corrected, now - request.scheduledAt());
+                    record(uncorrected, now - request.sentAt());
+                    completed.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+            });
+        }
+
+        long drainDeadline = System.nanoTime() + drainTimeout.toNanos();
+        while (!inFlight.isEmpty() && System.nanoTime() - drainDeadline < 0) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+
+        long timedOut = 0;
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Long, Request>> pending = inFlight.entrySet().iterator();
+        while (pending.hasNext()) {
+            Map.Entry<Long, Request> entry = pending.next();
+            if (inFlight.remove(entry.getKey(), entry.getValue())) {
+                record(corrected, now - entry.getValue().scheduledAt());
+                record(uncorrected, now - entry.getValue().sentAt());
+                timedOut++;
+            }
+        }
+
+        return new LoadReport(Duration.ofNanos(now - start), sent, completed.get(), failed.get(), timedOut,
+                LoadReport.Latency.of(corrected), LoadReport.Latency.of(uncorrected));
+    }
+
+    private CompletableFuture<Void> send(GamificationEvent event) {
+        try {
+            return sink.send(event);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private static long nextIntervalNanos(double ratePerSecond, SplittableRandom random) {
+        double meanNanos = 1_000_000_000.0 / ratePerSecond;
+        return Math.max(1, (long) (-Math.log(1 - random.nextDouble()) * meanNanos));
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private static void record(Histogram histogram, long nanos) {
+        histogram.recordValue(Math.min(MAX_TRACKED_MICROS, Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos))));
+    }
+
+    /**
+     * Отправленное событие, ожидающее обработки
+     *
+     * @param scheduledAt Запланированный момент отправки, {@link System#nanoTime()}
+     * @param sentAt      Фактический момент отправки, {@link System#nanoTime()}
+     */
+    private record Request(long scheduledAt, long sentAt) {
+    }
+}
@@ -0,0 +1,198 @@
+package ru.misis.gamification.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import ru.misis.gamification.events.analytics.CourseAnalyticsAggregator;
+import ru.misis.gamification.events.domain.GamificationEvent;
+import ru.misis.gamification.events.ratelimit.EventRateLimiter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Замер времени до первого обработанного события у нового экземпляра потребителя
+ *
+ * <p>
+ * Драйвер запускает дочерние процессы в режиме {@code probe} и измеряет время
+ * от запуска процесса до строки {@value #FIRST_EVENT_MARKER}: старт JVM, загрузка классов,
+ * инициализация Jackson, десериализация события из JSON и его обработка
+ * {@link EventRateLimiter} и {@link CourseAnalyticsAggregator}. Процесс, не напечатавший
+ * маркер за {@value #PROBE_TIMEOUT_SECONDS} секунд, завершается принудительно.
+ * </p>
+ *
+ * <p>
+ * Процесс {@code probe} не поднимает контекст Spring и создает {@link ObjectMapper} сам,
+ * поэтому замер не проверяет подсказки Spring AOT ({@code GamificationEventRuntimeHints})
+ * и не включает время старта контекста.
+ * </p>
+ *
+ * <p>
+ * Параметры передаются в виде {@code ключ=значение}:
+ * </p>
+ * <ul>
+ *     <li>{@code runs} - количество запусков каждого варианта, по умолчанию 10</li>
+ *     <li>{@code archive} - архив AppCDS, созданный профилем {@code appcds}; если задан,
+ *     дополнительно замеряется запуск с {@code -XX:SharedArchiveFile}</li>
+ *     <li>{@code native} - исполняемый файл native image с этим классом в качестве точки входа;
+ *     если задан, дополнительно замеряется он</li>
+ * </ul>
+ *
+ * <pre>{@code
+ * mvn -pl gamification-loadtest -Pappcds package
+ * cd gamification-loadtest
+ * java -cp "target/gamification-loadtest-1.0-SNAPSHOT.jar:$(cat target/classpath.txt)" \
+ *     ru.misis.gamification.loadtest.StartupBenchmark archive=target/startup.jsa
+ * }</pre>
+ */
+public final class StartupBenchmark {
+
+    /**
+     * Строка, которую процесс в режиме {@code probe} печатает после обработки первого события
+     */
+    static final String FIRST_EVENT_MARKER = "FIRST_EVENT";
+
+    private static final String PROBE = "probe";
+
+    private static final String FIRST_EVENT_JSON = """
+            {"type":"TASK_COMPLETED","eventId":"5b0f6d0e-3c1a-4a57-9a53-7f1f2d0c9e11",\
+            "userId":"student-1","occurredAt":"2025-05-20T10:15:30","taskId":"task-course-1-7","score":87}""";
+
+    /**
+     * Время, за которое процесс должен обработать событие, иначе он завершается принудительно
+     */
+    static final long PROBE_TIMEOUT_SECONDS = 60;
+
+    private StartupBenchmark() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 1 && PROBE.equals(args[0])) {
+            probe();
+            return;
+        }
+        Map<String, String> params = parse(args);
+        int runs = Integer.parseInt(params.getOrDefault("runs", "10"));
+        String java = ProcessHandle.current().info().command().orElse("java");
+        String classpath = System.getProperty("java.class.path");
+
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("jvm", List.of(java, "-cp", classpath, StartupBenchmark.class.getName(), PROBE));
+        if (params.containsKey("archive")) {
+            variants.put("jvm+appcds", List.of(java, "-XX:SharedArchiveFile=" + params.get("archive"),
+                    "-Xshare:auto", "-cp", classpath, StartupBenchmark.class.getName(), PROBE));
+        }
+        if (params.containsKey("native")) {
+            variants.put("native", List.of(params.get("native"), PROBE));
+        }
+
+        System.out.printf("%-12s %8s %8s %8s%n", "variant", "min,ms", "p50,ms", "max,ms");
+        for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+            long[] millis = new long[runs];
+            for (int i = 0; i < runs; i++) {
+                millis[i] = timeToFirstEvent(variant.getValue());
+            }
+            Arrays.sort(millis);
+            System.out.printf("%-12s %8d %8d %8d%n",
+                    variant.getKey(), millis[0], millis[runs / 2], millis[runs - 1]);
+        }
+    }
+
+    /**
+     * Обрабатывает одно событие так же, как новый экземпляр потребителя, и печатает маркер
+     */
+    private static void probe() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().registerModule(new JavaTimeModule());
+        EventRateLimiter rateLimiter = new EventRateLimiter(EventRateLimiter.defaultPolicies());
+        CourseAnalyticsAggregator aggregator = new CourseAnalyticsAggregator(EventFactory.courseResolver());
+
+        GamificationEvent event = objectMapper.readValue(FIRST_EVENT_JSON, GamificationEvent.class);
+        if (!rateLimiter.tryAcquire(event) || !aggregator.record(event)) {
+            throw new IllegalStateException("Первое событие не обработано");
+        }
+        System.out.println(FIRST_EVENT_MARKER);
+        System.out.flush();
+    }
+
+    /**
+     * Запускает процесс и ждет маркер не дольше {@value #PROBE_TIMEOUT_SECONDS} секунд
+     *
+     * <p>
+     * Вывод читается отдельным потоком: {@code readLine()} зависшего процесса
+     * не возвращает управление, а ожидание результата чтения ограничено сроком.
+     * </p>
+     */
+    private static long timeToFirstEvent(List<String> command) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(PROBE_TIMEOUT_SECONDS);
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        List<String> output = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<Long> firstEvent = new CompletableFuture<>();
+        Thread reader = new Thread(() -> readOutput(process, start, output, firstEvent), "probe-output");
+        reader.setDaemon(true);
+        reader.start();
+        try {
+            long elapsed = firstEvent.get(PROBE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            if (elapsed < 0) {
+                throw new IllegalStateException("Процесс " + command.get(0) + " не обработал событие: " + output);
+            }
+            process.waitFor(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return elapsed;
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Процесс " + command.get(0) + " не обработал событие за "
+                    + PROBE_TIMEOUT_SECONDS + " с: " + output);
+        } catch (ExecutionException e) {
+            throw new IOException("Не удалось прочитать вывод процесса " + command.get(0), e.getCause());
+        } finally {
+            if (process.isAlive()) {
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Читает вывод процесса до конца и сообщает время до маркера или {@code -1}, если его не было
+     */
+    private static void readOutput(Process process, long start, List<String> output,
+                                   CompletableFuture<Long> firstEvent) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!firstEvent.isDone() && FIRST_EVENT_MARKER.equals(line)) {
+                    firstEvent.complete(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                } else {
+                    output.add(line);
+                }
+            }
+            firstEvent.complete(-1L);
+        } catch (IOException e) {
+            firstEvent.completeExceptionally(e);
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> params = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Ожидается параметр вида ключ=значение: " + arg);
+            }
+            params.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return params;
+    }
+}
@@ -0,0 +1,101 @@
+package ru.misis.gamification.loadtest;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Генератор рангов с распределением Ципфа
+ *
+ * <p>
+ * Небольшая доля студентов создает большую часть активности: ранг 0 выпадает
+ * чаще всех, вероятность ранга {@code k} пропорциональна {@code 1 / (k + 1)^theta}.
+ * Алгоритм Грея и др. (используется в YCSB): выборка за O(1),
+ * предварительный расчет дзета-функции за O(n).
+ * </p>
+ */
+public final class ZipfianGenerator {
+
+    /**
+     * Показатель распределения по умолчанию
+     */
+    public static final double DEFAULT_THETA = 0.99;
+
+    private final long items;
+
+    private final double theta;
+
+    private final double zetaN;
+
+    private final double alpha;
+
+    private final double eta;
+
+    private final double secondRankThreshold;
+
+    /**
+     * Создает генератор
+     *
+     * @param items Количество рангов
+     * @param theta Показатель распределения, от 0 до 1 не включительно
+     * @throws IllegalArgumentException Если параметры некорректны
+     */
+    public ZipfianGenerator(long items, double theta) {
+        if (items < 2) {
+            throw new IllegalArgumentException("items должен быть не меньше 2");
+        }
+        if (theta <= 0 || theta >= 1) {
+            throw new IllegalArgumentException("theta должен быть в диапазоне (0, 1)");
+        }
+        this.items = items;
+        this.theta = theta;
+        this.zetaN = zeta(items, theta);
+        double zeta2 = zeta(2, theta);
+        this.alpha = 1 / (1 - theta);
+        this.eta = (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetaN);
+        this.secondRankThreshold = 1 + Math.pow(0.5, theta);
+    }
+
+    /**
+     * Возвращает следующий ранг
+     *
+     * @param random Источник случайных чисел
+     * @return Ранг от 0 до {@code items - 1}
+     */
+    public long next(RandomGenerator random) {
+        double u = random.nextDouble();
+        double uz = u * zetaN;
+        if (uz < 1) {
+            return 0;
+        }
+        if (uz < secondRankThreshold) {
+            return 1;
+        }
+        long rank = (long) (items * Math.pow(eta * u - eta + 1, alpha));
+        return Math.min(rank, items - 1);
+    }
+
+    /**
+     * Возвращает количество рангов
+     *
+     * @return Количество рангов
+     */
+    public long items() {
+        return items;
+    }
+
+    /**
+     * Возвращает показатель распределения
+     *
+     * @return Показатель распределения
+     */
+    public double theta() {
+        return theta;
+    }
+
+    private static double zeta(long n, double theta) {
+        double sum = 0;
+        for (long i = 1; i <= n; i++) {
+            sum += 1 / Math.pow(i, theta);
+        }
+        return sum;
+    }
+}